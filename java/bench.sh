@@ -0,0 +1,8 @@
+#! /bin/bash
+DBNAME=$1
+PORT=$2
+USER=$3
+
+# Example: source ./bench.sh flightDB 5432 user 32 50 0
+# (32 concurrent bookers, 50 bookings each, all on cruise 0)
+java -cp lib/*:bin/ BookingBenchmark $DBNAME $PORT $USER ${@:4}
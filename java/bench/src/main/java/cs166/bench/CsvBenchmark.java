@@ -0,0 +1,45 @@
+package cs166.bench;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+* Parsing a bulk booking file: the (customer, cruise) pairs of reservation.csv read the way
+* BulkBookingLoader reads its input, before any of them reaches the server.
+*/
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class CsvBenchmark
+{
+	private String _pairs;
+
+	@Setup
+	public void load() throws Exception
+	{
+		this._pairs = Fixtures.bookingPairs();
+	}
+
+	@Benchmark
+	public int parsePairs() throws Throwable
+	{
+		Object pairs = App.PARSE_PAIRS.invoke((Reader) new StringReader(this._pairs));
+
+		return (int) App.PAIR_COUNT.invoke(pairs);
+	}
+}
@@ -0,0 +1,130 @@
+package cs166.bench;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.List;
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetMetaDataImpl;
+import javax.sql.rowset.RowSetProvider;
+
+/*
+* Inputs the benchmarks share, read from the data/*.csv files create.sql loads.  Result sets are
+* disconnected row sets, so the benchmarks measure the client's own code and not the network or the
+* server.  The data directory is found from the usual working directories, or set with -Dcs166.data.
+*/
+
+final class Fixtures
+{
+	private static final String[] DATA_DIRS = { "data", "../data", "../../data" };
+
+	private Fixtures()
+	{
+	}
+
+	static Path dataDir()
+	{
+		String configured = System.getProperty("cs166.data");
+
+		if (configured != null)
+			return Paths.get(configured);
+
+		for (String dir : DATA_DIRS)
+			if (Files.isRegularFile(Paths.get(dir, "Cruises.csv")))
+				return Paths.get(dir);
+
+		throw new IllegalStateException("Cannot find the data directory, run from the repository or set -Dcs166.data");
+	}
+
+	static List<String> lines(String file) throws IOException
+	{
+		return Files.readAllLines(dataDir().resolve(file), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Method to build the rows of "SELECT * FROM Cruise" from Cruises.csv,
+	 * repeated until there are at least the requested number of rows.
+	 *
+	 * @param rows the minimum number of rows
+	 * @return the row set, positioned before the first row
+	 * @throws java.io.IOException when Cruises.csv cannot be read
+	 * @throws java.sql.SQLException when the row set cannot be built
+	 */
+	static CachedRowSet cruises(int rows) throws IOException, SQLException
+	{
+		List<String> lines = lines("Cruises.csv");
+
+		RowSetMetaDataImpl rsmd = new RowSetMetaDataImpl();
+		String[] names = { "cnum", "cost", "num_sold", "num_stops", "actual_departure_date", "actual_arrival_date", "arrival_port", "departure_port" };
+		int[] types = { Types.INTEGER, Types.INTEGER, Types.INTEGER, Types.INTEGER, Types.DATE, Types.DATE, Types.CHAR, Types.CHAR };
+
+		rsmd.setColumnCount(names.length);
+
+		for (int i = 0; i < names.length; ++i)
+		{
+			rsmd.setColumnName(i + 1, names[i]);
+			rsmd.setColumnLabel(i + 1, names[i]);
+			rsmd.setColumnType(i + 1, types[i]);
+		}
+
+		CachedRowSet crs = RowSetProvider.newFactory().createCachedRowSet();
+		crs.setMetaData(rsmd);
+
+		for (int n = 0; n < rows; )
+		{
+			for (String line : lines)
+			{
+				String[] fields = line.split(",", -1);
+
+				if (fields.length != names.length)
+					continue;
+
+				crs.moveToInsertRow();
+				crs.updateInt(1, n);
+				crs.updateInt(2, Integer.parseInt(fields[1]));
+				crs.updateInt(3, Integer.parseInt(fields[2]));
+				crs.updateInt(4, Integer.parseInt(fields[3]));
+				crs.updateDate(5, Date.valueOf(fields[4].substring(0, 10)));
+				crs.updateDate(6, Date.valueOf(fields[5].substring(0, 10)));
+				crs.updateString(7, String.format("%-10s", fields[6]));
+				crs.updateString(8, String.format("%-10s", fields[7]));
+				crs.insertRow();
+				crs.moveToCurrentRow();
+
+				if (++n == rows)
+					break;
+			}
+		}
+
+		crs.beforeFirst();
+		return crs;
+	}
+
+	/**
+	 * Method to return the (customer, cruise) pairs of reservation.csv in the
+	 * format BulkBookingLoader reads.
+	 *
+	 * @return the pairs, one per line
+	 * @throws java.io.IOException when reservation.csv cannot be read
+	 */
+	static String bookingPairs() throws IOException
+	{
+		StringBuilder pairs = new StringBuilder();
+
+		//rnum,ccid,cid,status
+		for (String line : lines("reservation.csv"))
+		{
+			String[] fields = line.split(",", -1);
+
+			if (fields.length == 4)
+				pairs.append(fields[1]).append(',').append(fields[2]).append('\n');
+		}
+
+		return pairs.toString();
+	}
+}
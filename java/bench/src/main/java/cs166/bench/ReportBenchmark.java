@@ -0,0 +1,56 @@
+package cs166.bench;
+
+import java.io.Writer;
+import java.sql.ResultSet;
+import java.util.concurrent.TimeUnit;
+import javax.sql.rowset.CachedRowSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+* Formatting a query result with ReportWriter, the path every report-producing menu option and the
+* repairs report take.  Output goes to a null writer so only the formatting is measured.
+*/
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ReportBenchmark
+{
+	@Param({ "100", "5000" })
+	public int rows;
+
+	//TEXT samples this many rows for the column widths
+	@Param({ "200" })
+	public int sampleRows;
+
+	private CachedRowSet _cruises;
+
+	@Setup
+	public void load() throws Exception
+	{
+		this._cruises = Fixtures.cruises(this.rows);
+	}
+
+	@Benchmark
+	public long writeText() throws Throwable
+	{
+		this._cruises.beforeFirst();
+
+		Object report = App.NEW_REPORT_WRITER.invoke(Writer.nullWriter(), false, App.TEXT, this.sampleRows, 0);
+
+		return (long) App.WRITE_REPORT.invoke(report, (ResultSet) this._cruises);
+	}
+}
@@ -0,0 +1,62 @@
+package cs166.bench;
+
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.sql.rowset.CachedRowSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/*
+* Reading a query result on the client: materializing it as the lists of strings the menu code has
+* always used, against mapping each row to a Cruise with the typed getters.  Run with -prof gc to
+* compare the bytes allocated per row.
+*/
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ResultSetBenchmark
+{
+	@Param({ "100", "5000" })
+	public int rows;
+
+	private CachedRowSet _cruises;
+
+	@Setup
+	public void load() throws Exception
+	{
+		this._cruises = Fixtures.cruises(this.rows);
+	}
+
+	@Benchmark
+	public Object collectResult() throws Throwable
+	{
+		this._cruises.beforeFirst();
+		return (List<?>) App.COLLECT_RESULT.invoke((ResultSet) this._cruises);
+	}
+
+	@Benchmark
+	public void mapCruises(Blackhole bh) throws Throwable
+	{
+		ResultSet rs = this._cruises;
+
+		rs.beforeFirst();
+
+		while (rs.next())
+			bh.consume(App.MAP_CRUISE.invoke(rs));
+	}
+}
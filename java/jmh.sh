@@ -0,0 +1,10 @@
+#! /bin/bash
+# Builds the client and its JMH benchmarks, then runs them from the repository root so the
+# benchmarks find data/*.csv.  Extra arguments go to JMH, for example
+#
+#	./jmh.sh ResultSetBenchmark -p rows=5000
+#	./jmh.sh -prof gc          (allocation rate and bytes per operation)
+#	./jmh.sh -lprof            (list the other profilers)
+DIR="$(cd "$(dirname "$0")" && pwd)"
+mvn -B -q -f "$DIR/pom.xml" package -DskipTests || exit 1
+cd "$DIR/.." && java -jar "$DIR/bench/target/benchmarks.jar" "$@"
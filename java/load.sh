@@ -0,0 +1,8 @@
+#! /bin/bash
+DBNAME=$1
+PORT=$2
+USER=$3
+
+# Reloads every table from ../data/*.csv over client-side COPY.
+# Example: source ./load.sh flightDB 5432 user defer
+java -cp lib/*:bin/ CsvLoader $DBNAME $PORT $USER ../data $4
@@ -0,0 +1,8 @@
+#! /bin/bash
+DBNAME=$1
+PORT=$2
+USER=$3
+
+# Drives a mix of bookings, seat lookups, status counts and repair reports.
+# Example: source ./loadgen.sh flightDB 5432 user agents=64 seconds=30 pool=16 strategy=row_lock reload=../data
+java -cp lib/*:bin/ LoadGenerator $DBNAME $PORT $USER ${@:4}
@@ -0,0 +1,9 @@
+#! /bin/bash
+DBNAME=$1
+PORT=$2
+USER=$3
+
+# Fails when a menu query scans a large table or passes the latency budget.
+# Example: source ./plans.sh flightDB 5432 user 20 50
+# (tables copied to 20 times their size, 50 ms budget per query)
+java -cp lib/*:bin/ PlanRegression $DBNAME $PORT $USER ${@:4}
@@ -4,4 +4,14 @@ PORT=$2
 USER=$3
 
 # Example: source ./run.sh flightDB 5432 user
-java -cp lib/*:bin/ DBproject $DBNAME $PORT $USER
+# Batch mode: source ./run.sh flightDB 5432 user -batch commands.txt 100
+# (operations from commands.txt, or stdin for -, committed 100 at a time)
+# HTTP mode:  source ./run.sh flightDB 5432 user 4 16 -http 8080
+# (a pool of 4 to 16 connections under the HTTP/JSON endpoints on port 8080)
+# Metrics:    source ./run.sh flightDB 5432 user -metrics 60
+# (query-metrics.txt rewritten every 60 s; the same numbers are on JMX as cs166:type=QueryMetrics)
+# Slow queries: source ./run.sh flightDB 5432 user -slowlog 200
+# (statements over 200 ms go to slow-queries.log with their bind values and a sampled EXPLAIN)
+# Offline:    java -cp lib/*:bin/ DBproject -offline ../data
+# (the menu answered from data/*.csv in memory, no Postgres; changes are lost on exit)
+java -cp lib/*:bin/ DBproject $DBNAME $PORT $USER ${@:4}
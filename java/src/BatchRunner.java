@@ -0,0 +1,280 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.*;
+import java.sql.*;
+import java.util.*;
+
+/*
+* This class runs menu operations from a command file instead of the keyboard.  Each line is one
+* operation, its name followed by its fields separated by commas:
+*
+*	add-ship,<make>,<model>,<age>,<seats>
+*	add-captain,<fullname>,<nationality>
+*	add-cruise,<cost>,<num_sold>,<num_stops>,<departure yyyy-mm-dd>,<arrival yyyy-mm-dd>,<arrival port>,<departure port>
+*	book,<customer id>,<cruise number>
+*	cancel,<reservation number>
+*	seats,<cruise number>
+*	repairs-report[,<top k>[,<repair code>[,<from yyyy-mm-dd>[,<to yyyy-mm-dd>]]]]
+*	status-count,<cruise number>,<W|C|R>
+*
+* Blank lines and lines starting with '#' are skipped.  Operations are committed in batches, each
+* one behind a savepoint so a failed operation is reported and undone without losing the rest of its
+* batch; the in-memory caches see a batch's bookings and cancellations only once it commits.  The
+* latency of every operation is recorded and summarized per operation at the end.
+*/
+
+public class BatchRunner
+{
+	//operations committed together
+	public static final int DEFAULT_BATCH_SIZE = 100;
+
+	private final DBproject _esql;
+	private final int _batchSize;
+	private final PrintStream _out;
+	private final Map<String, LatencyStats> _latencies = new TreeMap<String, LatencyStats>();
+
+	public BatchRunner(DBproject esql, int batchSize, PrintStream out)
+	{
+		if (batchSize <= 0)
+			throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+
+		this._esql = esql;
+		this._batchSize = batchSize;
+		this._out = out;
+	}
+
+	/**
+	 * Method to run every operation of a command stream and print the
+	 * latency summary.
+	 *
+	 * @param input the operations, one per line
+	 * @return the number of operations that failed
+	 * @throws java.io.IOException when the input cannot be read
+	 * @throws java.sql.SQLException when a batch could not be committed
+	 */
+	public int run(Reader input) throws IOException, SQLException
+	{
+		BufferedReader reader = new BufferedReader(input);
+		List<String[]> batch = new ArrayList<String[]>();
+		String line;
+		int lineNumber = 0;
+		int failures = 0;
+		int operations = 0;
+		long begin = System.nanoTime();
+
+		while ((line = reader.readLine()) != null)
+		{
+			++lineNumber;
+			line = line.trim();
+
+			if (line.isEmpty() || line.charAt(0) == '#')
+				continue;
+
+			batch.add(new String[] { String.valueOf(lineNumber), line });
+			++operations;
+
+			if (batch.size() == this._batchSize)
+			{
+				failures += runBatch(batch);
+				batch.clear();
+			}
+		}
+
+		if (!batch.isEmpty())
+			failures += runBatch(batch);
+
+		double seconds = (System.nanoTime() - begin) / 1e9;
+
+		this._out.println();
+
+		for (Map.Entry<String, LatencyStats> entry : this._latencies.entrySet())
+			this._out.println(String.format("%-15s %s", entry.getKey(), entry.getValue().summary()));
+
+		this._out.println(String.format("%d operations (%d failed) in %.2f s: %.0f ops/s, batches of %d",
+					operations, failures, seconds, operations / Math.max(seconds, 1e-9), this._batchSize));
+
+		return failures;
+	}
+
+	/*
+	* Runs one batch in one transaction, each operation behind its own savepoint.
+	*/
+	private int runBatch(List<String[]> batch) throws SQLException
+	{
+		return this._esql.executeInTransaction(pc ->
+		{
+			int failures = 0;
+
+			for (String[] operation : batch)
+			{
+				String[] fields = operation[1].split(",", -1);
+
+				for (int i = 0; i < fields.length; ++i)
+					fields[i] = fields[i].trim();
+
+				String name = fields[0].toLowerCase();
+				Savepoint savepoint = pc.getConnection().setSavepoint();
+				int cacheUpdates = this._esql.afterCommitMark();
+				long begin = System.nanoTime();
+				boolean failed = false;
+
+				try
+				{
+					this._out.println(execute(name, fields));
+					pc.getConnection().releaseSavepoint(savepoint);
+				}
+				catch (SQLException | IOException | RuntimeException e)
+				{
+					pc.getConnection().rollback(savepoint);
+					this._esql.discardAfterCommit(cacheUpdates);
+					this._out.println("line " + operation[0] + ": " + name + " failed: " + e.getMessage());
+					failed = true;
+					++failures;
+				}
+
+				LatencyStats latencies = this._latencies.get(name);
+
+				if (latencies == null)
+				{
+					latencies = new LatencyStats();
+					this._latencies.put(name, latencies);
+				}
+
+				latencies.record(System.nanoTime() - begin, failed);
+			}
+
+			return failures;
+		});
+	}
+
+	/*
+	* Runs one operation and returns the line reporting its result.
+	*/
+	private String execute(String name, String[] fields) throws SQLException, IOException
+	{
+		switch (name)
+		{
+			case "add-ship":
+			{
+				expectFields(fields, 5);
+				String make = InputChecks.letters(fields[1], false, "make");
+				String model = InputChecks.letters(fields[2], false, "model");
+				int age = InputChecks.nonnegative(fields[3], "age");
+				int seats = InputChecks.nonnegative(fields[4], "seats");
+				int id = this._esql.nextId(IdGenerator.SHIP_ID);
+
+				this._esql.insertShip(id, make, model, age, seats);
+				return String.format("Successfully inserted the record: (id:%d, make:%s, model:%s, age:%d, seats:%d)", id, make, model, age, seats);
+			}
+			case "add-captain":
+			{
+				expectFields(fields, 3);
+				String fullname = InputChecks.letters(fields[1], true, "fullname");
+				String nationality = InputChecks.letters(fields[2], true, "nationality");
+				int id = this._esql.nextId(IdGenerator.CAPTAIN_ID);
+
+				this._esql.insertCaptain(id, fullname, nationality);
+				return String.format("Successfully inserted the record: (id: %d, fullname:%s, nationality:%s)", id, fullname, nationality);
+			}
+			case "add-cruise":
+			{
+				expectFields(fields, 8);
+				int cost = InputChecks.nonnegative(fields[1], "cost");
+				int numSold = InputChecks.nonnegative(fields[2], "num_sold");
+				int numStops = InputChecks.nonnegative(fields[3], "num_stops");
+				String departure = InputChecks.cruiseDate(fields[4], "departure date");
+				String arrival = InputChecks.cruiseDate(fields[5], "arrival date");
+				String arrivalPort = InputChecks.letters(fields[6], false, "arrival port");
+				String departurePort = InputChecks.letters(fields[7], false, "departure port");
+				int cnum = this._esql.nextId(IdGenerator.CRUISE_ID);
+
+				this._esql.insertCruise(cnum, cost, numSold, numStops, departure, arrival, arrivalPort, departurePort);
+				return String.format("Successfully inserted the record: (cnum:%d, cost:%d, num_sold:%d, num_stops:%d, actual_departure_date:%s, actual_arrival_date:%s, arrival_port:%s, departure_port:%s)",
+							cnum, cost, numSold, numStops, departure, arrival, arrivalPort, departurePort);
+			}
+			case "book":
+			{
+				expectFields(fields, 3);
+				int customer = InputChecks.nonnegative(fields[1], "customer number");
+				int cruise = InputChecks.nonnegative(fields[2], "cruise number");
+
+				if (!this._esql.customerExists(customer) || !this._esql.cruiseExists(cruise))
+					throw new IllegalArgumentException("The record with Customer Number " + customer + " or Cruise Number " + cruise + " does not exist.");
+
+				BookingEngine.Booking booking = this._esql.bookCruise(customer, cruise);
+
+				if (booking == null)
+					throw new IllegalArgumentException("The record with Customer Number " + customer + " or Cruise Number " + cruise + " does not exist.");
+
+				return "Successfully inserted/updated the record: " + booking;
+			}
+			case "cancel":
+			{
+				expectFields(fields, 2);
+				int rnum = InputChecks.nonnegative(fields[1], "reservation number");
+				WaitlistEngine.Cancellation cancellation = this._esql.cancelReservation(rnum);
+
+				if (cancellation == null)
+					throw new IllegalArgumentException("The record with Reservation Number " + rnum + " does not exist.");
+
+				return "Successfully cancelled the record: " + cancellation;
+			}
+			case "seats":
+			{
+				expectFields(fields, 2);
+				int cruise = InputChecks.nonnegative(fields[1], "cruise number");
+				Integer available = this._esql.getAvailableSeats(cruise);
+
+				if (available == null)
+					throw new IllegalArgumentException("The record with Cruise Number " + cruise + " does not exist.");
+
+				return "The number of available seats for cruise " + cruise + " is " + Math.max(0, available);
+			}
+			case "repairs-report":
+			{
+				if (fields.length > 5)
+					throw new IllegalArgumentException("Expected at most 4 fields after repairs-report");
+
+				int k = (fields.length > 1 && !fields[1].isEmpty()) ? InputChecks.nonnegative(fields[1], "top k") : 0;
+				String code = (fields.length > 2) ? InputChecks.repairCode(fields[2]) : null;
+				String from = (fields.length > 3 && !fields[3].isEmpty()) ? InputChecks.date(fields[3], "first repair date") : null;
+				String to = (fields.length > 4 && !fields[4].isEmpty()) ? InputChecks.date(fields[4], "last repair date") : null;
+
+				StringWriter text = new StringWriter();
+				ReportWriter report = new ReportWriter(text, true, ReportWriter.Format.TEXT, ReportWriter.DEFAULT_SAMPLE_ROWS, ReportWriter.DEFAULT_PAGE_SIZE);
+
+				this._esql.writeTopRepairedShips(report, k, code, from, to);
+				return text.toString().trim();
+			}
+			case "status-count":
+			{
+				expectFields(fields, 3);
+				int cruise = InputChecks.nonnegative(fields[1], "cruise number");
+
+				char status = InputChecks.status(fields[2]);
+				int count = this._esql.countPassengers(cruise, status);
+
+				return "There are " + count + " passengers with passenger status " + status + " on cruise " + cruise;
+			}
+			default:
+				throw new IllegalArgumentException("Unknown operation: " + name);
+		}
+	}
+
+	private static void expectFields(String[] fields, int count)
+	{
+		if (fields.length != count)
+			throw new IllegalArgumentException("Expected " + (count - 1) + " fields after " + fields[0] + ", got " + (fields.length - 1));
+	}
+}
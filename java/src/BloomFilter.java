@@ -0,0 +1,108 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+* A Bloom filter over int keys.  mightContain never returns false for a key that was added, and
+* returns true for a key that was not added with about the configured false positive rate.
+* Adds and lookups may run concurrently.
+*/
+
+public class BloomFilter
+{
+	private final AtomicLongArray _bits;
+	private final int _numBits;
+	private final int _numHashes;
+	private final int _expectedKeys;
+
+	public BloomFilter(int expectedKeys, double falsePositiveRate)
+	{
+		int n = Math.max(1, expectedKeys);
+
+		// standard sizing: m = -n ln p / (ln 2)^2 bits and k = m / n ln 2 hash functions
+		long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+
+		this._numBits = (int) Math.max(64, Math.min(m, Integer.MAX_VALUE - 63));
+		this._numHashes = Math.max(1, (int) Math.round((double) this._numBits / n * Math.log(2)));
+		this._bits = new AtomicLongArray((this._numBits + 63) / 64);
+		this._expectedKeys = n;
+	}
+
+	public void add(int key)
+	{
+		int h1 = mix(key);
+		int h2 = mix(key ^ 0x9e3779b9) | 1;
+
+		for (int i = 0; i < this._numHashes; ++i)
+		{
+			int bit = Math.floorMod(h1 + i * h2, this._numBits);
+			int word = bit >>> 6;
+			long mask = 1L << bit;
+			long old;
+
+			do
+			{
+				old = this._bits.get(word);
+
+				if ((old & mask) != 0)
+					break;
+			}
+			while (!this._bits.compareAndSet(word, old, old | mask));
+		}
+	}
+
+	public boolean mightContain(int key)
+	{
+		int h1 = mix(key);
+		int h2 = mix(key ^ 0x9e3779b9) | 1;
+
+		for (int i = 0; i < this._numHashes; ++i)
+		{
+			int bit = Math.floorMod(h1 + i * h2, this._numBits);
+
+			if ((this._bits.get(bit >>> 6) & (1L << bit)) == 0)
+				return false;
+		}
+
+		return true;
+	}
+
+	public int getExpectedKeys()
+	{
+		return this._expectedKeys;
+	}
+
+	public int getNumBits()
+	{
+		return this._numBits;
+	}
+
+	public int getNumHashes()
+	{
+		return this._numHashes;
+	}
+
+	/*
+	* The MurmurHash3 32 bit finalizer, so consecutive ids spread over the whole bit array.
+	*/
+	private static int mix(int h)
+	{
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h;
+	}
+}
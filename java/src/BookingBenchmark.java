@@ -0,0 +1,147 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/*
+* This class measures booking throughput with many concurrent bookers hitting the same cruise and
+* checks that the cruise was not oversold.  It writes real reservations, so run it against a
+* scratch database loaded with sql/create.sql.
+*/
+
+public class BookingBenchmark
+{
+	public static final int DEFAULT_THREADS = 32;
+	public static final int DEFAULT_BOOKINGS_PER_THREAD = 50;
+
+	/**
+	 * The benchmark entry point
+	 *
+	 * @param args <dbname> <port> <user> [<threads> <bookings per thread> <cruise number>]
+	 */
+	public static void main(String[] args) throws Exception
+	{
+		if (args.length < 3)
+		{
+			System.err.println("Usage: " + "java [-classpath <classpath>] " + BookingBenchmark.class.getName() +
+						" <dbname> <port> <user> [<threads> <bookings per thread> <cruise number>]");
+			return;
+		}
+
+		Class.forName("org.postgresql.Driver");
+
+		final int threads = (args.length > 3) ? Integer.parseInt(args[3]) : DEFAULT_THREADS;
+		final int bookingsPerThread = (args.length > 4) ? Integer.parseInt(args[4]) : DEFAULT_BOOKINGS_PER_THREAD;
+		final int cruiseNumber = (args.length > 5) ? Integer.parseInt(args[5]) : 0;
+
+		DBproject esql = new DBproject(args[0], args[1], args[2], "", threads, threads);
+
+		try
+		{
+			final int[] customers = readCustomerIds(esql);
+			int seats = readSeats(esql, cruiseNumber);
+			int soldBefore = readNumSold(esql, cruiseNumber);
+
+			final AtomicInteger reserved = new AtomicInteger();
+			final AtomicInteger waitlisted = new AtomicInteger();
+			final AtomicInteger errors = new AtomicInteger();
+			final CountDownLatch start = new CountDownLatch(1);
+
+			ExecutorService executor = Executors.newFixedThreadPool(threads);
+			List<Future<?>> workers = new ArrayList<Future<?>>();
+
+			for (int t = 0; t < threads; ++t)
+			{
+				workers.add(executor.submit(() ->
+				{
+					ThreadLocalRandom random = ThreadLocalRandom.current();
+					start.await();
+
+					for (int i = 0; i < bookingsPerThread; ++i)
+					{
+						try
+						{
+							BookingEngine.Booking booking = esql.bookCruise(customers[random.nextInt(customers.length)], cruiseNumber);
+
+							if (booking == null)
+								errors.incrementAndGet();
+							else if (booking.status == 'R')
+								reserved.incrementAndGet();
+							else
+								waitlisted.incrementAndGet();
+						}
+						catch (SQLException e)
+						{
+							errors.incrementAndGet();
+						}
+					}
+
+					return null;
+				}));
+			}
+
+			long begin = System.nanoTime();
+			start.countDown();
+
+			for (Future<?> worker : workers)
+				worker.get();
+
+			double seconds = (System.nanoTime() - begin) / 1e9;
+			executor.shutdown();
+
+			int soldAfter = readNumSold(esql, cruiseNumber);
+			int total = threads * bookingsPerThread;
+
+			System.out.println(String.format("%d bookers x %d bookings on cruise %d in %.2f s: %.0f bookings/s",
+							threads, bookingsPerThread, cruiseNumber, seconds, total / seconds));
+			System.out.println(String.format("reserved:%d waitlisted:%d errors:%d seats:%d num_sold before:%d after:%d",
+							reserved.get(), waitlisted.get(), errors.get(), seats, soldBefore, soldAfter));
+
+			boolean lostUpdate = soldAfter - soldBefore != reserved.get();
+			boolean oversold = soldAfter > Math.max(seats, soldBefore);
+
+			if (lostUpdate || oversold)
+			{
+				System.out.println("FAILED - " + (lostUpdate ? "num_sold does not match the confirmed bookings " : "") + (oversold ? "cruise was oversold" : ""));
+				System.exit(1);
+			}
+
+			System.out.println("OK - no lost updates and no overselling");
+		}
+		finally
+		{
+			esql.cleanup();
+		}
+	}
+
+	private static int[] readCustomerIds(DBproject esql) throws SQLException
+	{
+		ColumnarResult rows = esql.executePreparedQueryColumnar("SELECT Customer.id FROM Customer;");
+
+		return Arrays.copyOf(rows.intColumn(0), rows.getRowCount());
+	}
+
+	private static int readSeats(DBproject esql, int cruiseNumber) throws SQLException
+	{
+		return esql.executePreparedQueryForInt(
+				"SELECT MIN(Ship.seats) FROM CruiseInfo, Ship WHERE CruiseInfo.cruise_id = ? AND CruiseInfo.ship_id = Ship.id;", 0, cruiseNumber);
+	}
+
+	private static int readNumSold(DBproject esql, int cruiseNumber) throws SQLException
+	{
+		return esql.executePreparedQueryForInt("SELECT Cruise.num_sold FROM Cruise WHERE Cruise.cnum = ?;", -1, cruiseNumber);
+	}
+}
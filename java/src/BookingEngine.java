@@ -0,0 +1,214 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.*;
+import java.util.*;
+
+/*
+* This class books cruises in a single statement.  Deciding seat availability, bumping
+* Cruise.num_sold and inserting the Reservation happen in one round trip and one implicit
+* transaction, so concurrent agents booking the same cruise cannot oversell it.
+*/
+
+public class BookingEngine
+{
+	/*
+	* The Cruise row is locked first, whether or not a seat is left, so a booking queues behind a
+	* concurrent booking or cancellation of the cruise, as LOCK_CRUISE_SQL does.  The lock returns
+	* the committed num_sold, and the seat is taken only when that is below the ship's seats, so at
+	* most seats reservations get status R and a booking is never waitlisted next to a seat a
+	* cancellation just freed.  The customer check sits in both halves so nothing is written for an
+	* unknown customer or cruise.
+	*/
+	static final String BOOK_SQL =
+		"WITH cruise AS (\n" +
+		"	SELECT Cruise.cnum, Cruise.num_sold FROM Cruise WHERE Cruise.cnum = ? FOR UPDATE\n" +
+		"), seat AS (\n" +
+		"	UPDATE Cruise\n" +
+		"	SET num_sold = cruise.num_sold + 1\n" +
+		"	FROM cruise\n" +
+		"	WHERE Cruise.cnum = cruise.cnum\n" +
+		"	AND cruise.num_sold < (SELECT MIN(Ship.seats) FROM CruiseInfo, Ship WHERE CruiseInfo.cruise_id = cruise.cnum AND CruiseInfo.ship_id = Ship.id)\n" +
+		"	AND EXISTS (SELECT 1 FROM Customer WHERE Customer.id = ?)\n" +
+		"	RETURNING Cruise.cnum\n" +
+		")\n" +
+		"INSERT INTO Reservation (rnum, ccid, cid, status)\n" +
+		"SELECT ?, Customer.id, cruise.cnum, CASE WHEN EXISTS (SELECT 1 FROM seat) THEN 'R' ELSE 'W' END\n" +
+		"FROM Customer, cruise\n" +
+		"WHERE Customer.id = ?\n" +
+		"RETURNING status;";
+
+	//the same booking as BOOK_SQL in three statements: lock the cruise, check the customer, then write
+	static final String LOCK_CRUISE_SQL =
+		"SELECT Cruise.num_sold, COALESCE((SELECT MIN(Ship.seats) FROM CruiseInfo, Ship\n" +
+		"	WHERE CruiseInfo.cruise_id = Cruise.cnum AND CruiseInfo.ship_id = Ship.id), 0)\n" +
+		"FROM Cruise\n" +
+		"WHERE Cruise.cnum = ?\n" +
+		"FOR UPDATE OF Cruise;";
+
+	/*
+	* How a booking takes its seat.  SINGLE_STATEMENT is BOOK_SQL; ROW_LOCK is the textbook
+	* SELECT ... FOR UPDATE transaction, kept to compare against it; GROUP_COMMIT queues the booking
+	* on a BookingPipeline that commits many callers' bookings together.
+	*/
+	public enum Strategy { SINGLE_STATEMENT, ROW_LOCK, GROUP_COMMIT }
+
+	/*
+	* The outcome of one booking.
+	*/
+	public static class Booking
+	{
+		public final int rnum;
+		public final int customerId;
+		public final int cruiseNumber;
+		public final char status;
+
+		public Booking(int rnum, int customerId, int cruiseNumber, char status)
+		{
+			this.rnum = rnum;
+			this.customerId = customerId;
+			this.cruiseNumber = cruiseNumber;
+			this.status = status;
+		}
+
+		public String toString()
+		{
+			return String.format("(rnum:%d, customerID:%d, cruiseID:%d, status:%c)", rnum, customerId, cruiseNumber, status);
+		}
+	}
+
+	/**
+	 * Method to decide the status of a new reservation the way BOOK_SQL
+	 * does, for callers that book outside of it such as bulk loads.
+	 *
+	 * @param numSold the confirmed seats already sold on the cruise
+	 * @param seats the seats of the cruise's ship, 0 when no ship is assigned
+	 * @return R when a seat is left, W otherwise
+	 */
+	public static char decideStatus(int numSold, int seats)
+	{
+		return (numSold < seats) ? 'R' : 'W';
+	}
+
+	private final DBproject _esql;
+
+	//started by the first GROUP_COMMIT booking
+	private BookingPipeline _pipeline = null;
+
+	public BookingEngine(DBproject esql)
+	{
+		this._esql = esql;
+	}
+
+	/**
+	 * Method to return the group commit pipeline, starting it with the
+	 * default settings on first use.
+	 *
+	 * @return the pipeline
+	 */
+	public synchronized BookingPipeline getPipeline()
+	{
+		if (this._pipeline == null)
+			this._pipeline = new BookingPipeline(this._esql, BookingPipeline.DEFAULT_MAX_BATCH, BookingPipeline.DEFAULT_LINGER_MICROS,
+							BookingPipeline.DEFAULT_QUEUE_CAPACITY, BookingPipeline.DEFAULT_OFFER_TIMEOUT_MILLIS);
+
+		return this._pipeline;
+	}
+
+	/**
+	 * Method to commit the bookings still queued on the pipeline and stop
+	 * it.  Does nothing when it was never started.
+	 */
+	public synchronized void close()
+	{
+		if (this._pipeline != null)
+		{
+			System.out.println("Booking pipeline: " + this._pipeline);
+			this._pipeline.close();
+			this._pipeline = null;
+		}
+	}
+
+	/**
+	 * Method to book a cruise for a customer.  The reservation is confirmed
+	 * (R) while the cruise has seats left on its ship and waitlisted (W)
+	 * otherwise.
+	 *
+	 * @param customerId the Customer.id of the passenger
+	 * @param cruiseNumber the Cruise.cnum to book
+	 * @return the reservation, or null when the customer or the cruise does not exist
+	 * @throws java.sql.SQLException when the booking failed
+	 */
+	public Booking book(int customerId, int cruiseNumber) throws SQLException
+	{
+		int rnum = this._esql.nextId(IdGenerator.RESERVATION_ID);
+		long startedAt = System.nanoTime();
+
+		Booking booking = this._esql.executePreparedQueryForObject(BOOK_SQL,
+						rs -> new Booking(rnum, customerId, cruiseNumber, RowMapper.getChar(rs, 1)),
+						cruiseNumber, customerId, rnum, customerId);
+
+		if (booking != null)
+			this._esql.recordBooking(cruiseNumber, booking.status, startedAt);
+
+		return booking;
+	}
+
+	/**
+	 * Method to book a cruise with the given strategy.  Both strategies
+	 * give the same statuses; they differ in round trips and lock time.
+	 *
+	 * @param customerId the Customer.id of the passenger
+	 * @param cruiseNumber the Cruise.cnum to book
+	 * @param strategy how the seat is taken
+	 * @return the reservation, or null when the customer or the cruise does not exist
+	 * @throws java.sql.SQLException when the booking failed
+	 */
+	public Booking book(int customerId, int cruiseNumber, Strategy strategy) throws SQLException
+	{
+		// inside a transaction the pipeline's own transaction could wait on this one's locks
+		if (strategy == Strategy.SINGLE_STATEMENT || (strategy == Strategy.GROUP_COMMIT && this._esql.inTransaction()))
+			return book(customerId, cruiseNumber);
+
+		if (strategy == Strategy.GROUP_COMMIT)
+			return getPipeline().book(customerId, cruiseNumber);
+
+		int rnum = this._esql.nextId(IdGenerator.RESERVATION_ID);
+		long startedAt = System.nanoTime();
+
+		Booking booking = this._esql.executeInTransaction(pc ->
+		{
+			// the row lock is held until commit, so concurrent bookers of the cruise queue here
+			int[] cruise = this._esql.executePreparedQueryAndRead(LOCK_CRUISE_SQL,
+						rs -> rs.next() ? new int[] { rs.getInt(1), rs.getInt(2) } : null, cruiseNumber);
+
+			if (cruise == null || this._esql.findCustomer(customerId) == null)
+				return null;
+
+			char status = decideStatus(cruise[0], cruise[1]);
+
+			if (status == 'R')
+				this._esql.executePreparedUpdate("UPDATE Cruise SET num_sold = num_sold + 1 WHERE cnum = ?;", cruiseNumber);
+
+			this._esql.executePreparedUpdate("INSERT INTO Reservation (rnum, ccid, cid, status) VALUES (?, ?, ?, ?);",
+						rnum, customerId, cruiseNumber, status);
+
+			return new Booking(rnum, customerId, cruiseNumber, status);
+		});
+
+		if (booking != null)
+			this._esql.recordBooking(cruiseNumber, booking.status, startedAt);
+
+		return booking;
+	}
+}
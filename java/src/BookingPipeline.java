@@ -0,0 +1,345 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/*
+* Group commit for bookings.  Callers on any number of threads queue their booking and wait for
+* its own result; one background thread drains the queue in micro-batches of up to maxBatch
+* bookings, or whatever arrived within the linger time of the first one, and writes each batch
+* the way BulkBookingLoader writes a file: customers checked and cruises locked set-wise, statuses
+* decided in queue order, one batched UPDATE and INSERT, one commit.  A batch costs a fixed number
+* of round trips and one WAL flush however many bookings it holds.
+*
+* When the queue is full a caller waits up to offerTimeoutMillis for room and then gets a
+* SQLTransientException, so a backed-up database slows callers down instead of growing the queue
+* without bound.  When a batch fails as a whole, its bookings are retried one at a time so each
+* caller gets its own result or error.
+*/
+
+public final class BookingPipeline implements AutoCloseable
+{
+	public static final int DEFAULT_MAX_BATCH = 64;
+
+	//how long the first booking of a batch waits for company
+	public static final long DEFAULT_LINGER_MICROS = 2000;
+
+	public static final int DEFAULT_QUEUE_CAPACITY = 4096;
+
+	public static final long DEFAULT_OFFER_TIMEOUT_MILLIS = 1000;
+
+	/*
+	* One queued booking and the future its caller waits on.
+	*/
+	private static final class Request
+	{
+		final int customerId;
+		final int cruiseNumber;
+		final long queuedAt = System.nanoTime();
+		final CompletableFuture<BookingEngine.Booking> result = new CompletableFuture<BookingEngine.Booking>();
+
+		Request(int customerId, int cruiseNumber)
+		{
+			this.customerId = customerId;
+			this.cruiseNumber = cruiseNumber;
+		}
+	}
+
+	private final DBproject _esql;
+	private final int _maxBatch;
+	private final long _lingerNanos;
+	private final long _offerTimeoutMillis;
+	private final ArrayBlockingQueue<Request> _queue;
+	private final Thread _drainer;
+	private volatile boolean _closed = false;
+
+	//metrics
+	private final LatencyHistogram _queueWait = new LatencyHistogram();
+	private final LatencyHistogram _commit = new LatencyHistogram();
+	private final AtomicLongArray _batchSizes;
+	private final AtomicLong _batches = new AtomicLong();
+	private final AtomicLong _bookings = new AtomicLong();
+	private final AtomicLong _rejected = new AtomicLong();
+	private final AtomicLong _fallbacks = new AtomicLong();
+
+	public BookingPipeline(DBproject esql, int maxBatch, long lingerMicros, int queueCapacity, long offerTimeoutMillis)
+	{
+		if (maxBatch <= 0 || lingerMicros < 0 || queueCapacity <= 0 || offerTimeoutMillis < 0)
+			throw new IllegalArgumentException("Invalid booking pipeline settings");
+
+		this._esql = esql;
+		this._maxBatch = maxBatch;
+		this._lingerNanos = lingerMicros * 1000;
+		this._offerTimeoutMillis = offerTimeoutMillis;
+		this._queue = new ArrayBlockingQueue<Request>(queueCapacity);
+		this._batchSizes = new AtomicLongArray(maxBatch + 1);
+
+		this._drainer = new Thread(this::drain, "BookingPipeline-drainer");
+		this._drainer.setDaemon(true);
+		this._drainer.start();
+	}
+
+	/**
+	 * Method to queue a booking.  Waits for room in the queue when it is
+	 * full.
+	 *
+	 * @param customerId the Customer.id of the passenger
+	 * @param cruiseNumber the Cruise.cnum to book
+	 * @return the future of the reservation, null when the customer or the cruise does not exist
+	 * @throws java.sql.SQLTransientException when the queue stayed full or the pipeline is closed
+	 */
+	public CompletableFuture<BookingEngine.Booking> submit(int customerId, int cruiseNumber) throws SQLException
+	{
+		Request request = new Request(customerId, cruiseNumber);
+
+		try
+		{
+			if (this._closed || !this._queue.offer(request, this._offerTimeoutMillis, TimeUnit.MILLISECONDS))
+			{
+				this._rejected.incrementAndGet();
+				throw new SQLTransientException(this._closed ? "The booking pipeline is closed" :
+								"The booking queue stayed full for " + this._offerTimeoutMillis + " ms");
+			}
+
+			// close() may have drained the queue for the last time between the check and the offer;
+			// a request still queued then is taken back, one already taken is completed by its taker
+			if (this._closed && this._queue.remove(request))
+			{
+				this._rejected.incrementAndGet();
+				throw new SQLTransientException("The booking pipeline is closed");
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new SQLTransientException("Interrupted while queueing a booking", e);
+		}
+
+		return request.result;
+	}
+
+	/**
+	 * Method to queue a booking and wait until its batch is committed.
+	 *
+	 * @param customerId the Customer.id of the passenger
+	 * @param cruiseNumber the Cruise.cnum to book
+	 * @return the reservation, or null when the customer or the cruise does not exist
+	 * @throws java.sql.SQLException when the booking failed or could not be queued
+	 */
+	public BookingEngine.Booking book(int customerId, int cruiseNumber) throws SQLException
+	{
+		return DBproject.await(submit(customerId, cruiseNumber));
+	}
+
+	private void drain()
+	{
+		List<Request> batch = new ArrayList<Request>(this._maxBatch);
+
+		while (!this._closed || !this._queue.isEmpty())
+		{
+			try
+			{
+				Request first = this._queue.poll(100, TimeUnit.MILLISECONDS);
+
+				if (first == null)
+					continue;
+
+				batch.add(first);
+				this._queue.drainTo(batch, this._maxBatch - 1);
+
+				long deadline = System.nanoTime() + this._lingerNanos;
+
+				while (batch.size() < this._maxBatch)
+				{
+					long remaining = deadline - System.nanoTime();
+					Request next = (remaining > 0) ? this._queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+
+					if (next == null)
+						break;
+
+					batch.add(next);
+					this._queue.drainTo(batch, this._maxBatch - batch.size());
+				}
+			}
+			catch (InterruptedException e)
+			{
+				// nothing interrupts the drainer, commit what was gathered
+			}
+
+			if (!batch.isEmpty())
+			{
+				try
+				{
+					commit(batch);
+				}
+				catch (Throwable t)
+				{
+					// the drainer must outlive a bad batch, or every later caller would wait forever
+					System.err.println("Error - Unable to commit a booking batch: " + t);
+
+					for (Request request : batch)
+						request.result.completeExceptionally(t);
+				}
+
+				batch.clear();
+			}
+		}
+	}
+
+	/*
+	* Writes one batch in one transaction and completes its futures.
+	*/
+	private void commit(List<Request> batch)
+	{
+		int count = batch.size();
+		int[] customerIds = new int[count];
+		int[] cruiseNumbers = new int[count];
+		long begin = System.nanoTime();
+
+		for (int i = 0; i < count; ++i)
+		{
+			Request request = batch.get(i);
+
+			customerIds[i] = request.customerId;
+			cruiseNumbers[i] = request.cruiseNumber;
+			this._queueWait.record(begin - request.queuedAt);
+		}
+
+		char[] statuses;
+		int[] rnums;
+
+		try
+		{
+			rnums = this._esql.nextIds(IdGenerator.RESERVATION_ID, count);
+			statuses = this._esql.executeInTransaction(pc ->
+						BulkBookingLoader.write(pc, customerIds, cruiseNumbers, count, rnums, false, new BulkBookingLoader.Result()));
+		}
+		catch (SQLException | RuntimeException e)
+		{
+			// a deadlock or a lost connection fails the whole batch; each booking gets its own try
+			this._fallbacks.incrementAndGet();
+			bookOneByOne(batch);
+			return;
+		}
+
+		this._commit.record(System.nanoTime() - begin);
+		this._batches.incrementAndGet();
+		this._batchSizes.incrementAndGet(count);
+		this._bookings.addAndGet(count);
+
+		for (int i = 0; i < count; ++i)
+		{
+			// rejected bookings keep a status of 0 and were not written
+			if (statuses[i] == 0)
+				batch.get(i).result.complete(null);
+			else
+			{
+				this._esql.recordBooking(cruiseNumbers[i], statuses[i], begin);
+				batch.get(i).result.complete(new BookingEngine.Booking(rnums[i], customerIds[i], cruiseNumbers[i], statuses[i]));
+			}
+		}
+	}
+
+	private void bookOneByOne(List<Request> batch)
+	{
+		for (Request request : batch)
+		{
+			try
+			{
+				request.result.complete(this._esql.bookCruise(request.customerId, request.cruiseNumber));
+				this._bookings.incrementAndGet();
+			}
+			catch (SQLException | RuntimeException e)
+			{
+				request.result.completeExceptionally(e);
+			}
+		}
+	}
+
+	/**
+	 * Method to stop taking bookings, commit the ones already queued and
+	 * stop the background thread.
+	 */
+	public void close()
+	{
+		// the drainer sees the flag within one poll and exits once the queue is empty
+		this._closed = true;
+
+		try
+		{
+			this._drainer.join(10000);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+
+		Request left;
+
+		while ((left = this._queue.poll()) != null)
+			left.result.completeExceptionally(new SQLTransientException("The booking pipeline is closed"));
+	}
+
+	public int getQueuedCount()
+	{
+		return this._queue.size();
+	}
+
+	public double getMeanBatchSize()
+	{
+		long batches = this._batches.get();
+
+		return (batches == 0) ? 0.0 : (double) bookingsInBatches() / batches;
+	}
+
+	private long bookingsInBatches()
+	{
+		long bookings = 0;
+
+		for (int size = 1; size < this._batchSizes.length(); ++size)
+			bookings += size * this._batchSizes.get(size);
+
+		return bookings;
+	}
+
+	/**
+	 * Method to return how many batches had each size, smallest first,
+	 * leaving out the sizes never seen.
+	 *
+	 * @return the batch sizes as "size:count" pairs
+	 */
+	public String getBatchSizes()
+	{
+		StringBuilder sizes = new StringBuilder();
+
+		for (int size = 1; size < this._batchSizes.length(); ++size)
+		{
+			long batches = this._batchSizes.get(size);
+
+			if (batches > 0)
+				sizes.append((sizes.length() == 0) ? "" : " ").append(size).append(':').append(batches);
+		}
+
+		return sizes.toString();
+	}
+
+	public String toString()
+	{
+		return String.format("%d bookings in %d batches (mean %.1f, max %d), %d queued, %d rejected, %d batches retried one by one; commit %s; queue wait %s",
+					this._bookings.get(), this._batches.get(), getMeanBatchSize(), this._maxBatch, getQueuedCount(),
+					this._rejected.get(), this._fallbacks.get(), this._commit, this._queueWait);
+	}
+}
@@ -0,0 +1,355 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.*;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+/*
+* This class books a whole file of (customer, cruise) pairs at once.  Customers and cruises are
+* validated with one query each, statuses are assigned per cruise in input order with the same
+* rule as BookingEngine, and the reservations are written with COPY or batched inserts in a single
+* transaction that holds the row locks of the booked cruises.
+*/
+
+public class BulkBookingLoader
+{
+	public static final int BATCH_SIZE = 1000;
+
+	//bytes of COPY data buffered before they are sent to the server
+	private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+	/*
+	* The counters of one load.
+	*/
+	public static class Result
+	{
+		public int rows = 0;
+		public int reserved = 0;
+		public int waitlisted = 0;
+		public int rejected = 0;
+		public long elapsedNanos = 0;
+
+		public double rowsPerSecond()
+		{
+			return (elapsedNanos == 0) ? 0.0 : (reserved + waitlisted) * 1e9 / elapsedNanos;
+		}
+
+		public String toString()
+		{
+			return String.format("rows:%d reserved:%d waitlisted:%d rejected:%d in %.3f s (%.0f rows/s)",
+						rows, reserved, waitlisted, rejected, elapsedNanos / 1e9, rowsPerSecond());
+		}
+	}
+
+	private final DBproject _esql;
+
+	public BulkBookingLoader(DBproject esql)
+	{
+		this._esql = esql;
+	}
+
+	/**
+	 * Method to book every pair of an input stream.  Each line holds a
+	 * customer id and a cruise number separated by a comma; blank lines and
+	 * lines starting with '#' are skipped.  Pairs that are malformed or name
+	 * an unknown customer or cruise are rejected and not written.
+	 *
+	 * @param input the pairs, one per line
+	 * @param useCopy true to write with COPY, false to use batched inserts
+	 * @return the load counters
+	 * @throws java.io.IOException when the input cannot be read
+	 * @throws java.sql.SQLException when the load failed, nothing is written in that case
+	 */
+	public Result load(Reader input, boolean useCopy) throws IOException, SQLException
+	{
+		long begin = System.nanoTime();
+		final Result result = new Result();
+
+		Pairs pairs = parsePairs(input, result);
+
+		final int count = pairs.count;
+		final int[] customerIds = pairs.customers;
+		final int[] cruiseNumbers = pairs.cruises;
+		final int[] rnums = this._esql.nextIds(IdGenerator.RESERVATION_ID, count);
+
+		long startedAt = System.nanoTime();
+		char[] statuses = this._esql.executeInTransaction(pc -> write(pc, customerIds, cruiseNumbers, count, rnums, useCopy, result));
+
+		// rejected pairs keep a status of 0 and were not written
+		for (int i = 0; i < count; ++i)
+		{
+			if (statuses[i] != 0)
+				this._esql.recordBooking(cruiseNumbers[i], statuses[i], startedAt);
+		}
+
+		result.elapsedNanos = System.nanoTime() - begin;
+
+		return result;
+	}
+
+	/*
+	* The (customer, cruise) pairs of an input stream, in input order.
+	*/
+	static final class Pairs
+	{
+		int[] customers = new int[1024];
+		int[] cruises = new int[1024];
+		int count = 0;
+	}
+
+	/**
+	 * Method to parse the pairs of an input stream, counting every pair in
+	 * result.rows and every malformed one in result.rejected.
+	 *
+	 * @param input the pairs, one per line
+	 * @param result the counters of the load
+	 * @return the well-formed pairs
+	 * @throws java.io.IOException when the input cannot be read
+	 */
+	static Pairs parsePairs(Reader input, Result result) throws IOException
+	{
+		Pairs pairs = new Pairs();
+
+		BufferedReader reader = new BufferedReader(input);
+		String line;
+
+		while ((line = reader.readLine()) != null)
+		{
+			line = line.trim();
+
+			if (line.isEmpty() || line.charAt(0) == '#')
+				continue;
+
+			++result.rows;
+
+			int comma = line.indexOf(',');
+
+			try
+			{
+				if (comma < 0)
+					throw new NumberFormatException(line);
+
+				int customer = Integer.parseInt(line.substring(0, comma).trim());
+				int cruise = Integer.parseInt(line.substring(comma + 1).trim());
+
+				if (pairs.count == pairs.customers.length)
+				{
+					pairs.customers = Arrays.copyOf(pairs.customers, 2 * pairs.count);
+					pairs.cruises = Arrays.copyOf(pairs.cruises, 2 * pairs.count);
+				}
+
+				pairs.customers[pairs.count] = customer;
+				pairs.cruises[pairs.count] = cruise;
+				++pairs.count;
+			}
+			catch (NumberFormatException e)
+			{
+				++result.rejected;
+			}
+		}
+
+		return pairs;
+	}
+
+	/*
+	* Validates, locks and writes count pairs on the connection of a running transaction and returns
+	* their statuses, 0 for the rejected ones.  BookingPipeline writes its batches through it too.
+	*/
+	static char[] write(ConnectionPool.PooledConnection pc, int[] customerIds, int[] cruiseNumbers, int count,
+				int[] rnums, boolean useCopy, Result result) throws SQLException
+	{
+		Connection conn = pc.getConnection();
+
+		// set-wise validation of the customers
+		Set<Integer> knownCustomers = new HashSet<Integer>();
+		Set<Integer> wantedCustomers = new HashSet<Integer>();
+
+		for (int i = 0; i < count; ++i)
+			wantedCustomers.add(customerIds[i]);
+
+		Array customerArray = conn.createArrayOf("int4", wantedCustomers.toArray(new Integer[0]));
+
+		try (ResultSet rs = DBproject.prepareAndBind(pc, "SELECT Customer.id FROM Customer WHERE Customer.id = ANY(?);", customerArray).executeQuery())
+		{
+			while (rs.next())
+				knownCustomers.add(rs.getInt(1));
+		}
+
+		// locks the booked cruises in cnum order so concurrent bookers wait for this load
+		Set<Integer> wantedCruises = new TreeSet<Integer>();
+
+		for (int i = 0; i < count; ++i)
+			wantedCruises.add(cruiseNumbers[i]);
+
+		//cnum -> { num_sold, seats, num_sold at start }
+		Map<Integer, int[]> seats = new HashMap<Integer, int[]>();
+		Array cruiseArray = conn.createArrayOf("int4", wantedCruises.toArray(new Integer[0]));
+		String lockQuery = "SELECT Cruise.cnum, Cruise.num_sold,\n" +
+				"	(SELECT MIN(Ship.seats) FROM CruiseInfo, Ship WHERE CruiseInfo.cruise_id = Cruise.cnum AND CruiseInfo.ship_id = Ship.id)\n" +
+				"FROM Cruise\n" +
+				"WHERE Cruise.cnum = ANY(?)\n" +
+				"ORDER BY Cruise.cnum\n" +
+				"FOR UPDATE OF Cruise;";
+
+		try (ResultSet rs = DBproject.prepareAndBind(pc, lockQuery, cruiseArray).executeQuery())
+		{
+			while (rs.next())
+			{
+				int sold = rs.getInt(2);
+				seats.put(rs.getInt(1), new int[] { sold, rs.getInt(3), sold });
+			}
+		}
+
+		// assigns R/W per cruise in input order
+		char[] statuses = new char[count];
+
+		for (int i = 0; i < count; ++i)
+		{
+			int[] cruise = seats.get(cruiseNumbers[i]);
+
+			if (cruise == null || !knownCustomers.contains(customerIds[i]))
+			{
+				++result.rejected;
+				continue;
+			}
+
+			statuses[i] = BookingEngine.decideStatus(cruise[0], cruise[1]);
+
+			if (statuses[i] == 'R')
+			{
+				++cruise[0];
+				++result.reserved;
+			}
+			else
+				++result.waitlisted;
+		}
+
+		if (useCopy)
+			copyReservations(conn, customerIds, cruiseNumbers, rnums, statuses, count);
+		else
+			insertReservations(pc, customerIds, cruiseNumbers, rnums, statuses, count);
+
+		PreparedStatement update = pc.getStatementCache().prepare("UPDATE Cruise SET num_sold = ? WHERE cnum = ?;");
+
+		for (Map.Entry<Integer, int[]> cruise : seats.entrySet())
+		{
+			if (cruise.getValue()[0] != cruise.getValue()[2])
+			{
+				update.setInt(1, cruise.getValue()[0]);
+				update.setInt(2, cruise.getKey());
+				update.addBatch();
+			}
+		}
+
+		update.executeBatch();
+
+		return statuses;
+	}
+
+	private static void copyReservations(Connection conn, int[] customerIds, int[] cruiseNumbers, int[] rnums,
+				char[] statuses, int count) throws SQLException
+	{
+		CopyIn copy = conn.unwrap(PGConnection.class).getCopyAPI().copyIn("COPY Reservation (rnum, ccid, cid, status) FROM STDIN WITH DELIMITER ','");
+		StringBuilder buffer = new StringBuilder(COPY_BUFFER_SIZE + 64);
+
+		try
+		{
+			for (int i = 0; i < count; ++i)
+			{
+				if (statuses[i] == 0)
+					continue;
+
+				buffer.append(rnums[i]).append(',').append(customerIds[i]).append(',')
+					.append(cruiseNumbers[i]).append(',').append(statuses[i]).append('\n');
+
+				if (buffer.length() >= COPY_BUFFER_SIZE)
+				{
+					byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+					copy.writeToCopy(bytes, 0, bytes.length);
+					buffer.setLength(0);
+				}
+			}
+
+			byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+			copy.writeToCopy(bytes, 0, bytes.length);
+			copy.endCopy();
+		}
+		finally
+		{
+			if (copy.isActive())
+				copy.cancelCopy();
+		}
+	}
+
+	private static void insertReservations(ConnectionPool.PooledConnection pc, int[] customerIds, int[] cruiseNumbers, int[] rnums,
+				char[] statuses, int count) throws SQLException
+	{
+		PreparedStatement insert = pc.getStatementCache().prepare("INSERT INTO Reservation (rnum, ccid, cid, status) VALUES (?, ?, ?, ?);");
+		int batched = 0;
+
+		for (int i = 0; i < count; ++i)
+		{
+			if (statuses[i] == 0)
+				continue;
+
+			insert.setInt(1, rnums[i]);
+			insert.setInt(2, customerIds[i]);
+			insert.setInt(3, cruiseNumbers[i]);
+			insert.setString(4, String.valueOf(statuses[i]));
+			insert.addBatch();
+
+			if (++batched == BATCH_SIZE)
+			{
+				insert.executeBatch();
+				batched = 0;
+			}
+		}
+
+		if (batched > 0)
+			insert.executeBatch();
+	}
+
+	/**
+	 * The bulk booking entry point
+	 *
+	 * @param args <dbname> <port> <user> <pairs file or -> [copy|batch]
+	 */
+	public static void main(String[] args) throws Exception
+	{
+		if (args.length < 4)
+		{
+			System.err.println("Usage: " + "java [-classpath <classpath>] " + BulkBookingLoader.class.getName() +
+						" <dbname> <port> <user> <pairs file or -> [copy|batch]");
+			return;
+		}
+
+		Class.forName("org.postgresql.Driver");
+
+		boolean useCopy = args.length < 5 || !args[4].equalsIgnoreCase("batch");
+		DBproject esql = new DBproject(args[0], args[1], args[2], "");
+
+		try (Reader input = args[3].equals("-") ? new InputStreamReader(System.in) : new FileReader(args[3]))
+		{
+			System.out.println(new BulkBookingLoader(esql).load(input, useCopy));
+		}
+		finally
+		{
+			esql.cleanup();
+		}
+	}
+}
@@ -0,0 +1,40 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+/*
+* A row of the Captain table.
+*/
+
+public final class Captain
+{
+	//select list MAPPER reads, in this order
+	public static final String COLUMNS = "Captain.id, Captain.fullname, Captain.nationality";
+
+	public static final RowMapper<Captain> MAPPER = rs -> new Captain(rs.getInt(1), RowMapper.getTrimmedString(rs, 2), RowMapper.getTrimmedString(rs, 3));
+
+	public final int id;
+	public final String fullname;
+	public final String nationality;
+
+	public Captain(int id, String fullname, String nationality)
+	{
+		this.id = id;
+		this.fullname = fullname;
+		this.nationality = nationality;
+	}
+
+	public String toString()
+	{
+		return String.format("(id: %d, fullname:%s, nationality:%s)", id, fullname, nationality);
+	}
+}
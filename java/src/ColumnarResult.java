@@ -0,0 +1,277 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.*;
+
+/*
+* This class holds a query result column by column.  Integer and date columns are kept in int
+* arrays (dates as epoch days), bigint columns in long arrays and CHAR(1) columns in char arrays,
+* so numeric results need one array per column instead of a boxed object per cell.  Every other
+* column is kept as a String array.
+*/
+
+public class ColumnarResult
+{
+	private static final int INITIAL_CAPACITY = 256;
+
+	private final String[] _names;
+	private final int[] _types;
+
+	//one of these is set per column, matching its type
+	private final int[][] _ints;
+	private final long[][] _longs;
+	private final char[][] _chars;
+	private final String[][] _strings;
+
+	//null flags, only allocated for columns that contained a null
+	private final boolean[][] _nulls;
+
+	private int _rowCount = 0;
+	private int _capacity = INITIAL_CAPACITY;
+
+	private ColumnarResult(ResultSetMetaData rsmd) throws SQLException
+	{
+		int numCol = rsmd.getColumnCount();
+
+		this._names = new String[numCol];
+		this._types = new int[numCol];
+		this._ints = new int[numCol][];
+		this._longs = new long[numCol][];
+		this._chars = new char[numCol][];
+		this._strings = new String[numCol][];
+		this._nulls = new boolean[numCol][];
+
+		for (int i = 0; i < numCol; ++i)
+		{
+			this._names[i] = rsmd.getColumnName(i + 1);
+
+			switch (rsmd.getColumnType(i + 1))
+			{
+				case Types.INTEGER:
+				case Types.SMALLINT:
+				case Types.TINYINT:
+				case Types.DATE:
+					this._types[i] = rsmd.getColumnType(i + 1);
+					this._ints[i] = new int[this._capacity];
+					break;
+				case Types.BIGINT:
+					this._types[i] = Types.BIGINT;
+					this._longs[i] = new long[this._capacity];
+					break;
+				case Types.CHAR:
+					if (rsmd.getPrecision(i + 1) == 1)
+					{
+						this._types[i] = Types.CHAR;
+						this._chars[i] = new char[this._capacity];
+					}
+					else
+					{
+						// wider CHAR(n) columns are kept as strings
+						this._types[i] = Types.VARCHAR;
+						this._strings[i] = new String[this._capacity];
+					}
+					break;
+				default:
+					this._types[i] = Types.VARCHAR;
+					this._strings[i] = new String[this._capacity];
+					break;
+			}
+		}
+	}
+
+	/**
+	 * Method to read every row of a result set into columns.
+	 *
+	 * @param rs the result set positioned before the first row
+	 * @return the columns of the result set
+	 * @throws java.sql.SQLException when failed to read the result set
+	 */
+	public static ColumnarResult read(ResultSet rs) throws SQLException
+	{
+		ColumnarResult result = new ColumnarResult(rs.getMetaData());
+
+		while (rs.next())
+			result.append(rs);
+
+		return result;
+	}
+
+	private void append(ResultSet rs) throws SQLException
+	{
+		if (this._rowCount == this._capacity)
+			grow();
+
+		int row = this._rowCount;
+
+		for (int i = 0; i < this._types.length; ++i)
+		{
+			int column = i + 1;
+			boolean isNull;
+
+			switch (this._types[i])
+			{
+				case Types.DATE:
+					java.sql.Date date = rs.getDate(column);
+					isNull = (date == null);
+					this._ints[i][row] = isNull ? 0 : (int) date.toLocalDate().toEpochDay();
+					break;
+				case Types.INTEGER:
+				case Types.SMALLINT:
+				case Types.TINYINT:
+					this._ints[i][row] = rs.getInt(column);
+					isNull = rs.wasNull();
+					break;
+				case Types.BIGINT:
+					this._longs[i][row] = rs.getLong(column);
+					isNull = rs.wasNull();
+					break;
+				case Types.CHAR:
+					this._chars[i][row] = RowMapper.getChar(rs, column);
+					isNull = rs.wasNull();
+					break;
+				default:
+					this._strings[i][row] = rs.getString(column);
+					isNull = rs.wasNull();
+					break;
+			}
+
+			if (isNull)
+			{
+				if (this._nulls[i] == null)
+					this._nulls[i] = new boolean[this._capacity];
+
+				this._nulls[i][row] = true;
+			}
+		}
+
+		++this._rowCount;
+	}
+
+	private void grow()
+	{
+		this._capacity *= 2;
+
+		for (int i = 0; i < this._types.length; ++i)
+		{
+			if (this._ints[i] != null)
+				this._ints[i] = Arrays.copyOf(this._ints[i], this._capacity);
+			if (this._longs[i] != null)
+				this._longs[i] = Arrays.copyOf(this._longs[i], this._capacity);
+			if (this._chars[i] != null)
+				this._chars[i] = Arrays.copyOf(this._chars[i], this._capacity);
+			if (this._strings[i] != null)
+				this._strings[i] = Arrays.copyOf(this._strings[i], this._capacity);
+			if (this._nulls[i] != null)
+				this._nulls[i] = Arrays.copyOf(this._nulls[i], this._capacity);
+		}
+	}
+
+	public int getRowCount()
+	{
+		return this._rowCount;
+	}
+
+	public int getColumnCount()
+	{
+		return this._names.length;
+	}
+
+	/**
+	 * Method to find a column by name, ignoring case.
+	 *
+	 * @param name the column name or label
+	 * @return the column index starting at 0, or -1 when there is no such column
+	 */
+	public int findColumn(String name)
+	{
+		for (int i = 0; i < this._names.length; ++i)
+		{
+			if (this._names[i].equalsIgnoreCase(name))
+				return i;
+		}
+
+		return -1;
+	}
+
+	public boolean isNull(int row, int column)
+	{
+		return this._nulls[column] != null && this._nulls[column][row];
+	}
+
+	/**
+	 * Method to return the backing array of an integer column.  Only the
+	 * first getRowCount() entries are valid.
+	 *
+	 * @param column the column index starting at 0
+	 * @return the values, dates as epoch days
+	 */
+	public int[] intColumn(int column)
+	{
+		if (this._ints[column] == null)
+			throw new IllegalArgumentException("Column " + this._names[column] + " is not an integer or date column");
+
+		return this._ints[column];
+	}
+
+	public int getInt(int row, int column)
+	{
+		return intColumn(column)[row];
+	}
+
+	public long getLong(int row, int column)
+	{
+		if (this._longs[column] != null)
+			return this._longs[column][row];
+
+		return intColumn(column)[row];
+	}
+
+	public char getChar(int row, int column)
+	{
+		if (this._chars[column] == null)
+			throw new IllegalArgumentException("Column " + this._names[column] + " is not a CHAR(1) column");
+
+		return this._chars[column][row];
+	}
+
+	public LocalDate getDate(int row, int column)
+	{
+		if (this._types[column] != Types.DATE)
+			throw new IllegalArgumentException("Column " + this._names[column] + " is not a date column");
+
+		return isNull(row, column) ? null : LocalDate.ofEpochDay(this._ints[column][row]);
+	}
+
+	public String getString(int row, int column)
+	{
+		if (this._strings[column] != null)
+			return this._strings[column][row];
+
+		if (isNull(row, column))
+			return null;
+
+		switch (this._types[column])
+		{
+			case Types.DATE:
+				return getDate(row, column).toString();
+			case Types.BIGINT:
+				return Long.toString(this._longs[column][row]);
+			case Types.CHAR:
+				return String.valueOf(this._chars[column][row]);
+			default:
+				return Integer.toString(this._ints[column][row]);
+		}
+	}
+}
@@ -0,0 +1,476 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/*
+* This class defines a bounded pool of physical PostgreSQL connections.  Every connection is
+* handed to exactly one caller at a time, so concurrent callers never share a connection.
+* Idle connections above the minimum size are closed after the idle timeout.
+*/
+
+public final class ConnectionPool
+{
+	public static final int DEFAULT_MIN_SIZE = 1;
+	public static final int DEFAULT_MAX_SIZE = 8;
+	public static final long DEFAULT_BORROW_TIMEOUT_MILLIS = 30000;
+	public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 300000;
+
+	//connections idle for less than this are handed out without a validation round trip
+	public static final long DEFAULT_VALIDATION_INTERVAL_MILLIS = 1000;
+
+	//seconds given to Connection.isValid when validating a borrowed connection
+	private static final int VALIDATION_TIMEOUT_SECONDS = 5;
+
+	/*
+	* A physical connection together with the prepared statements cached on it.
+	*/
+	public static class PooledConnection
+	{
+		private final Connection _connection;
+		private final StatementCache _statementCache;
+		private long _lastUsedMillis;
+
+		private PooledConnection(Connection connection)
+		{
+			this._connection = connection;
+			this._statementCache = new StatementCache(connection, StatementCache.DEFAULT_CAPACITY);
+			this._lastUsedMillis = System.currentTimeMillis();
+		}
+
+		public Connection getConnection()
+		{
+			return this._connection;
+		}
+
+		public StatementCache getStatementCache()
+		{
+			return this._statementCache;
+		}
+
+		private void close()
+		{
+			this._statementCache.close();
+
+			try
+			{
+				this._connection.close();
+			}
+			catch (SQLException e)
+			{
+				// ignored.
+			}
+		}
+	}
+
+	private final String _url;
+	private final String _user;
+	private final String _passwd;
+	private final int _minSize;
+	private final int _maxSize;
+	private final long _borrowTimeoutMillis;
+	private final long _idleTimeoutMillis;
+	private final long _validationIntervalMillis;
+
+	//most recently returned connection first, so the pool keeps reusing warm connections
+	private final ArrayDeque<PooledConnection> _idle = new ArrayDeque<PooledConnection>();
+	private final ScheduledExecutorService _evictor;
+
+	//number of open connections, idle or borrowed, including ones being opened
+	private int _total = 0;
+	private boolean _closed = false;
+
+	//borrow-wait metrics
+	private long _borrows = 0;
+	private long _waits = 0;
+	private long _timeouts = 0;
+	private long _totalWaitNanos = 0;
+	private long _maxWaitNanos = 0;
+	private long _created = 0;
+	private long _evicted = 0;
+	private long _invalidated = 0;
+
+	//statement cache counters of connections that have already been closed
+	private long _retiredStatementHits = 0;
+	private long _retiredStatementMisses = 0;
+	private long _retiredStatementEvictions = 0;
+
+	public ConnectionPool(String url, String user, String passwd, int minSize, int maxSize) throws SQLException
+	{
+		this(url, user, passwd, minSize, maxSize, DEFAULT_BORROW_TIMEOUT_MILLIS, DEFAULT_IDLE_TIMEOUT_MILLIS, DEFAULT_VALIDATION_INTERVAL_MILLIS);
+	}
+
+	public ConnectionPool(String url, String user, String passwd, int minSize, int maxSize,
+				long borrowTimeoutMillis, long idleTimeoutMillis, long validationIntervalMillis) throws SQLException
+	{
+		if (minSize < 0 || maxSize <= 0 || minSize > maxSize)
+			throw new IllegalArgumentException("Invalid pool size: min " + minSize + ", max " + maxSize);
+
+		this._url = url;
+		this._user = user;
+		this._passwd = passwd;
+		this._minSize = minSize;
+		this._maxSize = maxSize;
+		this._borrowTimeoutMillis = borrowTimeoutMillis;
+		this._idleTimeoutMillis = idleTimeoutMillis;
+		this._validationIntervalMillis = validationIntervalMillis;
+
+		// opens the minimum number of connections up front so a bad URL fails here
+		for (int i = 0; i < minSize; ++i)
+		{
+			PooledConnection pc = new PooledConnection(DriverManager.getConnection(url, user, passwd));
+
+			synchronized (this)
+			{
+				++this._total;
+				++this._created;
+				this._idle.addFirst(pc);
+			}
+		}
+
+		this._evictor = Executors.newSingleThreadScheduledExecutor(r ->
+		{
+			Thread t = new Thread(r, "ConnectionPool-evictor");
+			t.setDaemon(true);
+			return t;
+		});
+
+		long period = Math.max(1000, idleTimeoutMillis / 2);
+		this._evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Method to borrow a connection from the pool.  Waits up to the borrow
+	 * timeout when all connections are in use and the pool is at its maximum
+	 * size.  Connections idle for longer than the validation interval are
+	 * validated before they are handed out.
+	 *
+	 * @return a connection owned by the caller until it is released
+	 * @throws java.sql.SQLException when the pool is closed, the wait times out or a connection cannot be opened
+	 */
+	public PooledConnection borrow() throws SQLException
+	{
+		long start = System.nanoTime();
+		long deadline = start + TimeUnit.MILLISECONDS.toNanos(this._borrowTimeoutMillis);
+		boolean waited = false;
+
+		while (true)
+		{
+			PooledConnection pc = null;
+			boolean create = false;
+
+			synchronized (this)
+			{
+				while (pc == null && !create)
+				{
+					if (this._closed)
+						throw new SQLException("Connection pool is closed");
+
+					pc = this._idle.pollFirst();
+
+					if (pc == null && this._total < this._maxSize)
+					{
+						++this._total;
+						create = true;
+					}
+					else if (pc == null)
+					{
+						long remaining = deadline - System.nanoTime();
+
+						if (remaining <= 0)
+						{
+							++this._timeouts;
+							throw new SQLTransientConnectionException("Timed out after " + this._borrowTimeoutMillis + " ms waiting for a connection (" + this._maxSize + " in use)");
+						}
+
+						waited = true;
+
+						try
+						{
+							TimeUnit.NANOSECONDS.timedWait(this, remaining);
+						}
+						catch (InterruptedException e)
+						{
+							Thread.currentThread().interrupt();
+							throw new SQLException("Interrupted while waiting for a connection");
+						}
+					}
+				}
+			}
+
+			if (create)
+			{
+				try
+				{
+					pc = new PooledConnection(DriverManager.getConnection(this._url, this._user, this._passwd));
+				}
+				catch (SQLException e)
+				{
+					synchronized (this)
+					{
+						--this._total;
+						notifyAll();
+					}
+
+					throw e;
+				}
+
+				synchronized (this)
+				{
+					++this._created;
+				}
+			}
+			else if (!isUsable(pc))
+			{
+				destroy(pc, true);
+				continue;
+			}
+
+			recordBorrow(System.nanoTime() - start, waited);
+			return pc;
+		}
+	}
+
+	/**
+	 * Method to return a borrowed connection to the pool.  An open
+	 * transaction is rolled back and autocommit is restored first.
+	 *
+	 * @param pc the connection obtained from borrow
+	 */
+	public void release(PooledConnection pc)
+	{
+		if (pc == null)
+			return;
+
+		try
+		{
+			if (pc.getConnection().isClosed())
+			{
+				destroy(pc, true);
+				return;
+			}
+
+			if (!pc.getConnection().getAutoCommit())
+			{
+				pc.getConnection().rollback();
+				pc.getConnection().setAutoCommit(true);
+			}
+		}
+		catch (SQLException e)
+		{
+			destroy(pc, true);
+			return;
+		}
+
+		pc._lastUsedMillis = System.currentTimeMillis();
+
+		synchronized (this)
+		{
+			if (!this._closed)
+			{
+				this._idle.addFirst(pc);
+				notifyAll();
+				return;
+			}
+		}
+
+		destroy(pc, false);
+	}
+
+	/**
+	 * Method to discard a borrowed connection that is known to be broken
+	 * instead of returning it to the pool.
+	 *
+	 * @param pc the connection obtained from borrow
+	 */
+	public void invalidate(PooledConnection pc)
+	{
+		if (pc != null)
+			destroy(pc, true);
+	}
+
+	private boolean isUsable(PooledConnection pc)
+	{
+		if (System.currentTimeMillis() - pc._lastUsedMillis < this._validationIntervalMillis)
+			return true;
+
+		try
+		{
+			return pc.getConnection().isValid(VALIDATION_TIMEOUT_SECONDS);
+		}
+		catch (SQLException e)
+		{
+			return false;
+		}
+	}
+
+	private void destroy(PooledConnection pc, boolean invalid)
+	{
+		pc.close();
+
+		synchronized (this)
+		{
+			--this._total;
+			this._retiredStatementHits += pc.getStatementCache().getHits();
+			this._retiredStatementMisses += pc.getStatementCache().getMisses();
+			this._retiredStatementEvictions += pc.getStatementCache().getEvictions();
+
+			if (invalid)
+				++this._invalidated;
+
+			notifyAll();
+		}
+	}
+
+	private synchronized void recordBorrow(long waitNanos, boolean waited)
+	{
+		++this._borrows;
+		this._totalWaitNanos += waitNanos;
+
+		if (waited)
+			++this._waits;
+
+		if (waitNanos > this._maxWaitNanos)
+			this._maxWaitNanos = waitNanos;
+	}
+
+	/*
+	* Closes connections that stayed idle past the idle timeout, keeping at least the minimum size open.
+	*/
+	private void evictIdle()
+	{
+		List<PooledConnection> expired = new ArrayList<PooledConnection>();
+		long now = System.currentTimeMillis();
+
+		synchronized (this)
+		{
+			// the oldest idle connections sit at the end of the deque
+			while (this._total - expired.size() > this._minSize && !this._idle.isEmpty()
+				&& now - this._idle.peekLast()._lastUsedMillis > this._idleTimeoutMillis)
+			{
+				expired.add(this._idle.pollLast());
+			}
+		}
+
+		for (PooledConnection pc : expired)
+		{
+			destroy(pc, false);
+
+			synchronized (this)
+			{
+				++this._evicted;
+			}
+		}
+	}
+
+	public int getMinSize()
+	{
+		return this._minSize;
+	}
+
+	public int getMaxSize()
+	{
+		return this._maxSize;
+	}
+
+	public synchronized int getTotalConnections()
+	{
+		return this._total;
+	}
+
+	public synchronized int getIdleConnections()
+	{
+		return this._idle.size();
+	}
+
+	public synchronized long getBorrowCount()
+	{
+		return this._borrows;
+	}
+
+	public synchronized long getTotalWaitNanos()
+	{
+		return this._totalWaitNanos;
+	}
+
+	public synchronized long getMaxWaitNanos()
+	{
+		return this._maxWaitNanos;
+	}
+
+	public synchronized long getTimeoutCount()
+	{
+		return this._timeouts;
+	}
+
+	/**
+	 * Method to sum the prepared statement cache counters of the idle and
+	 * already closed connections.  Borrowed connections are not counted.
+	 *
+	 * @return a one line summary of the statement cache hits, misses and evictions
+	 */
+	public synchronized String getStatementCacheStats()
+	{
+		long hits = this._retiredStatementHits;
+		long misses = this._retiredStatementMisses;
+		long evictions = this._retiredStatementEvictions;
+
+		for (PooledConnection pc : this._idle)
+		{
+			hits += pc.getStatementCache().getHits();
+			misses += pc.getStatementCache().getMisses();
+			evictions += pc.getStatementCache().getEvictions();
+		}
+
+		long lookups = hits + misses;
+		double ratio = (lookups == 0) ? 0.0 : (100.0 * hits) / lookups;
+
+		return String.format("hits:%d misses:%d evictions:%d hit ratio:%.1f%%", hits, misses, evictions, ratio);
+	}
+
+	public synchronized String toString()
+	{
+		double avgWaitMicros = (this._borrows == 0) ? 0.0 : this._totalWaitNanos / 1000.0 / this._borrows;
+
+		return String.format("connections:%d (idle:%d, min:%d, max:%d) created:%d evicted:%d invalidated:%d borrows:%d waited:%d timeouts:%d avg wait:%.1fus max wait:%.1fus",
+					this._total, this._idle.size(), this._minSize, this._maxSize, this._created, this._evicted, this._invalidated,
+					this._borrows, this._waits, this._timeouts, avgWaitMicros, this._maxWaitNanos / 1000.0);
+	}
+
+	/**
+	 * Method to close the pool.  Idle connections are closed right away,
+	 * borrowed ones are closed when they are released.
+	 */
+	public void close()
+	{
+		List<PooledConnection> idle;
+
+		synchronized (this)
+		{
+			if (this._closed)
+				return;
+
+			this._closed = true;
+			idle = new ArrayList<PooledConnection>(this._idle);
+			this._idle.clear();
+			notifyAll();
+		}
+
+		this._evictor.shutdownNow();
+
+		for (PooledConnection pc : idle)
+			destroy(pc, false);
+	}
+}
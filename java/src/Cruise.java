@@ -0,0 +1,57 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.time.LocalDate;
+
+/*
+* A row of the Cruise table.
+*/
+
+public final class Cruise
+{
+	//select list MAPPER reads, in this order
+	public static final String COLUMNS = "Cruise.cnum, Cruise.cost, Cruise.num_sold, Cruise.num_stops, " +
+					"Cruise.actual_departure_date, Cruise.actual_arrival_date, Cruise.arrival_port, Cruise.departure_port";
+
+	public static final RowMapper<Cruise> MAPPER = rs -> new Cruise(rs.getInt(1), rs.getInt(2), rs.getInt(3), rs.getInt(4),
+					RowMapper.getDate(rs, 5), RowMapper.getDate(rs, 6),
+					RowMapper.getTrimmedString(rs, 7), RowMapper.getTrimmedString(rs, 8));
+
+	public final int cnum;
+	public final int cost;
+	public final int numSold;
+	public final int numStops;
+	public final LocalDate actualDepartureDate;
+	public final LocalDate actualArrivalDate;
+	public final String arrivalPort;
+	public final String departurePort;
+
+	public Cruise(int cnum, int cost, int numSold, int numStops, LocalDate actualDepartureDate, LocalDate actualArrivalDate,
+			String arrivalPort, String departurePort)
+	{
+		this.cnum = cnum;
+		this.cost = cost;
+		this.numSold = numSold;
+		this.numStops = numStops;
+		this.actualDepartureDate = actualDepartureDate;
+		this.actualArrivalDate = actualArrivalDate;
+		this.arrivalPort = arrivalPort;
+		this.departurePort = departurePort;
+	}
+
+	public String toString()
+	{
+		return String.format("(cnum:%d, cost:%d, num_sold:%d, num_stops:%d, actual_departure_date:%s, actual_arrival_date:%s, arrival_port:%s, departure_port:%s)",
+					cnum, cost, numSold, numStops, actualDepartureDate, actualArrivalDate, arrivalPort, departurePort);
+	}
+}
@@ -0,0 +1,132 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/*
+* The operations behind the seven menu entries.  DBproject answers them from Postgres and
+* InMemoryStore from data/*.csv loaded into column arrays, so the menu runs the same against either.
+*/
+
+public interface CruiseStore
+{
+	/**
+	 * Method to return the next primary key from a sequence.
+	 *
+	 * @param sequence one of the IdGenerator sequence names
+	 * @return a key no other client has been given
+	 * @throws java.sql.SQLException when the key cannot be reserved
+	 */
+	int nextId(String sequence) throws SQLException;
+
+	void insertShip(int id, String make, String model, int age, int seats) throws SQLException;
+
+	void insertCaptain(int id, String fullname, String nationality) throws SQLException;
+
+	void insertCruise(int cnum, int cost, int num_sold, int num_stops, String actual_departure_date, String actual_arrival_date,
+				String arrival_port, String departure_port) throws SQLException;
+
+	boolean customerExists(int id) throws SQLException;
+
+	boolean cruiseExists(int cnum) throws SQLException;
+
+	/**
+	 * Method to check whether a customer exists without waiting for the
+	 * answer.  Stores that answer from memory complete it right away.
+	 *
+	 * @param id the Customer.id
+	 * @return the answer, completed exceptionally when the check failed
+	 */
+	default CompletableFuture<Boolean> customerExistsAsync(int id)
+	{
+		try
+		{
+			return CompletableFuture.completedFuture(customerExists(id));
+		}
+		catch (SQLException e)
+		{
+			return CompletableFuture.failedFuture(e);
+		}
+	}
+
+	default CompletableFuture<Boolean> cruiseExistsAsync(int cnum)
+	{
+		try
+		{
+			return CompletableFuture.completedFuture(cruiseExists(cnum));
+		}
+		catch (SQLException e)
+		{
+			return CompletableFuture.failedFuture(e);
+		}
+	}
+
+	/**
+	 * Method to book a cruise for a customer: R while the cruise's ship has
+	 * a seat left, W otherwise.
+	 *
+	 * @param customerId the Customer.id of the passenger
+	 * @param cruiseNumber the Cruise.cnum to book
+	 * @return the reservation, or null when the customer or the cruise does not exist
+	 * @throws java.sql.SQLException when the booking failed
+	 */
+	BookingEngine.Booking bookCruise(int customerId, int cruiseNumber) throws SQLException;
+
+	/**
+	 * Method to return the seats left on a cruise, i.e. its ship's seats
+	 * minus its num_sold, the count bookings are confirmed against.
+	 *
+	 * @param cnum the Cruise.cnum
+	 * @return the seats left, or null when the cruise does not exist
+	 * @throws java.sql.SQLException when failed to read the seats
+	 */
+	Integer getAvailableSeats(int cnum) throws SQLException;
+
+	List<RepairLeaderboard.Entry> getTopRepairedShips(int k, String repairCode, String from, String to) throws SQLException;
+
+	/**
+	 * Method to write the ships with the most repairs as a report, with
+	 * the columns ship_id and repaircount.
+	 *
+	 * @param report the writer of the report
+	 * @param k the number of ships wanted, 0 for every ship with a repair
+	 * @param repairCode MJ, MN or SV to count only those repairs, null for every code
+	 * @param from the first day counted as yyyy-mm-dd, null for no lower bound
+	 * @param to the last day counted as yyyy-mm-dd, null for no upper bound
+	 * @return the number of ships written
+	 * @throws java.sql.SQLException when failed to count the repairs or write the report
+	 */
+	long writeTopRepairedShips(ReportWriter report, int k, String repairCode, String from, String to) throws SQLException;
+
+	int countPassengers(int cnum, char status) throws SQLException;
+
+	/**
+	 * Method to return one page of the reservations of a cruise with a
+	 * status, in increasing order of rnum.
+	 *
+	 * @param cnum the Cruise.cnum
+	 * @param status W, C or R
+	 * @param afterRnum the rnum of the last reservation of the previous page, -1 for the first page
+	 * @param pageSize the most reservations returned
+	 * @return the page, shorter than pageSize when it is the last one
+	 * @throws java.sql.SQLException when failed to read the reservations
+	 */
+	List<Reservation> listPassengers(int cnum, char status, int afterRnum, int pageSize) throws SQLException;
+
+	/**
+	 * Method to release whatever the store holds, e.g. its connections.
+	 */
+	void cleanup();
+}
@@ -0,0 +1,278 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.*;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.postgresql.PGConnection;
+
+/*
+* This class reloads the tables from data/*.csv through client-side COPY, so the CSV files do not
+* have to be copied into PGDATA.  Independent tables load in parallel, each on its own pooled
+* connection, and the tables with foreign keys load once their parents are done.  Optionally the
+* foreign keys and secondary indexes are dropped for the load and recreated afterwards, which lets
+* every table load at once and replaces row by row checks with one validation per constraint.
+*/
+
+public class CsvLoader
+{
+	private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+	/*
+	* A table, the CSV file it is loaded from and the columns in file order.
+	*/
+	static class Table
+	{
+		final String name;
+		final String file;
+		final String columns;
+
+		Table(String name, String file, String columns)
+		{
+			this.name = name;
+			this.file = file;
+			this.columns = columns;
+		}
+	}
+
+	//tables without foreign keys
+	static final Table[] INDEPENDENT_TABLES =
+	{
+		new Table("Customer", "customer.csv", "id, fname, lname, gtype, dob, address, phone, zipcode"),
+		new Table("Captain", "Captains.csv", "id, fullname, nationality"),
+		new Table("Ship", "Ships.csv", "id, make, model, age, seats"),
+		new Table("Technician", "technician.csv", "id, full_name"),
+		new Table("Cruise", "Cruises.csv", "cnum, cost, num_sold, num_stops, actual_departure_date, actual_arrival_date, arrival_port, departure_port")
+	};
+
+	//tables referencing the independent ones
+	static final Table[] DEPENDENT_TABLES =
+	{
+		new Table("Reservation", "reservation.csv", "rnum, ccid, cid, status"),
+		new Table("CruiseInfo", "Cruiseinfo.csv", "ciid, cruise_id, captain_id, ship_id"),
+		new Table("Repairs", "repairs.csv", "rid, repair_date, repair_code, captain_id, ship_id, technician_id"),
+		new Table("Schedule", "schedule.csv", "id, cruiseNum, departure_time, arrival_time")
+	};
+
+	private final DBproject _esql;
+	private final File _dataDir;
+
+	public CsvLoader(DBproject esql, File dataDir)
+	{
+		this._esql = esql;
+		this._dataDir = dataDir;
+	}
+
+	/**
+	 * Method to empty all nine tables and load them again from the CSV files.
+	 *
+	 * @param deferConstraints true to drop foreign keys and secondary indexes during the load
+	 * @param threads the number of tables loaded at the same time
+	 * @throws java.sql.SQLException when a load or a constraint failed
+	 */
+	public void reload(boolean deferConstraints, int threads) throws SQLException
+	{
+		List<Table> all = new ArrayList<Table>();
+		all.addAll(Arrays.asList(INDEPENDENT_TABLES));
+		all.addAll(Arrays.asList(DEPENDENT_TABLES));
+
+		StringBuilder names = new StringBuilder();
+		StringBuilder quoted = new StringBuilder();
+
+		for (Table table : all)
+		{
+			names.append(names.length() == 0 ? "" : ", ").append(table.name);
+			quoted.append(quoted.length() == 0 ? "" : ", ").append("'").append(table.name.toLowerCase()).append("'");
+		}
+
+		long begin = System.nanoTime();
+		this._esql.executePreparedUpdate("TRUNCATE " + names + ";");
+
+		List<String[]> foreignKeys = new ArrayList<String[]>();
+		List<String[]> indexes = new ArrayList<String[]>();
+
+		if (deferConstraints)
+		{
+			//{ table, constraint, definition } and { definition, index }
+			for (List<String> row : this._esql.executePreparedQueryAndReturnResult(
+					"SELECT conrelid::regclass::text, conname, pg_get_constraintdef(oid)\n" +
+					"FROM pg_constraint\n" +
+					"WHERE contype = 'f' AND conrelid::regclass::text IN (" + quoted + ");"))
+				foreignKeys.add(row.toArray(new String[0]));
+
+			// primary keys stay, they back the id lookups of the application
+			for (List<String> row : this._esql.executePreparedQueryAndReturnResult(
+					"SELECT indexdef, indexname\n" +
+					"FROM pg_indexes\n" +
+					"WHERE schemaname = current_schema() AND tablename IN (" + quoted + ")\n" +
+					"AND indexname NOT IN (SELECT conname FROM pg_constraint WHERE contype IN ('p', 'u'));"))
+				indexes.add(row.toArray(new String[0]));
+
+			List<String[]> droppedKeys = new ArrayList<String[]>();
+			List<String[]> droppedIndexes = new ArrayList<String[]>();
+
+			try
+			{
+				for (String[] fk : foreignKeys)
+				{
+					this._esql.executePreparedUpdate("ALTER TABLE " + fk[0] + " DROP CONSTRAINT " + fk[1] + ";");
+					droppedKeys.add(fk);
+				}
+
+				for (String[] index : indexes)
+				{
+					this._esql.executePreparedUpdate("DROP INDEX " + index[1] + ";");
+					droppedIndexes.add(index);
+				}
+
+				// nothing is checked during the load, so every table can go at once
+				loadParallel(all, threads);
+			}
+			catch (SQLException | RuntimeException | Error e)
+			{
+				// a partial load could break the foreign keys, so the tables are emptied again
+				// before the dropped constraints are put back
+				try
+				{
+					this._esql.executePreparedUpdate("TRUNCATE " + names + ";");
+					restoreConstraints(droppedIndexes, droppedKeys);
+				}
+				catch (SQLException restoreFailed)
+				{
+					e.addSuppressed(restoreFailed);
+				}
+
+				throw e;
+			}
+
+			restoreConstraints(droppedIndexes, droppedKeys);
+		}
+		else
+		{
+			loadParallel(Arrays.asList(INDEPENDENT_TABLES), threads);
+			loadParallel(Arrays.asList(DEPENDENT_TABLES), threads);
+		}
+
+		this._esql.executePreparedUpdate("ANALYZE " + names + ";");
+
+		System.out.println(String.format("Reloaded %d tables in %.3f s%s", all.size(), (System.nanoTime() - begin) / 1e9,
+						deferConstraints ? " (constraints deferred)" : ""));
+	}
+
+	/*
+	* Re-creates the secondary indexes and foreign keys dropped for a load.
+	*/
+	private void restoreConstraints(List<String[]> indexes, List<String[]> foreignKeys) throws SQLException
+	{
+		for (String[] index : indexes)
+			this._esql.executePreparedUpdate(index[0] + ";");
+
+		for (String[] fk : foreignKeys)
+			this._esql.executePreparedUpdate("ALTER TABLE " + fk[0] + " ADD CONSTRAINT " + fk[1] + " " + fk[2] + ";");
+	}
+
+	private void loadParallel(List<Table> tables, int threads) throws SQLException
+	{
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, tables.size())));
+
+		try
+		{
+			List<Future<Long>> loads = new ArrayList<Future<Long>>();
+
+			for (final Table table : tables)
+				loads.add(executor.submit(() -> load(table)));
+
+			for (int i = 0; i < tables.size(); ++i)
+			{
+				try
+				{
+					System.out.println(String.format("  %-12s %8d rows", tables.get(i).name, loads.get(i).get()));
+				}
+				catch (ExecutionException e)
+				{
+					if (e.getCause() instanceof SQLException)
+						throw (SQLException) e.getCause();
+
+					throw new SQLException("Unable to load " + tables.get(i).name + ": " + e.getCause(), e.getCause());
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+					throw new SQLException("Interrupted while loading " + tables.get(i).name);
+				}
+			}
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
+
+	/*
+	* Streams one CSV file to the server on a pooled connection.
+	*/
+	private long load(final Table table) throws SQLException, IOException
+	{
+		final File file = new File(this._dataDir, table.file);
+
+		try (Reader reader = new BufferedReader(new FileReader(file), COPY_BUFFER_SIZE))
+		{
+			return this._esql.executeInTransaction(pc ->
+			{
+				try
+				{
+					return pc.getConnection().unwrap(PGConnection.class).getCopyAPI().copyIn(
+						"COPY " + table.name + " (" + table.columns + ") FROM STDIN WITH DELIMITER ','", reader, COPY_BUFFER_SIZE);
+				}
+				catch (IOException e)
+				{
+					throw new SQLException("Unable to read " + file + ": " + e.getMessage(), e);
+				}
+			});
+		}
+	}
+
+	/**
+	 * The loader entry point
+	 *
+	 * @param args <dbname> <port> <user> [<data dir> [defer]]
+	 */
+	public static void main(String[] args) throws Exception
+	{
+		if (args.length < 3)
+		{
+			System.err.println("Usage: " + "java [-classpath <classpath>] " + CsvLoader.class.getName() +
+						" <dbname> <port> <user> [<data dir> [defer]]");
+			return;
+		}
+
+		Class.forName("org.postgresql.Driver");
+
+		File dataDir = new File(args.length > 3 ? args[3] : "../data");
+		boolean defer = args.length > 4 && args[4].equalsIgnoreCase("defer");
+		int threads = INDEPENDENT_TABLES.length + DEPENDENT_TABLES.length;
+
+		DBproject esql = new DBproject(args[0], args[1], args[2], "", 1, threads);
+
+		try
+		{
+			new CsvLoader(esql, dataDir).reload(defer, threads);
+		}
+		finally
+		{
+			esql.cleanup();
+		}
+	}
+}
@@ -0,0 +1,56 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.time.LocalDate;
+
+/*
+* A row of the Customer table.
+*/
+
+public final class Customer
+{
+	//select list MAPPER reads, in this order
+	public static final String COLUMNS = "Customer.id, Customer.fname, Customer.lname, Customer.gtype, Customer.dob, " +
+					"Customer.address, Customer.phone, Customer.zipcode";
+
+	public static final RowMapper<Customer> MAPPER = rs -> new Customer(rs.getInt(1), RowMapper.getTrimmedString(rs, 2),
+					RowMapper.getTrimmedString(rs, 3), RowMapper.getChar(rs, 4), RowMapper.getDate(rs, 5),
+					RowMapper.getTrimmedString(rs, 6), RowMapper.getTrimmedString(rs, 7), RowMapper.getTrimmedString(rs, 8));
+
+	public final int id;
+	public final String fname;
+	public final String lname;
+	public final char gtype;
+	public final LocalDate dob;
+	public final String address;
+	public final String phone;
+	public final String zipcode;
+
+	public Customer(int id, String fname, String lname, char gtype, LocalDate dob, String address, String phone, String zipcode)
+	{
+		this.id = id;
+		this.fname = fname;
+		this.lname = lname;
+		this.gtype = gtype;
+		this.dob = dob;
+		this.address = address;
+		this.phone = phone;
+		this.zipcode = zipcode;
+	}
+
+	public String toString()
+	{
+		return String.format("(id:%d, fname:%s, lname:%s, gtype:%c, dob:%s, address:%s, phone:%s, zipcode:%s)",
+					id, fname, lname, gtype, dob, address, phone, zipcode);
+	}
+}
@@ -14,6 +14,9 @@
 import java.sql.*;
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+import java.nio.file.Paths;
 import java.util.Date;
 import java.text.*;
 
@@ -21,13 +24,79 @@ import java.text.*;
 * This class defines a simple embedded SQL utility class that is designed to work with PostgreSQL JDBC drivers.
 */
 
-public class DBproject
+public final class DBproject implements CruiseStore
 {
-	//reference to physical database connection
-	private Connection _connection = null;
+	//rows fetched per round trip by the streaming query methods
+	public static final int DEFAULT_FETCH_SIZE = 1000;
+
+	//file the -metrics option keeps rewriting
+	public static final String QUERY_METRICS_FILE = "query-metrics.txt";
+
+	//file the -slowlog option writes, rotated by size
+	public static final String SLOW_QUERY_FILE = "slow-queries.log";
+
+	//longest an EXPLAIN for the slow query log may run
+	private static final int EXPLAIN_TIMEOUT_SECONDS = 5;
+
+	private static final Object[] NO_PARAMS = new Object[0];
+
+	//pool of physical database connections, each with its own prepared statement cache
+	private ConnectionPool _pool = null;
+
+	//connection of the transaction running on this thread, joined by every statement the thread issues
+	private final ThreadLocal<ConnectionPool.PooledConnection> _transaction = new ThreadLocal<ConnectionPool.PooledConnection>();
+
+	//cache updates of the transaction running on this thread, applied once it commits
+	private final ThreadLocal<List<Runnable>> _afterCommit = new ThreadLocal<List<Runnable>>();
+
+	//block allocator for the primary keys of new Ship, Captain, Cruise and Reservation rows
+	private final IdGenerator _ids = new IdGenerator(this);
+
+	//existence checks for the ids typed into BookCruise, probing only the index for ids the filters reject
+	private final ExistenceFilter _customerIds = new ExistenceFilter(this, "Customer", "id", ExistenceFilter.DEFAULT_REFRESH_MILLIS);
+	private final ExistenceFilter _cruiseIds = new ExistenceFilter(this, "Cruise", "cnum", ExistenceFilter.DEFAULT_REFRESH_MILLIS);
+
+	//read-through caches of the reference rows; Cruise rows expire quickly because num_sold changes on every booking
+	private final EntityCache<Ship> _ships = new EntityCache<Ship>("Ship", 1024, 300000,
+				id -> executePreparedQueryForObject("SELECT " + Ship.COLUMNS + " FROM Ship WHERE Ship.id = ?;", Ship.MAPPER, id));
+	private final EntityCache<Captain> _captains = new EntityCache<Captain>("Captain", 1024, 300000,
+				id -> executePreparedQueryForObject("SELECT " + Captain.COLUMNS + " FROM Captain WHERE Captain.id = ?;", Captain.MAPPER, id));
+	private final EntityCache<Customer> _customers = new EntityCache<Customer>("Customer", 10000, 300000,
+				id -> executePreparedQueryForObject("SELECT " + Customer.COLUMNS + " FROM Customer WHERE Customer.id = ?;", Customer.MAPPER, id));
+	private final EntityCache<Cruise> _cruises = new EntityCache<Cruise>("Cruise", 10000, 5000,
+				cnum -> executePreparedQueryForObject("SELECT " + Cruise.COLUMNS + " FROM Cruise WHERE Cruise.cnum = ?;", Cruise.MAPPER, cnum));
+
+	//seats left per cruise, bumped by every booking made through this process
+	private final SeatInventory _seatInventory = new SeatInventory(this, SeatInventory.DEFAULT_RECONCILE_MILLIS);
+
+	//ships ranked by repairs from trigger-maintained aggregates of Repairs
+	private final RepairLeaderboard _repairs = new RepairLeaderboard(this);
+
+	//passengers per cruise and status from a trigger-maintained count table
+	private final PassengerCounts _passengers = new PassengerCounts(this);
+
+	//single round trip booking path shared by every caller
+	private final BookingEngine _booking = new BookingEngine(this);
+
+	//cancellations and the promotions off the waitlist they trigger
+	private final WaitlistEngine _waitlist = new WaitlistEngine(this);
+
+	//latency histograms and counters per SQL template of every query helper
+	private final QueryMetrics _metrics = new QueryMetrics();
+
+	//statements over a threshold, explained in the background
+	private final SlowQueryLog _slowQueries = new SlowQueryLog(this::explain);
+
+	//threads of the async query API, created on first use
+	private ExecutorService _async = null;
 	static BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
 	
 	public DBproject(String dbname, String dbport, String user, String passwd) throws SQLException 
+	{
+		this(dbname, dbport, user, passwd, ConnectionPool.DEFAULT_MIN_SIZE, ConnectionPool.DEFAULT_MAX_SIZE);
+	}
+
+	public DBproject(String dbname, String dbport, String user, String passwd, int minPoolSize, int maxPoolSize) throws SQLException 
 	{
 		System.out.print("Connecting to database...");
 		
@@ -37,8 +106,8 @@ public class DBproject
 			String url = "jdbc:postgresql://localhost:" + dbport + "/" + dbname;
 			System.out.println("Connection URL: " + url + "\n");
 			
-			// obtain a physical connection
-	        	this._connection = DriverManager.getConnection(url, user, passwd);
+			// obtain the pool of physical connections
+	        	this._pool = new ConnectionPool(url, user, passwd, minPoolSize, maxPoolSize);
 	        	System.out.println("Done");
 		}
 		catch(Exception e)
@@ -58,18 +127,27 @@ public class DBproject
 	 * */
 	public void executeUpdate(String sql) throws SQLException 
 	{
+		QueryMetrics.Template template = this._metrics.template(sql);
+		ConnectionPool.PooledConnection pc = null;
 		Statement stmt = null;
 
 		try 
 		{
-			// creates a statement object
-			stmt = this._connection.createStatement();
+			// creates a statement object on a borrowed connection
+			pc = borrow();
+			stmt = pc.getConnection().createStatement();
 
 			// issues the update instruction
-			stmt.executeUpdate(sql);
+			long begin = System.nanoTime();
+			int rowCount = stmt.executeUpdate(sql);
+			long elapsed = System.nanoTime() - begin;
+
+			template.record(elapsed, -1, rowCount);
+			this._slowQueries.offer(sql, NO_PARAMS, elapsed);
 		} 
 		catch (Exception e) 
 		{
+			template.error();
 			System.err.println("Error - Unable to Execute Update: " + e.getMessage());
 			e.printStackTrace();
 		}
@@ -78,6 +156,8 @@ public class DBproject
 			// close the instruction
 			if (stmt != null)
 				stmt.close();
+
+			release(pc);
 		}
 	}//end executeUpdate
 
@@ -92,48 +172,197 @@ public class DBproject
 	 */
 	public int executeQueryAndPrintResult(String query) throws SQLException 
 	{
+		QueryMetrics.Template template = this._metrics.template(query);
+		ConnectionPool.PooledConnection pc = null;
 		Statement stmt = null;
 		int rowCount = 0;
 
 		try 
 		{
-			//creates a statement object
-			stmt = this._connection.createStatement();
+			//creates a statement object on a borrowed connection
+			pc = borrow();
+			stmt = pc.getConnection().createStatement();
 
 			//issues the query instruction
+			long begin = System.nanoTime();
 			ResultSet rs = stmt.executeQuery(query);
-			
-			/*
-			*  obtains the metadata object for the returned result set.  The metadata
-			*  contains row and column info.
-			*/
-			ResultSetMetaData rsmd = rs.getMetaData();
-			int numCol = rsmd.getColumnCount();
+			long executed = System.nanoTime();
+
+			rowCount = printResult(rs);
+
+			long fetched = System.nanoTime();
+
+			template.record(executed - begin, fetched - executed, rowCount);
+			this._slowQueries.offer(query, NO_PARAMS, fetched - begin);
+		} 
+		catch (Exception e) 
+		{
+			template.error();
+			System.err.println("Error - Unable to Execute Query: " + e.getMessage());
+			e.printStackTrace();
+		}
+		finally
+		{
+			if (stmt != null)
+				stmt.close();
+
+			release(pc);
+		}
+
+		return rowCount;
+	}
+
+	/**
+	 * Method to output a result set to standard out as an aligned report,
+	 * through one buffered writer.
+	 * 
+	 * @param rs the result set positioned before the first row
+	 * @return the number of rows printed
+	 * @throws java.sql.SQLException when failed to read the result set
+	 */
+	private static int printResult(ResultSet rs) throws SQLException
+	{
+		return (int) writeReport(rs, ReportWriter.toConsole());
+	}
+
+	static long writeReport(ResultSet rs, ReportWriter report) throws SQLException
+	{
+		try
+		{
+			return report.write(rs);
+		}
+		catch (IOException e)
+		{
+			throw new SQLException("Unable to write the report: " + e.getMessage(), e);
+		}
+	}
+	
+	/**
+	 * Method to execute an input query SQL instruction (i.e. SELECT).  This
+	 * method issues the query to the DBMS and returns the results as
+	 * a list of records. Each record in turn is a list of attribute values
+	 * 
+	 * @param query the input query string
+	 * @return the query result as a list of records
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public List<List<String>> executeQueryAndReturnResult(String query) throws SQLException 
+	{
+		QueryMetrics.Template template = this._metrics.template(query);
+		ConnectionPool.PooledConnection pc = null;
+		Statement stmt = null;
+		List<List<String>> result = new ArrayList<List<String>>(); 
+
+		try 
+		{
+			// creates a statement object on a borrowed connection
+			pc = borrow();
+			stmt = pc.getConnection().createStatement();
+
+			//issues the query instruction 
+			long begin = System.nanoTime();
+			ResultSet rs = stmt.executeQuery(query); 
+			long executed = System.nanoTime();
+
+			result = collectResult(rs);
+
+			long fetched = System.nanoTime();
+
+			template.record(executed - begin, fetched - executed, result.size());
+			this._slowQueries.offer(query, NO_PARAMS, fetched - begin);
+		} 
+		catch (Exception e) 
+		{
+			template.error();
+			System.err.println("Error - Unable to Execute Query: " + e.getMessage());
+			e.printStackTrace();
+		}
+		finally
+		{
+			// close the instruction
+			if (stmt != null)
+				stmt.close();
+
+			release(pc);
+		}
+
+		return result; 
+	}//end executeQueryAndReturnResult
+
+	/**
+	 * Method to save the records of a result set as a list of records.  Each
+	 * record in turn is a list of attribute values.
+	 * 
+	 * @param rs the result set positioned before the first row
+	 * @return the records of the result set
+	 * @throws java.sql.SQLException when failed to read the result set
+	 */
+	static List<List<String>> collectResult(ResultSet rs) throws SQLException
+	{
+		List<List<String>> result = new ArrayList<List<String>>();
+ 
+		/*
+	 	* obtains the metadata object for the returned result set.  The metadata 
+	 	* contains row and column info. 
+		*/ 
+		ResultSetMetaData rsmd = rs.getMetaData(); 
+		int numCol = rsmd.getColumnCount(); 
+ 
+		//iterates through the result set and saves the data returned by the query.
+		while (rs.next())
+		{
+			List<String> record = new ArrayList<>(); 
 		
-			//iterates through the result set and output them to standard out.
-			boolean outputHeader = true;
-			while (rs.next())
-			{
-				if(outputHeader)
-				{
-					for(int i = 1; i <= numCol; i++)
-					{
-						System.out.print(rsmd.getColumnName(i) + "\t");
-			    	}
+			for (int i=1; i<=numCol; ++i) 
+				record.add(rs.getString(i)); 
+		
+			result.add(record); 
+	
+		}//end while 
 
-			    	System.out.println();
-			    	outputHeader = false;
-				}
+		return result;
+	}
+	
+	/**
+	 * Method to execute an input query SQL instruction (i.e. SELECT).  This
+	 * method issues the query to the DBMS and returns the number of results
+	 * 
+	 * @param query the input query string
+	 * @return the number of rows returned
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public int executeQuery(String query) throws SQLException 
+	{
+		//creates a statement object on a borrowed connection
+		QueryMetrics.Template template = this._metrics.template(query);
+		ConnectionPool.PooledConnection pc = null;
+		Statement stmt = null;
+		int rowCount = 0;
 
-				for (int i=1; i<=numCol; ++i)
-					System.out.print (rs.getString(i) + "\t");
+		try 
+		{
+			pc = borrow();
+			stmt = pc.getConnection().createStatement();
+			
+			//issues the query instruction
+			long begin = System.nanoTime();
+			ResultSet rs = stmt.executeQuery(query);
+			long executed = System.nanoTime();
 
-				System.out.println();
-				++rowCount;
+			//iterates through the result set and count nuber of results.
+			while (rs.next())
+			{
+				rowCount++;
 			}//end while
+
+			long fetched = System.nanoTime();
+
+			template.record(executed - begin, fetched - executed, rowCount);
+			this._slowQueries.offer(query, NO_PARAMS, fetched - begin);
 		} 
 		catch (Exception e) 
 		{
+			template.error();
 			System.err.println("Error - Unable to Execute Query: " + e.getMessage());
 			e.printStackTrace();
 		}
@@ -141,108 +370,1216 @@ public class DBproject
 		{
 			if (stmt != null)
 				stmt.close();
+
+			release(pc);
 		}
 
 		return rowCount;
 	}
-	
+	
+	/**
+	 * Method to bind the parameters of a prepared statement in order.
+	 * 
+	 * @param stmt the prepared statement
+	 * @param params the values for the '?' markers, in order
+	 * @throws java.sql.SQLException when a value cannot be bound
+	 */
+	static void bindParameters(PreparedStatement stmt, Object... params) throws SQLException
+	{
+		for (int i = 0; i < params.length; ++i)
+		{
+			Object param = params[i];
+
+			// CHAR columns such as Reservation.status are bound as one-character strings
+			if (param instanceof Character)
+				stmt.setString(i + 1, param.toString());
+			else
+				stmt.setObject(i + 1, param);
+		}
+	}
+
+	/**
+	 * Method to fetch the cached prepared statement for a SQL template on a
+	 * borrowed connection and bind its parameters.
+	 * 
+	 * @param pc the borrowed connection
+	 * @param sql the SQL template with '?' bind markers
+	 * @param params the values for the bind markers, in order
+	 * @return the bound statement, owned by the connection's statement cache
+	 * @throws java.sql.SQLException when the statement cannot be prepared or bound
+	 */
+	static PreparedStatement prepareAndBind(ConnectionPool.PooledConnection pc, String sql, Object... params) throws SQLException
+	{
+		PreparedStatement stmt = pc.getStatementCache().prepare(sql);
+
+		bindParameters(stmt, params);
+
+		return stmt;
+	}
+
+	/*
+	* Work run by executeInTransaction on a single borrowed connection.
+	*/
+	public interface TransactionWork<T>
+	{
+		T run(ConnectionPool.PooledConnection pc) throws SQLException;
+	}
+
+	/**
+	 * Method to run several statements as one transaction on one borrowed
+	 * connection.  The transaction is committed when the work returns and
+	 * rolled back when it throws.  Every statement the work issues through
+	 * this object on the same thread joins the transaction, and so does a
+	 * nested call, which leaves the commit to the outermost one.  Cache
+	 * updates queued with afterCommit run once the commit succeeded.
+	 * 
+	 * @param work the statements to run
+	 * @return the value returned by the work
+	 * @throws java.sql.SQLException when the work or the commit failed
+	 */
+	public <T> T executeInTransaction(TransactionWork<T> work) throws SQLException
+	{
+		ConnectionPool.PooledConnection joined = this._transaction.get();
+
+		if (joined != null)
+			return work.run(joined);
+
+		ConnectionPool.PooledConnection pc = this._pool.borrow();
+		List<Runnable> afterCommit = new ArrayList<Runnable>();
+		T result;
+
+		try
+		{
+			pc.getConnection().setAutoCommit(false);
+			this._transaction.set(pc);
+			this._afterCommit.set(afterCommit);
+
+			result = work.run(pc);
+
+			pc.getConnection().commit();
+		}
+		catch (SQLException | RuntimeException e)
+		{
+			try
+			{
+				pc.getConnection().rollback();
+			}
+			catch (SQLException rollbackFailure)
+			{
+				e.addSuppressed(rollbackFailure);
+			}
+
+			throw e;
+		}
+		finally
+		{
+			this._transaction.remove();
+			this._afterCommit.remove();
+
+			// restores autocommit before the connection goes back to the pool
+			this._pool.release(pc);
+		}
+
+		for (Runnable update : afterCommit)
+			update.run();
+
+		return result;
+	}
+
+	/**
+	 * Method to run several statements as a transaction of their own on
+	 * another connection, even when this thread is inside one.  It commits
+	 * whatever later happens to the transaction it interrupts, for setup
+	 * that must outlive a rolled-back batch.  The work must not wait on
+	 * rows that transaction has written.
+	 * 
+	 * @param work the statements to run
+	 * @return the value returned by the work
+	 * @throws java.sql.SQLException when the work or the commit failed
+	 */
+	public <T> T executeInOwnTransaction(TransactionWork<T> work) throws SQLException
+	{
+		ConnectionPool.PooledConnection outer = this._transaction.get();
+		List<Runnable> outerAfterCommit = this._afterCommit.get();
+
+		this._transaction.remove();
+		this._afterCommit.remove();
+
+		try
+		{
+			return executeInTransaction(work);
+		}
+		finally
+		{
+			if (outer != null)
+			{
+				this._transaction.set(outer);
+				this._afterCommit.set(outerAfterCommit);
+			}
+		}
+	}
+
+	/**
+	 * Method to apply an update of the in-memory caches once the writes it
+	 * reflects are durable: at once outside a transaction, after the commit
+	 * inside one, and never when the transaction rolls back.
+	 * 
+	 * @param update the cache update
+	 */
+	public void afterCommit(Runnable update)
+	{
+		List<Runnable> queued = this._afterCommit.get();
+
+		if (queued == null)
+			update.run();
+		else
+			queued.add(update);
+	}
+
+	/*
+	* Returns how many cache updates the transaction on this thread has queued, to pass to
+	* discardAfterCommit when the work since then is rolled back to a savepoint.
+	*/
+	int afterCommitMark()
+	{
+		List<Runnable> queued = this._afterCommit.get();
+
+		return (queued == null) ? 0 : queued.size();
+	}
+
+	/*
+	* Drops the cache updates queued since afterCommitMark returned mark.
+	*/
+	void discardAfterCommit(int mark)
+	{
+		List<Runnable> queued = this._afterCommit.get();
+
+		if (queued != null)
+			queued.subList(mark, queued.size()).clear();
+	}
+
+	/*
+	* True while this thread runs inside executeInTransaction.
+	*/
+	boolean inTransaction()
+	{
+		return this._transaction.get() != null;
+	}
+
+	/*
+	* Returns the connection of the transaction running on this thread, or borrows one from the pool.
+	*/
+	private ConnectionPool.PooledConnection borrow() throws SQLException
+	{
+		ConnectionPool.PooledConnection pc = this._transaction.get();
+
+		return (pc != null) ? pc : this._pool.borrow();
+	}
+
+	/*
+	* Gives a borrowed connection back; the connection of a running transaction stays with it.
+	*/
+	private void release(ConnectionPool.PooledConnection pc)
+	{
+		if (pc != this._transaction.get())
+			this._pool.release(pc);
+	}
+
+	/**
+	 * Method to execute a parameterized update SQL statement through the
+	 * prepared statement cache.  Values are passed as bind variables instead
+	 * of being formatted into the SQL text.
+	 * 
+	 * @param sql the SQL template with '?' bind markers
+	 * @param params the values for the bind markers, in order
+	 * @return the number of rows affected
+	 * @throws java.sql.SQLException when update failed
+	 */
+	public int executePreparedUpdate(String sql, Object... params) throws SQLException
+	{
+		QueryMetrics.Template template = this._metrics.template(sql);
+		ConnectionPool.PooledConnection pc = borrow();
+
+		try
+		{
+			PreparedStatement stmt = pc.getStatementCache().prepare(sql);
+
+			bindParameters(stmt, params);
+
+			long begin = System.nanoTime();
+			int rowCount = stmt.executeUpdate();
+			long elapsed = System.nanoTime() - begin;
+
+			template.record(elapsed, -1, rowCount);
+			this._slowQueries.offer(sql, params, elapsed);
+			return rowCount;
+		}
+		catch (SQLException | RuntimeException e)
+		{
+			template.error();
+			throw e;
+		}
+		finally
+		{
+			release(pc);
+		}
+	}//end executePreparedUpdate
+
+	/*
+	* Executes a bound query and hands its result set to a reader, timing the execute and fetch
+	* phases under the query's template and offering the total to the slow query log.  rows gives
+	* the row count from the reader's value, or is null when the count is not known.
+	*/
+	private <T> T readTimed(String query, Object[] params, PreparedStatement stmt, ResultSetReader<T> reader, ToLongFunction<? super T> rows) throws SQLException
+	{
+		QueryMetrics.Template template = this._metrics.template(query);
+		long begin = System.nanoTime();
+
+		try (ResultSet rs = stmt.executeQuery())
+		{
+			long executed = System.nanoTime();
+			T result = reader.read(rs);
+			long fetched = System.nanoTime();
+
+			template.record(executed - begin, fetched - executed, (rows == null) ? -1 : rows.applyAsLong(result));
+			this._slowQueries.offer(query, params, fetched - begin);
+			return result;
+		}
+		catch (SQLException | RuntimeException e)
+		{
+			template.error();
+			throw e;
+		}
+	}
+
+	/**
+	 * Method to execute a parameterized query through the prepared statement
+	 * cache and output the results to standard out.
+	 * 
+	 * @param query the SQL template with '?' bind markers
+	 * @param params the values for the bind markers, in order
+	 * @return the number of rows returned
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public int executePreparedQueryAndPrintResult(String query, Object... params) throws SQLException
+	{
+		// rows are printed as they arrive, so the result is read over a cursor
+		return executeInTransaction(pc ->
+		{
+			PreparedStatement stmt = prepareAndBind(pc, query, params);
+
+			stmt.setFetchSize(DEFAULT_FETCH_SIZE);
+
+			try
+			{
+				return readTimed(query, params, stmt, DBproject::printResult, rowCount -> rowCount);
+			}
+			finally
+			{
+				stmt.setFetchSize(0);
+			}
+		});
+	}
+
+	/**
+	 * Method to execute a parameterized query over a server-side cursor and
+	 * write the rows to a report as they arrive.
+	 * 
+	 * @param query the SQL template with '?' bind markers
+	 * @param report the report to write, e.g. ReportWriter.toFile("repairs.csv")
+	 * @param params the values for the bind markers, in order
+	 * @return the number of rows written
+	 * @throws java.sql.SQLException when failed to execute the query or write the report
+	 */
+	public long executePreparedQueryAndWriteReport(String query, ReportWriter report, Object... params) throws SQLException
+	{
+		return executeInTransaction(pc ->
+		{
+			PreparedStatement stmt = prepareAndBind(pc, query, params);
+
+			stmt.setFetchSize(DEFAULT_FETCH_SIZE);
+
+			try
+			{
+				return readTimed(query, params, stmt, rs -> writeReport(rs, report), rowCount -> rowCount);
+			}
+			finally
+			{
+				stmt.setFetchSize(0);
+			}
+		});
+	}
+
+	/*
+	* Callback given each row of a streamed query.
+	*/
+	public interface RowHandler
+	{
+		void row(ResultSet rs) throws SQLException;
+	}
+
+	/**
+	 * Method to execute a parameterized query over a server-side cursor and
+	 * hand each row to a callback as it arrives.  At most fetchSize rows are
+	 * held in memory, however large the result is.
+	 * 
+	 * @param query the SQL template with '?' bind markers
+	 * @param fetchSize the number of rows fetched per round trip
+	 * @param handler the callback given each row, it must not keep the result set
+	 * @param params the values for the bind markers, in order
+	 * @return the number of rows returned
+	 * @throws java.sql.SQLException when failed to execute the query or the callback failed
+	 */
+	public int executePreparedQueryForEach(String query, int fetchSize, RowHandler handler, Object... params) throws SQLException
+	{
+		// the driver only uses a cursor outside of autocommit
+		return executeInTransaction(pc ->
+		{
+			PreparedStatement stmt = prepareAndBind(pc, query, params);
+
+			stmt.setFetchSize(fetchSize);
+
+			try
+			{
+				return readTimed(query, params, stmt, rs ->
+				{
+					int rowCount = 0;
+
+					while (rs.next())
+					{
+						handler.row(rs);
+						++rowCount;
+					}
+
+					return rowCount;
+				}, rowCount -> rowCount);
+			}
+			finally
+			{
+				stmt.setFetchSize(0);
+			}
+		});
+	}
+
+	/**
+	 * Method to open a server-side cursor over a parameterized query for
+	 * iterating its rows one at a time.  The cursor keeps a pooled
+	 * connection until it is closed.
+	 * 
+	 * @param query the SQL template with '?' bind markers
+	 * @param fetchSize the number of rows fetched per round trip
+	 * @param params the values for the bind markers, in order
+	 * @return the open cursor, positioned before the first row
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public ResultCursor openCursor(String query, int fetchSize, Object... params) throws SQLException
+	{
+		QueryMetrics.Template template = this._metrics.template(query);
+		ConnectionPool.PooledConnection pc = borrow();
+		boolean joined = (pc == this._transaction.get());
+
+		try
+		{
+			pc.getConnection().setAutoCommit(false);
+
+			PreparedStatement stmt = prepareAndBind(pc, query, params);
+
+			stmt.setFetchSize(fetchSize);
+
+			long begin = System.nanoTime();
+			ResultSet rs = stmt.executeQuery();
+			long elapsed = System.nanoTime() - begin;
+
+			this._slowQueries.offer(query, params, elapsed);
+
+			// a cursor inside a running transaction leaves the connection to it
+			return new ResultCursor(joined ? null : this._pool, pc, stmt, rs, template, elapsed);
+		}
+		catch (SQLException | RuntimeException e)
+		{
+			template.error();
+			release(pc);
+			throw e;
+		}
+	}
+
+	/**
+	 * Method to execute a parameterized query through the prepared statement
+	 * cache and return the results as a list of records.
+	 * 
+	 * @param query the SQL template with '?' bind markers
+	 * @param params the values for the bind markers, in order
+	 * @return the query result as a list of records
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public List<List<String>> executePreparedQueryAndReturnResult(String query, Object... params) throws SQLException
+	{
+		return read(query, DBproject::collectResult, List::size, params);
+	}//end executePreparedQueryAndReturnResult
+
+	/**
+	 * Method to execute a parameterized query through the prepared statement
+	 * cache and return the number of results.
+	 * 
+	 * @param query the SQL template with '?' bind markers
+	 * @param params the values for the bind markers, in order
+	 * @return the number of rows returned
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public int executePreparedQuery(String query, Object... params) throws SQLException
+	{
+		return read(query, rs ->
+		{
+			int rowCount = 0;
+
+			while (rs.next())
+				rowCount++;
+
+			return rowCount;
+		}, rowCount -> rowCount, params);
+	}
+
+	/*
+	* Reads a whole result set into a value.
+	*/
+	public interface ResultSetReader<T>
+	{
+		T read(ResultSet rs) throws SQLException;
+	}
+
+	/**
+	 * Method to execute a parameterized query through the prepared statement
+	 * cache and let a reader turn the result set into a value.  The result
+	 * set is closed and the connection released when the reader returns.
+	 * 
+	 * @param query the SQL template with '?' bind markers
+	 * @param reader the reader given the open result set
+	 * @param params the values for the bind markers, in order
+	 * @return the value returned by the reader
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public <T> T executePreparedQueryAndRead(String query, ResultSetReader<T> reader, Object... params) throws SQLException
+	{
+		return read(query, reader, null, params);
+	}
+
+	/*
+	* executePreparedQueryAndRead for the helpers that know how many rows their reader's value holds.
+	*/
+	private <T> T read(String query, ResultSetReader<T> reader, ToLongFunction<? super T> rows, Object... params) throws SQLException
+	{
+		ConnectionPool.PooledConnection pc = borrow();
+
+		try
+		{
+			return readTimed(query, params, prepareAndBind(pc, query, params), reader, rows);
+		}
+		finally
+		{
+			release(pc);
+		}
+	}
+
+	/**
+	 * Method to execute a parameterized query and map every row to an
+	 * object.
+	 * 
+	 * @param query the SQL template with '?' bind markers
+	 * @param mapper the mapper given each row, e.g. Cruise.MAPPER
+	 * @param params the values for the bind markers, in order
+	 * @return the mapped rows
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public <T> List<T> executePreparedQueryAndMap(String query, RowMapper<T> mapper, Object... params) throws SQLException
+	{
+		return read(query, rs ->
+		{
+			List<T> result = new ArrayList<T>();
+
+			while (rs.next())
+				result.add(mapper.map(rs));
+
+			return result;
+		}, List::size, params);
+	}
+
+	/**
+	 * Method to execute a parameterized query and map its first row to an
+	 * object.
+	 * 
+	 * @param query the SQL template with '?' bind markers
+	 * @param mapper the mapper given the first row
+	 * @param params the values for the bind markers, in order
+	 * @return the mapped row, or null when the query returned no rows
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public <T> T executePreparedQueryForObject(String query, RowMapper<T> mapper, Object... params) throws SQLException
+	{
+		return read(query, rs -> rs.next() ? mapper.map(rs) : null, object -> (object == null) ? 0 : 1, params);
+	}
+
+	/**
+	 * Method to execute a parameterized query and read the first column of
+	 * its first row as an int, without going through a String.
+	 * 
+	 * @param query the SQL template with '?' bind markers
+	 * @param ifNone the value returned when there is no row or the value is null
+	 * @param params the values for the bind markers, in order
+	 * @return the value of the first column
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public int executePreparedQueryForInt(String query, int ifNone, Object... params) throws SQLException
+	{
+		return executePreparedQueryAndRead(query, rs ->
+		{
+			if (!rs.next())
+				return ifNone;
+
+			int value = rs.getInt(1);
+
+			return rs.wasNull() ? ifNone : value;
+		}, params);
+	}
+
+	/**
+	 * Method to execute a parameterized query and read the first column of
+	 * its first row as a long.
+	 * 
+	 * @param query the SQL template with '?' bind markers
+	 * @param ifNone the value returned when there is no row or the value is null
+	 * @param params the values for the bind markers, in order
+	 * @return the value of the first column
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public long executePreparedQueryForLong(String query, long ifNone, Object... params) throws SQLException
+	{
+		return executePreparedQueryAndRead(query, rs ->
+		{
+			if (!rs.next())
+				return ifNone;
+
+			long value = rs.getLong(1);
+
+			return rs.wasNull() ? ifNone : value;
+		}, params);
+	}
+
+	/**
+	 * Method to execute a parameterized query and keep the result column
+	 * by column, with integer, date and CHAR(1) columns in primitive arrays.
+	 * 
+	 * @param query the SQL template with '?' bind markers
+	 * @param params the values for the bind markers, in order
+	 * @return the columns of the result
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public ColumnarResult executePreparedQueryColumnar(String query, Object... params) throws SQLException
+	{
+		return read(query, ColumnarResult::read, ColumnarResult::getRowCount, params);
+	}
+
+	/*
+	* A blocking call run by the async query API.
+	*/
+	public interface SqlCall<T>
+	{
+		T call() throws SQLException;
+	}
+
+	/**
+	 * Method to run a blocking call on the async executor, where it borrows
+	 * its own pooled connection, so independent calls run concurrently.
+	 * Inside executeInTransaction the call runs at once on the calling
+	 * thread instead, so it joins the transaction and sees its rows.
+	 * 
+	 * @param call the call to run
+	 * @return the future of the call's value
+	 */
+	public <T> CompletableFuture<T> supplyAsync(SqlCall<T> call)
+	{
+		CompletableFuture<T> future = new CompletableFuture<T>();
+		Runnable task = () ->
+		{
+			try
+			{
+				future.complete(call.call());
+			}
+			catch (SQLException | RuntimeException e)
+			{
+				future.completeExceptionally(e);
+			}
+		};
+
+		if (this._transaction.get() != null)
+			task.run();
+		else
+			asyncExecutor().execute(task);
+
+		return future;
+	}
+
+	/*
+	* Virtual threads when the JVM has them; otherwise one platform thread per pooled connection, as
+	* a call never has more than one connection to work on.
+	*/
+	private synchronized ExecutorService asyncExecutor()
+	{
+		if (this._async == null)
+		{
+			ExecutorService virtual = HttpService.newVirtualThreadExecutor();
+
+			this._async = (virtual != null) ? virtual : Executors.newFixedThreadPool(this._pool.getMaxSize(), r ->
+			{
+				Thread t = new Thread(r, "DBproject-async");
+				t.setDaemon(true);
+				return t;
+			});
+		}
+
+		return this._async;
+	}
+
+	/**
+	 * Method to wait for a future of the async query API and return its
+	 * value, rethrowing the call's own exception.
+	 * 
+	 * @param future the future
+	 * @return the value of the call
+	 * @throws java.sql.SQLException when the call failed with one
+	 */
+	public static <T> T await(CompletableFuture<T> future) throws SQLException
+	{
+		try
+		{
+			return future.get();
+		}
+		catch (ExecutionException e)
+		{
+			if (e.getCause() instanceof SQLException)
+				throw (SQLException) e.getCause();
+
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+
+			throw new SQLException(e.getCause());
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while waiting for a query", e);
+		}
+	}
+
+	/**
+	 * Method to execute a parameterized query on the async executor and
+	 * return the results as a list of records.
+	 * 
+	 * @param query the SQL template with '?' bind markers
+	 * @param params the values for the bind markers, in order
+	 * @return the future of the query result
+	 */
+	public CompletableFuture<List<List<String>>> executeQueryAsync(String query, Object... params)
+	{
+		return supplyAsync(() -> executePreparedQueryAndReturnResult(query, params));
+	}
+
+	/**
+	 * Method to execute a parameterized query on the async executor and let
+	 * a reader turn the result set into a value.
+	 * 
+	 * @param query the SQL template with '?' bind markers
+	 * @param reader the reader given the open result set, on the executor's thread
+	 * @param params the values for the bind markers, in order
+	 * @return the future of the value returned by the reader
+	 */
+	public <T> CompletableFuture<T> executeQueryAsync(String query, ResultSetReader<T> reader, Object... params)
+	{
+		return supplyAsync(() -> executePreparedQueryAndRead(query, reader, params));
+	}
+
+	/**
+	 * Method to execute a parameterized update on the async executor.  It
+	 * commits on its own unless called inside executeInTransaction.
+	 * 
+	 * @param sql the SQL template with '?' bind markers
+	 * @param params the values for the bind markers, in order
+	 * @return the future of the number of rows affected
+	 */
+	public CompletableFuture<Integer> executeUpdateAsync(String sql, Object... params)
+	{
+		return supplyAsync(() -> executePreparedUpdate(sql, params));
+	}
+
+	/**
+	 * Method to return the next primary key from a sequence.  Keys are
+	 * reserved in blocks, so most calls do not touch the DBMS.
+	 * 
+	 * @param sequence one of the IdGenerator sequence names
+	 * @return a key no other client has been given
+	 * @throws java.sql.SQLException when a new block cannot be reserved
+	 */
+	public int nextId(String sequence) throws SQLException
+	{
+		return this._ids.nextId(sequence);
+	}
+
+	/**
+	 * Method to reserve many primary keys from a sequence in one round trip.
+	 * 
+	 * @param sequence one of the IdGenerator sequence names
+	 * @param count the number of keys wanted
+	 * @return count keys no other client has been given
+	 * @throws java.sql.SQLException when the keys cannot be reserved
+	 */
+	public int[] nextIds(String sequence, int count) throws SQLException
+	{
+		return this._ids.nextIds(sequence, count);
+	}
+
+	/**
+	 * Method to build the customer and cruise id filters up front, so the
+	 * first existence checks do not pay for it.
+	 * 
+	 * @throws java.sql.SQLException when the ids cannot be read
+	 */
+	public void buildExistenceFilters() throws SQLException
+	{
+		this._customerIds.build();
+		this._cruiseIds.build();
+	}
+
+	/**
+	 * Method to check whether a customer exists.  Ids the filter rejects are
+	 * confirmed with an index-only probe instead of a row read, since another
+	 * client may have added them since the filter was built.
+	 * 
+	 * @param id the Customer.id
+	 * @return true when the customer exists
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public boolean customerExists(int id) throws SQLException
+	{
+		if (!this._customerIds.mightContain(id))
+			return this._customerIds.confirmMissing(id);
+
+		if (findCustomer(id) != null)
+			return true;
+
+		this._customerIds.recordFalsePositive();
+		return false;
+	}
+
+	/**
+	 * Method to check whether a cruise exists.  Numbers the filter rejects
+	 * are confirmed with an index-only probe instead of a row read, since
+	 * another client may have added them since the filter was built.
+	 * 
+	 * @param cnum the Cruise.cnum
+	 * @return true when the cruise exists
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public boolean cruiseExists(int cnum) throws SQLException
+	{
+		if (!this._cruiseIds.mightContain(cnum))
+			return this._cruiseIds.confirmMissing(cnum);
+
+		if (findCruise(cnum) != null)
+			return true;
+
+		this._cruiseIds.recordFalsePositive();
+		return false;
+	}
+
+	public CompletableFuture<Boolean> customerExistsAsync(int id)
+	{
+		return supplyAsync(() -> customerExists(id));
+	}
+
+	public CompletableFuture<Boolean> cruiseExistsAsync(int cnum)
+	{
+		return supplyAsync(() -> cruiseExists(cnum));
+	}
+
+	/**
+	 * Method to return a ship, from the cache when it was read recently.
+	 * 
+	 * @param id the Ship.id
+	 * @return the ship, or null when it does not exist
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public Ship findShip(int id) throws SQLException
+	{
+		return this._ships.get(id);
+	}
+
+	/**
+	 * Method to return a captain, from the cache when it was read recently.
+	 * 
+	 * @param id the Captain.id
+	 * @return the captain, or null when it does not exist
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public Captain findCaptain(int id) throws SQLException
+	{
+		return this._captains.get(id);
+	}
+
+	/**
+	 * Method to return a customer, from the cache when it was read recently.
+	 * 
+	 * @param id the Customer.id
+	 * @return the customer, or null when it does not exist
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public Customer findCustomer(int id) throws SQLException
+	{
+		return this._customers.get(id);
+	}
+
+	/**
+	 * Method to return a cruise, from the cache when it was read in the
+	 * last few seconds and not booked since.
+	 * 
+	 * @param cnum the Cruise.cnum
+	 * @return the cruise, or null when it does not exist
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public Cruise findCruise(int cnum) throws SQLException
+	{
+		return this._cruises.get(cnum);
+	}
+
+	/**
+	 * Method to drop a cruise from the cache after its row was changed,
+	 * e.g. by a booking that bumped num_sold.
+	 * 
+	 * @param cnum the Cruise.cnum
+	 */
+	public void invalidateCruise(int cnum)
+	{
+		this._cruises.invalidate(cnum);
+	}
+
+	/**
+	 * Method to record a reservation written by this process: a confirmed
+	 * booking bumped num_sold, so the cached cruise row is stale, and an R
+	 * or C reservation takes a seat from the inventory.  Inside a
+	 * transaction the caches change only once it commits.
+	 * 
+	 * @param cnum the Cruise.cnum of the reservation
+	 * @param status the status of the reservation
+	 * @param startedAt the System.nanoTime() taken before the write began
+	 */
+	public void recordBooking(int cnum, char status, long startedAt)
+	{
+		afterCommit(() ->
+		{
+			if (status == 'R')
+				this._cruises.invalidate(cnum);
+
+			this._seatInventory.onBooked(cnum, status, startedAt);
+		});
+	}
+
+	/**
+	 * Method to bring the caches up to date after a reservation of a cruise
+	 * changed status or, with a new status of 0, was deleted.  Inside a
+	 * transaction the caches change only once it commits.
+	 * 
+	 * @param cnum the Cruise.cnum
+	 * @param oldStatus the status the reservation had
+	 * @param newStatus the status it has now, 0 when it was deleted
+	 * @param startedAt the System.nanoTime() taken before the write began
+	 */
+	public void recordStatusChange(int cnum, char oldStatus, char newStatus, long startedAt)
+	{
+		afterCommit(() ->
+		{
+			this._cruises.invalidate(cnum);
+			this._seatInventory.onStatusChanged(cnum, oldStatus, newStatus, startedAt);
+		});
+	}
+
+	/**
+	 * Method to return the seats left on a cruise, i.e. its ship's seats
+	 * minus its num_sold, from the seat inventory.
+	 * 
+	 * @param cnum the Cruise.cnum
+	 * @return the seats left, or null when the cruise does not exist
+	 * @throws java.sql.SQLException when the inventory could not be loaded
+	 */
+	public Integer getAvailableSeats(int cnum) throws SQLException
+	{
+		return this._seatInventory.getAvailableSeats(cnum);
+	}
+
+	/**
+	 * Method to insert a new ship and drop any cached row with its id.
+	 * 
+	 * @throws java.sql.SQLException when the insert failed
+	 */
+	public void insertShip(int id, String make, String model, int age, int seats) throws SQLException
+	{
+		String query = "INSERT INTO Ship\n" +
+				"VALUES (?, ?, ?, ?, ?);";
+
+		try
+		{
+			executePreparedUpdate(query, id, make, model, age, seats);
+		}
+		finally
+		{
+			this._ships.invalidate(id);
+		}
+	}
+
+	/**
+	 * Method to insert a new captain and drop any cached row with its id.
+	 * 
+	 * @throws java.sql.SQLException when the insert failed
+	 */
+	public void insertCaptain(int id, String fullname, String nationality) throws SQLException
+	{
+		String query = "INSERT INTO Captain\n" +
+				"VALUES (?, ?, ?);";
+
+		try
+		{
+			executePreparedUpdate(query, id, fullname, nationality);
+		}
+		finally
+		{
+			this._captains.invalidate(id);
+		}
+	}
+
+	/**
+	 * Method to insert a new cruise and record its number in the cruise
+	 * id filter.
+	 * 
+	 * @throws java.sql.SQLException when the insert failed
+	 */
+	public void insertCruise(int cnum, int cost, int num_sold, int num_stops, String actual_departure_date, String actual_arrival_date,
+				String arrival_port, String departure_port) throws SQLException
+	{
+		// dates are cast on the server so Postgres still validates days such as 2015-02-31
+		String query = "INSERT INTO Cruise\n" +
+				"Values (?, ?, ?, ?, CAST(? AS DATE), CAST(? AS DATE), ?, ?);";
+
+		try
+		{
+			executePreparedUpdate(query, cnum, cost, num_sold, num_stops, actual_departure_date, actual_arrival_date, arrival_port, departure_port);
+
+			this._cruiseIds.add(cnum);
+		}
+		finally
+		{
+			this._cruises.invalidate(cnum);
+			this._seatInventory.invalidate(cnum);
+		}
+	}
+
+	/**
+	 * Method to book a cruise for a customer in a single round trip.  The
+	 * seat check, the Cruise.num_sold update and the Reservation insert are
+	 * one atomic statement.
+	 * 
+	 * @param customerId the Customer.id of the passenger
+	 * @param cruiseNumber the Cruise.cnum to book
+	 * @return the reservation with status R or W, or null when the customer or the cruise does not exist
+	 * @throws java.sql.SQLException when the booking failed
+	 */
+	public BookingEngine.Booking bookCruise(int customerId, int cruiseNumber) throws SQLException
+	{
+		return this._booking.book(customerId, cruiseNumber);
+	}
+
+	/**
+	 * Method to book a cruise for a customer with a chosen strategy, e.g. to
+	 * compare them under load.
+	 * 
+	 * @param customerId the Customer.id of the passenger
+	 * @param cruiseNumber the Cruise.cnum to book
+	 * @param strategy how the seat is taken
+	 * @return the reservation with status R or W, or null when the customer or the cruise does not exist
+	 * @throws java.sql.SQLException when the booking failed
+	 */
+	public BookingEngine.Booking bookCruise(int customerId, int cruiseNumber, BookingEngine.Strategy strategy) throws SQLException
+	{
+		return this._booking.book(customerId, cruiseNumber, strategy);
+	}
+
+	/**
+	 * Method to cancel a reservation and promote the oldest waitlisted
+	 * reservations of its cruise into the seat it frees.
+	 * 
+	 * @param rnum the Reservation.rnum
+	 * @return the cancelled and promoted reservations, or null when the reservation does not exist
+	 * @throws java.sql.SQLException when the cancellation failed
+	 */
+	public WaitlistEngine.Cancellation cancelReservation(int rnum) throws SQLException
+	{
+		return this._waitlist.cancel(rnum);
+	}
+
+	/**
+	 * Method to fill the free seats of a cruise from its waitlist.
+	 * 
+	 * @param cnum the Cruise.cnum
+	 * @return the reservations moved from W to R, oldest first
+	 * @throws java.sql.SQLException when the promotion failed
+	 */
+	public List<Reservation> promoteWaitlisted(int cnum) throws SQLException
+	{
+		return this._waitlist.promote(cnum);
+	}
+
+	/**
+	 * Method to return the ships with the most repairs, read from the repair
+	 * count aggregates instead of scanning Repairs.
+	 * 
+	 * @param k the number of ships wanted, 0 for every ship with a repair
+	 * @param repairCode MJ, MN or SV to count only those repairs, null for every code
+	 * @param from the first day counted as yyyy-mm-dd, null for no lower bound
+	 * @param to the last day counted as yyyy-mm-dd, null for no upper bound
+	 * @return the ships in decreasing order of repairs
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public List<RepairLeaderboard.Entry> getTopRepairedShips(int k, String repairCode, String from, String to) throws SQLException
+	{
+		return this._repairs.top(k, repairCode, from, to);
+	}
+
+	/**
+	 * Method to write the ships with the most repairs as a report.
+	 * 
+	 * @param report the writer of the report
+	 * @param k the number of ships wanted, 0 for every ship with a repair
+	 * @param repairCode MJ, MN or SV to count only those repairs, null for every code
+	 * @param from the first day counted as yyyy-mm-dd, null for no lower bound
+	 * @param to the last day counted as yyyy-mm-dd, null for no upper bound
+	 * @return the number of ships written
+	 * @throws java.sql.SQLException when failed to execute the query or write the report
+	 */
+	public long writeTopRepairedShips(ReportWriter report, int k, String repairCode, String from, String to) throws SQLException
+	{
+		return this._repairs.writeTop(report, k, repairCode, from, to);
+	}
+
+	/**
+	 * Method to apply the schema migrations the database is missing, e.g.
+	 * the indexes of the menu queries.
+	 * 
+	 * @return the number of migrations applied
+	 * @throws java.sql.SQLException when a migration failed
+	 */
+	public int migrateSchema() throws SQLException
+	{
+		return new SchemaMigrator(this).migrate();
+	}
+
+	/**
+	 * Method to return the number of passengers of a cruise with a status
+	 * from the count table, without scanning Reservation.
+	 * 
+	 * @param cnum the Cruise.cnum
+	 * @param status W, C or R
+	 * @return the number of reservations of the cruise with the status
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public int countPassengers(int cnum, char status) throws SQLException
+	{
+		return this._passengers.count(cnum, status);
+	}
+
 	/**
-	 * Method to execute an input query SQL instruction (i.e. SELECT).  This
-	 * method issues the query to the DBMS and returns the results as
-	 * a list of records. Each record in turn is a list of attribute values
+	 * Method to return one page of the reservations of a cruise with a
+	 * status, in increasing order of rnum.
 	 * 
-	 * @param query the input query string
-	 * @return the query result as a list of records
+	 * @param cnum the Cruise.cnum
+	 * @param status W, C or R
+	 * @param afterRnum the rnum of the last reservation of the previous page, -1 for the first page
+	 * @param pageSize the most reservations returned
+	 * @return the page, shorter than pageSize when it is the last one
 	 * @throws java.sql.SQLException when failed to execute the query
 	 */
-	public List<List<String>> executeQueryAndReturnResult(String query) throws SQLException 
+	public List<Reservation> listPassengers(int cnum, char status, int afterRnum, int pageSize) throws SQLException
 	{
-		Statement stmt = null;
-		List<List<String>> result = new ArrayList<List<String>>(); 
+		return this._passengers.page(cnum, status, afterRnum, pageSize);
+	}
 
-		try 
-		{
-			// creates a statement object
-			stmt = this._connection.createStatement();
+	/**
+	 * Method to return the prepared statement cache counters summed over
+	 * every pooled connection.
+	 * 
+	 * @return a one line summary of the cache hits, misses and evictions
+	 */
+	public String getStatementCacheStats()
+	{
+		return this._pool.getStatementCacheStats();
+	}
 
-			//issues the query instruction 
-			ResultSet rs = stmt.executeQuery(query); 
-	 
-			/*
-		 	* obtains the metadata object for the returned result set.  The metadata 
-		 	* contains row and column info. 
-			*/ 
-			ResultSetMetaData rsmd = rs.getMetaData(); 
-			int numCol = rsmd.getColumnCount(); 
-	 
-			//iterates through the result set and saves the data returned by the query.
-			while (rs.next())
-			{
-				List<String> record = new ArrayList<>(); 
-			
-				for (int i=1; i<=numCol; ++i) 
-					record.add(rs.getString(i)); 
-			
-				result.add(record); 
-		
-			}//end while 
-		} 
-		catch (Exception e) 
-		{
-			System.err.println("Error - Unable to Execute Query: " + e.getMessage());
-			e.printStackTrace();
-		}
-		finally
-		{
-			// close the instruction
-			if (stmt != null)
-				stmt.close();
-		}
+	/**
+	 * Method to return the per-template latency histograms and counters of
+	 * every query helper.
+	 * 
+	 * @return the query metrics, also registered over JMX by main
+	 */
+	public QueryMetrics getQueryMetrics()
+	{
+		return this._metrics;
+	}
 
-		return result; 
-	}//end executeQueryAndReturnResult
-	
 	/**
-	 * Method to execute an input query SQL instruction (i.e. SELECT).  This
-	 * method issues the query to the DBMS and returns the number of results
+	 * Method to return the log of statements slower than a threshold.  It
+	 * stays off until its start method is called.
 	 * 
-	 * @param query the input query string
-	 * @return the number of rows returned
-	 * @throws java.sql.SQLException when failed to execute the query
+	 * @return the slow query log
 	 */
-	public int executeQuery(String query) throws SQLException 
+	public SlowQueryLog getSlowQueryLog()
 	{
-		//creates a statement object
-		Statement stmt = null;
-		int rowCount = 0;
+		return this._slowQueries;
+	}
 
-		try 
+	/*
+	* Runs EXPLAIN for the slow query log on a connection of its own, outside of any transaction of
+	* the calling thread and of the query helpers, so a slow EXPLAIN is not itself logged.
+	*/
+	private List<String> explain(String sql, Object[] params) throws SQLException
+	{
+		ConnectionPool.PooledConnection pc = this._pool.borrow();
+
+		try (PreparedStatement stmt = pc.getConnection().prepareStatement("EXPLAIN " + sql))
 		{
-			stmt = this._connection.createStatement();
-			
-			//issues the query instruction
-			ResultSet rs = stmt.executeQuery(query);
+			List<String> plan = new ArrayList<String>();
 
-			//iterates through the result set and count nuber of results.
-			while (rs.next())
+			stmt.setQueryTimeout(EXPLAIN_TIMEOUT_SECONDS);
+			bindParameters(stmt, params);
+
+			try (ResultSet rs = stmt.executeQuery())
 			{
-				rowCount++;
-			}//end while
-		} 
-		catch (Exception e) 
-		{
-			System.err.println("Error - Unable to Execute Query: " + e.getMessage());
-			e.printStackTrace();
+				while (rs.next())
+					plan.add(rs.getString(1));
+			}
+
+			return plan;
 		}
 		finally
 		{
-			if (stmt != null)
-				stmt.close();
+			this._pool.release(pc);
 		}
+	}
 
-		return rowCount;
+	/**
+	 * Method to return the connection pool size and borrow-wait counters.
+	 * 
+	 * @return a one line summary of the pool
+	 */
+	public String getPoolStats()
+	{
+		return this._pool.toString();
 	}
-	
+
 	/**
 	 * Method to fetch the last value from sequence. This
 	 * method issues the query to the DBMS and returns the current 
@@ -255,19 +1592,22 @@ public class DBproject
 	
 	public int getCurrSeqVal(String sequence) throws SQLException 
 	{
+		ConnectionPool.PooledConnection pc = null;
 		Statement stmt = null;
 		ResultSet rs = null;
 
-		boolean hasNext = false;
+		int currVal = -1;
 
 		try
 		{
-			stmt = this._connection.createStatement();
+			// currval is session local, so this only sees nextval calls made on the same pooled connection
+			pc = borrow();
+			stmt = pc.getConnection().createStatement();
 
 			rs = stmt.executeQuery(String.format("Select currval('%s')", sequence));
 
 			if (rs.next())
-				hasNext = true;
+				currVal = rs.getInt(1);
 		}
 		catch (Exception e) 
 		{
@@ -278,30 +1618,42 @@ public class DBproject
 		{
 			if (stmt != null)
 				stmt.close();
+
+			release(pc);
 		}
 
-		if (hasNext)
-			return rs.getInt(1);
-		else
-			return -1;
+		return currVal;
 	}
 
 	/**
-	 * Method to close the physical connection if it is open.
+	 * Method to close the physical connections if they are open.
 	 */
 	public void cleanup()
 	{
-		try
+		if (this._pool != null)
 		{
-			if (this._connection != null)
+			System.out.println("Existence filters: " + this._customerIds + ", " + this._cruiseIds);
+			System.out.println("Entity caches: " + this._ships + "; " + this._captains + "; " + this._customers + "; " + this._cruises);
+			System.out.println("Seat inventory: " + this._seatInventory);
+			System.out.println("Statement cache: " + this._pool.getStatementCacheStats());
+			System.out.println("Connection pool: " + this._pool);
+			System.out.println("Queries: " + this._metrics);
+			this._booking.close();
+			System.out.println("Slow query log: " + this._slowQueries);
+			this._slowQueries.close();
+			this._metrics.close();
+
+			synchronized (this)
 			{
-				this._connection.close ();
-			}//end if
-		}
-		catch (SQLException e)
-		{
-	         // ignored.
-		}//end try
+				if (this._async != null)
+					this._async.shutdownNow();
+			}
+
+			this._customerIds.close();
+			this._cruiseIds.close();
+			this._seatInventory.close();
+			this._pool.close ();
+		}//end if
 	}//end cleanup
 
 	/**
@@ -311,9 +1663,36 @@ public class DBproject
 	 */
 	public static void main (String[] args) 
 	{
-		if (args.length != 3) 
+		// -metrics rewrites query-metrics.txt with the latency of every SQL template each so many seconds;
+		// -slowlog writes the statements slower than so many milliseconds to slow-queries.log
+		List<String> argList = new ArrayList<String>(Arrays.asList(args));
+		long metricsSeconds = takeOption(argList, "-metrics");
+		long slowMillis = takeOption(argList, "-slowlog");
+
+		args = argList.toArray(new String[0]);
+
+		// -offline answers the menu from the CSV files of a data directory, without Postgres
+		if (args.length == 2 && args[0].equals("-offline"))
+		{
+			runOffline(args[1]);
+			return;
+		}
+
+		// -batch runs the operations of a command file, or of stdin for "-", instead of the menu;
+		// -http serves them as HTTP/JSON endpoints until the process is stopped
+		int batchArg = argList.indexOf("-batch");
+		int httpArg = argList.indexOf("-http");
+		int modeArg = Math.max(batchArg, httpArg);
+		int poolArgs = (modeArg < 0) ? args.length : modeArg;
+
+		if ((poolArgs != 3 && poolArgs != 5) || (batchArg >= 0 && httpArg >= 0) || argList.contains("-metrics") || argList.contains("-slowlog")
+			|| (batchArg >= 0 && (args.length < batchArg + 2 || args.length > batchArg + 3))
+			|| (httpArg >= 0 && args.length != httpArg + 2)) 
 		{
-			System.err.println("Usage: " + "java [-classpath <classpath>] " + DBproject.class.getName () + " <dbname> <port> <user>");
+			System.err.println("Usage: " + "java [-classpath <classpath>] " + DBproject.class.getName () + " <dbname> <port> <user> [<min pool size> <max pool size>]" +
+						" [-metrics <dump seconds>] [-slowlog <threshold ms>]" +
+						" [-batch <command file or -> [<operations per transaction>] | -http <listen port>]");
+			System.err.println("       " + "java [-classpath <classpath>] " + DBproject.class.getName () + " -offline <data dir>");
 			return;
 		}//end if
 		
@@ -340,35 +1719,39 @@ public class DBproject
 			String dbport = args[1];
 			String user = args[2];
 			
-			esql = new DBproject (dbname, dbport, user, "");
+			if (poolArgs == 5)
+				esql = new DBproject (dbname, dbport, user, "", Integer.parseInt(args[3]), Integer.parseInt(args[4]));
+			else
+				esql = new DBproject (dbname, dbport, user, "");
 			
-			boolean keepon = true;
-			while(keepon)
+			esql.getQueryMetrics().register();
+
+			if (metricsSeconds > 0)
+				esql.getQueryMetrics().startDump(Paths.get(QUERY_METRICS_FILE), metricsSeconds * 1000);
+
+			if (slowMillis > 0)
+				esql.getSlowQueryLog().start(Paths.get(SLOW_QUERY_FILE), slowMillis, SlowQueryLog.DEFAULT_SAMPLE_RATE,
+							SlowQueryLog.DEFAULT_EXPLAINS_PER_MINUTE, SlowQueryLog.DEFAULT_MAX_FILE_BYTES, SlowQueryLog.DEFAULT_FILES);
+
+			esql.migrateSchema();
+			esql.buildExistenceFilters();
+
+			if (batchArg >= 0)
 			{
-				System.out.println("MAIN MENU");
-				System.out.println("---------");
-				System.out.println("1. Add Ship");
-				System.out.println("2. Add Captain");
-				System.out.println("3. Add Cruise");
-				System.out.println("4. Book Cruise");
-				System.out.println("5. List number of available seats for a given Cruise.");
-				System.out.println("6. List total number of repairs per Ship in descending order");
-				System.out.println("7. Find total number of passengers with a given status");
-				System.out.println("8. < EXIT");
-				
-				switch (readChoice())
+				String file = args[batchArg + 1];
+				int batchSize = (args.length > batchArg + 2) ? Integer.parseInt(args[batchArg + 2]) : BatchRunner.DEFAULT_BATCH_SIZE;
+
+				try (Reader input = file.equals("-") ? new InputStreamReader(System.in) : new FileReader(file))
 				{
-					case 1: AddShip(esql); break;
-					case 2: AddCaptain(esql); break;
-					case 3: AddCruise(esql); break;
-					case 4: BookCruise(esql); break;
-					case 5: ListNumberOfAvailableSeats(esql); break;
-					case 6: ListsTotalNumberOfRepairsPerShip(esql); break;
-					case 7: FindPassengersCountWithStatus(esql); break;
-					case 8: keepon = false; break;
-					default: keepon = false; break;
+					new BatchRunner(esql, batchSize, System.out).run(input);
 				}
 			}
+
+			if (httpArg >= 0)
+				new HttpService(esql, Integer.parseInt(args[httpArg + 1]), HttpService.DEFAULT_PLATFORM_THREADS).serveUntilShutdown();
+
+			if (modeArg < 0)
+				runMenu(esql);
 		}
 		catch(Exception e)
 		{
@@ -392,6 +1775,82 @@ public class DBproject
 		}
 	}
 
+	/*
+	* Shows the main menu until the user exits.
+	*/
+	private static void runMenu(CruiseStore esql)
+	{
+		boolean keepon = true;
+
+		while(keepon)
+		{
+			System.out.println("MAIN MENU");
+			System.out.println("---------");
+			System.out.println("1. Add Ship");
+			System.out.println("2. Add Captain");
+			System.out.println("3. Add Cruise");
+			System.out.println("4. Book Cruise");
+			System.out.println("5. List number of available seats for a given Cruise.");
+			System.out.println("6. List total number of repairs per Ship in descending order");
+			System.out.println("7. Find total number of passengers with a given status");
+			System.out.println("8. < EXIT");
+			
+			switch (readChoice())
+			{
+				case 1: AddShip(esql); break;
+				case 2: AddCaptain(esql); break;
+				case 3: AddCruise(esql); break;
+				case 4: BookCruise(esql); break;
+				case 5: ListNumberOfAvailableSeats(esql); break;
+				case 6: ListsTotalNumberOfRepairsPerShip(esql); break;
+				case 7: FindPassengersCountWithStatus(esql); break;
+				case 8: keepon = false; break;
+				default: keepon = false; break;
+			}
+		}
+	}
+
+	/*
+	* Loads the CSV files of a data directory into an InMemoryStore and runs the menu on it.
+	*/
+	private static void runOffline(String dataDir)
+	{
+		InMemoryStore store;
+
+		try
+		{
+			store = InMemoryStore.load(Paths.get(dataDir));
+		}
+		catch (IOException e)
+		{
+			System.err.println("Error - Unable to load " + dataDir + ": " + e.getMessage());
+			return;
+		}
+
+		System.out.println("Offline: " + store);
+		System.out.println("Changes are kept in memory only and are lost on exit.");
+
+		runMenu(store);
+		System.out.println("Bye !");
+	}
+
+	/*
+	* Removes "<name> <positive number>" from the arguments and returns the number, or 0 when the option
+	* is not given.  A malformed option is left in place for the usage check to catch.
+	*/
+	private static long takeOption(List<String> argList, String name)
+	{
+		int arg = argList.indexOf(name);
+
+		if (arg < 0 || arg + 1 >= argList.size() || !argList.get(arg + 1).matches("[1-9][0-9]{0,8}"))
+			return 0;
+
+		long value = Long.parseLong(argList.get(arg + 1));
+
+		argList.subList(arg, arg + 2).clear();
+		return value;
+	}
+
 	public static int readChoice() 
 	{
 		int input;
@@ -417,7 +1876,7 @@ public class DBproject
 		return input;
 	}//end readChoice
 
-	public static void AddShip(DBproject esql) //1
+	public static void AddShip(CruiseStore esql) //1
 	{
 		//Add Ship: Ask the user for details of a Ship and add it to the DB
 		String make = "";
@@ -430,10 +1889,7 @@ public class DBproject
 
 		try
 		{
-			String query = "SELECT Ship.id\n" +
-					"FROM Ship;";
-
-			id = esql.executeQuery(query) + 1;
+			id = esql.nextId(IdGenerator.SHIP_ID);
 		}
 		catch (Exception e)
 		{       
@@ -520,11 +1976,7 @@ public class DBproject
 
 		try
 		{
-			String query = String.format("INSERT INTO Ship\n" +
-							"VALUES ('%d', '%s', '%s', '%d', '%d');",
-							id, make, model, age, seats);
-			
-			esql.executeUpdate(query);
+			esql.insertShip(id, make, model, age, seats);
 
 			System.out.println(String.format("Successfully inserted the record: (id:%d, make:%s, model:%s, age:%d, seats:%d)",
 							id, make, model, age, seats));
@@ -537,7 +1989,7 @@ public class DBproject
 		}
 	}
 
-	public static void AddCaptain(DBproject esql) //2
+	public static void AddCaptain(CruiseStore esql) //2
 	{
 		//Add Captain: Ask the user for details of a Captain and add it to the DB
 		String fullname = "";
@@ -548,10 +2000,7 @@ public class DBproject
 
 		try
 		{       
-			String query = "SELECT Captain.id\n" +
-                                        "FROM Captain;";
-                                
-                        id = esql.executeQuery(query) + 1;
+			id = esql.nextId(IdGenerator.CAPTAIN_ID);
                 }       
                 catch (Exception e)
                 {       
@@ -609,11 +2058,7 @@ public class DBproject
 
 		try
 		{
-			String query = String.format("INSERT INTO Captain\n" +
-							"VALUES ('%d', '%s', '%s');",
-							id, fullname, nationality);
-			
-			esql.executeUpdate(query);
+			esql.insertCaptain(id, fullname, nationality);
 
 			System.out.println(String.format("Successfully inserted the record: (id: %d, fullname:%s, nationality:%s)",
 							id, fullname, nationality));
@@ -626,7 +2071,7 @@ public class DBproject
 		}
 	}	
 
-	public static void AddCruise(DBproject esql) //3
+	public static void AddCruise(CruiseStore esql) //3
 	{
 		//Add Cruise: Ask the user for details of a Cruise and add it to the DB
 		int cost = -1;
@@ -642,10 +2087,7 @@ public class DBproject
 
 		try
 		{
-			String query = "SELECT Cruise.cnum\n" +
-                                        "FROM Cruise;";
-
-                        cnum = esql.executeQuery(query) + 1;
+			cnum = esql.nextId(IdGenerator.CRUISE_ID);
 		}
                 catch (Exception e)
                 {
@@ -851,11 +2293,7 @@ public class DBproject
 
 		try
 		{
-			String query = String.format("INSERT INTO Cruise\n" +
-							"Values ('%d', '%d', '%d', '%d', '%s', '%s', '%s', '%s');",
-							cnum, cost, num_sold, num_stops, actual_departure_date, actual_arrival_date, arrival_port, departure_port);
-
-			esql.executeUpdate(query);
+			esql.insertCruise(cnum, cost, num_sold, num_stops, actual_departure_date, actual_arrival_date, arrival_port, departure_port);
 
 			System.out.println(String.format("Successfully inserted the record: (cnum:%d, cost:%d, num_sold:%d, num_stops:%d, actual_departure_date:%s, actual_arrival_date:%s, arrival_port:%s, departure_port:%s)",
 							cnum, cost, num_sold, num_stops, actual_departure_date, actual_arrival_date, arrival_port, departure_port));	
@@ -868,7 +2306,7 @@ public class DBproject
 		}		
 	}
 
-	public static void BookCruise(DBproject esql) //4
+	public static void BookCruise(CruiseStore esql) //4
 	{
 		// Given a customer and a Cruise that he/she wants to book, add a reservation to the DB
 		//Given a customer and Cruise that he/she wants to book, determine the status of the reservation (Waitlisted/Confirmed/Reserved) and add the reservation to the database with appropriate status.
@@ -885,163 +2323,63 @@ public class DBproject
 		);
 		*/
 
-		int rnum = 0;
+		int customerNumber = readNonnegative("customer");
+		int cruiseNumber = (customerNumber < 0) ? -1 : readNonnegative("cruise");
 
-		try
+		// both lookups run together once both numbers are in; only an unknown one is asked for again
+		while (customerNumber >= 0 && cruiseNumber >= 0)
 		{
-			String query = "SELECT Reservation.rnum\n" +
-					"FROM Reservation;";
-
-			rnum = esql.executeQuery(query) + 1;
-		}
-		catch (Exception e)
-                {
-                        System.out.println(e.getMessage());
-			System.out.println("Error...terminating command");
-			return;
-                }
-
-		int customerNumber = -1;
-                while (true)
-                {
-			System.out.print("Enter a nonnegative customer number: ");
-
-                        try
-                        {
-                                customerNumber = Integer.parseInt(in.readLine());
-
-				if (customerNumber < 0)
-				{
-					System.out.println("Customer number is negative, incorrect input!");
-					continue;
-				}
-
-				String query = "SELECT Customer.id\n" +
-						"FROM Customer\n" +
-						"WHERE Customer.id = " + customerNumber + ";";
-
-				if (esql.executeQuery(query) == 0)
-                                {
-                                        System.out.println("The record with Customer Number " + customerNumber + " does not exist.");
-                                        continue;
-                                }
+			CompletableFuture<Boolean> customerFound = esql.customerExistsAsync(customerNumber);
+			CompletableFuture<Boolean> cruiseFound = esql.cruiseExistsAsync(cruiseNumber);
+			boolean customerExists;
+			boolean cruiseExists;
 
-				break;
-                        }
-                        catch (NumberFormatException e)
-                        {
-                                System.out.println("Input must be an integer!");
-                        }
+			try
+			{
+				customerExists = await(customerFound);
+				cruiseExists = await(cruiseFound);
+			}
 			catch (SQLException e)
-                        {
-                                System.out.println("There are no records associated with that number!");
-                        }
-			catch (IOException e)
 			{
 				System.out.println(e.getMessage());
-				System.out.println("IO Error...terminating command");
-                        	return;
+				System.out.println("Unable to look up the records");
+				return;
 			}
-                }
 
-		int cruiseNumber = -1;
-		while (true)
-		{
-			System.out.print("Enter a nonnegative cruise number: ");
-                        
-			try
-			{        
-                                cruiseNumber = Integer.parseInt(in.readLine());
+			if (customerExists && cruiseExists)
+			{
+				book(esql, customerNumber, cruiseNumber);
+				return;
+			}
 
-                                if (cruiseNumber < 0)
-                                {       
-                                        System.out.println("Cruise number is negative, incorrect input!");
-                                        continue;
-                                }       
-                                
-                                String query = "SELECT Cruise.cnum\n" +
-                                                "FROM Cruise\n" +
-                                                "WHERE Cruise.cnum = " + cruiseNumber + ";";
-                                                
-                                if (esql.executeQuery(query) == 0)
-                                {       
-                                        System.out.println("The record with Cruise Number " + cruiseNumber + " does not exist.");
-                                        continue;
-                                }
+			if (!customerExists)
+			{
+				System.out.println("The record with Customer Number " + customerNumber + " does not exist.");
+				customerNumber = readNonnegative("customer");
+			}
 
-				break;
-                                
-                        }
-                        catch (NumberFormatException e)
-                        {
-                                System.out.println("Input must be an integer!");
-                        }       
-                        catch (SQLException e)
-                        {
-                                System.out.println("There are no records associated with that number!");
-                        }
-			catch (IOException e)
-                        {
-                                System.out.println(e.getMessage());
-				System.out.println("IO Error...terminating command");
-                                return;
-                        }
+			if (!cruiseExists && customerNumber >= 0)
+			{
+				System.out.println("The record with Cruise Number " + cruiseNumber + " does not exist.");
+				cruiseNumber = readNonnegative("cruise");
+			}
 		}
+	}
 
-		char status = 0;
+	private static void book(CruiseStore esql, int customerNumber, int cruiseNumber)
+	{
 		try
                 {
-			//String query1 = "SELECT Reservation.status\n" +
-			//		"FROM Reservation\n" +
-			//		"WHERE Reservation.ccid = " + customerNumber + " AND Reservation.cid = " + cruiseNumber + ";";
-
-                        //String query2 = "SELECT Ship.seats\n" +
-                          //              "FROM CruiseInfo, Ship\n" +
-                            //            "WHERE CruiseInfo.cruise_id = " + cruiseNumber + " AND CruiseInfo.ship_id = Ship.id;";
-
-                        String query3 = "SELECT Cruise.num_sold\n" +
-                                        "FROM Cruise\n" +
-                                        "WHERE Cruise.cnum = " + cruiseNumber + " ;";
+			// seat check, num_sold bump and insert run as one statement
+			BookingEngine.Booking booking = esql.bookCruise(customerNumber, cruiseNumber);
 
-			//List<List<String>> resExistsResult = esql.executeQueryAndReturnResult(query1);
-                        //List<List<String>> seatsResult = esql.executeQueryAndReturnResult(query2);
-                        List<List<String>> soldResult = esql.executeQueryAndReturnResult(query3);
-
-                        //int numSeats = Integer.parseInt(seatsResult.get(0).get(0));
-                        int numSold = Integer.parseInt(soldResult.get(0).get(0));
-			int x = numSold;
-			numSold = numSold-1;
-
-			status = (numSold > 0) ? 'R' : 'W';
-
-			if (status == 'R')
+			if (booking == null)
 			{
-				String query5 = "UPDATE Cruise\n" +
-                "SET num_sold = " + (x+1) + "\n" +
-                "WHERE cnum = " + cruiseNumber + " ;";
-                                             
-               esql.executeUpdate(query5);
-			}	
-
-			//if (!resExistsResult.isEmpty() && resExistsResult.get(0).get(0).charAt(0) == 'R')
-			//	status = 'C';
-
-		//	if (status == 'R')
-		//	{
-		//		String query5 = "UPDATE Cruise\n" +
-		//				"SET num_sold = " + (numSold+1) + "\n" +
-		//				"WHERE cnum = " + cruiseNumber + " ;";
-//
-//				esql.executeUpdate(query5);
-//			}
-
-			String query4 = String.format("INSERT INTO Reservation\n" +
-                                                      		"VALUES ('%d', '%d', '%d', '%c');", rnum, customerNumber, cruiseNumber, status);
-
-			esql.executeUpdate(query4);
-
-                        System.out.println(String.format("Successfully inserted/updated the record: (rnum:%d, customerID:%d, cruiseID:%d, status:%c)",
-							rnum, customerNumber, cruiseNumber, status));
+				System.out.println("The record with Customer Number " + customerNumber + " or Cruise Number " + cruiseNumber + " does not exist.");
+				return;
+			}
+
+                        System.out.println("Successfully inserted/updated the record: " + booking);
                 }
                 catch (Exception e)
                 {
@@ -1050,7 +2388,38 @@ public class DBproject
                 }
 	}
 
-	public static void ListNumberOfAvailableSeats(DBproject esql) //5
+	/*
+	* Prompts until a nonnegative number is entered; -1 when the input cannot be read.
+	*/
+	private static int readNonnegative(String name)
+	{
+		while (true)
+		{
+			System.out.print("Enter a nonnegative " + name + " number: ");
+
+			try
+			{
+				int number = Integer.parseInt(in.readLine());
+
+				if (number >= 0)
+					return number;
+
+				System.out.println(Character.toUpperCase(name.charAt(0)) + name.substring(1) + " number is negative, incorrect input!");
+			}
+			catch (NumberFormatException e)
+			{
+				System.out.println("Input must be an integer!");
+			}
+			catch (IOException e)
+			{
+				System.out.println(e.getMessage());
+				System.out.println("IO Error...terminating command");
+				return -1;
+			}
+		}
+	}
+
+	public static void ListNumberOfAvailableSeats(CruiseStore esql) //5
 	{
 		// For Cruise number and date, find the number of availalbe seats (i.e. total Ship capacity minus booked seats )
 		//Given a Cruise number and a departure date, find the number of available seats in the Cruise.
@@ -1084,17 +2453,19 @@ public class DBproject
 //                                	"FROM CruiseInfo, Ship\n" +
   //                              	"WHERE CruiseInfo.cruise_id = " + cruiseNumber + " AND CruiseInfo.ship_id = Ship.id;";
 
-                	String query2 = "SELECT Cruise.num_sold\n" +
-                                	"FROM Cruise\n" +
-                                	"WHERE Cruise.cnum = " + cruiseNumber + " ;";
-
     //            	List<List<String>> seatsResult = esql.executeQueryAndReturnResult(query1);
-                	List<List<String>> soldResult = esql.executeQueryAndReturnResult(query2);
-
       //          	int numSeats = Integer.parseInt(seatsResult.get(0).get(0));
-                	int numSold = Integer.parseInt(soldResult.get(0).get(0));
 
-			System.out.println("The number of available seats for cruise " + cruiseNumber + " is " + (numSold));
+			// ship capacity minus num_sold, kept in memory by the seat inventory
+			Integer available = esql.getAvailableSeats(cruiseNumber);
+
+			if (available == null)
+			{
+				System.out.println("The record with Cruise Number " + cruiseNumber + " does not exist.");
+				return;
+			}
+
+			System.out.println("The number of available seats for cruise " + cruiseNumber + " is " + Math.max(0, available));
 		}
 		catch (Exception e)
 		{
@@ -1102,19 +2473,38 @@ public class DBproject
 		}
 	}
 
-	public static void ListsTotalNumberOfRepairsPerShip(DBproject esql) //6
+	public static void ListsTotalNumberOfRepairsPerShip(CruiseStore esql) //6
 	{
 		// Count number of repairs per Ships and list them in descending order
 		// Return the list of Ships in decreasing order of number of repairs that have been made on the Ships.
 
 		try
 		{
-			String query = "SELECT Repairs.ship_id, COUNT(Repairs.rid) AS repairCount\n" +
-					"FROM Repairs\n" +
-					"GROUP BY Repairs.ship_id\n" +
-					"ORDER BY repairCount DESC;";
+			// the counts come from aggregates kept current by triggers on Repairs
+			System.out.print("Enter a repair code MJ, MN or SV (leave blank for all): ");
+			String repairCode = blankToNull(in.readLine());
+
+			if (repairCode != null)
+				repairCode = repairCode.toUpperCase();
 
-			esql.executeQueryAndPrintResult(query);
+			System.out.print("Enter the first repair date yyyy-mm-dd (leave blank for no limit): ");
+			String from = blankToNull(in.readLine());
+
+			System.out.print("Enter the last repair date yyyy-mm-dd (leave blank for no limit): ");
+			String to = blankToNull(in.readLine());
+
+			System.out.print("Enter how many ships to list (leave blank for all): ");
+			String top = blankToNull(in.readLine());
+			int k = (top == null) ? 0 : Integer.parseInt(top);
+
+			System.out.print("Enter a .csv or .tsv file to save the report to (leave blank to print it): ");
+			String file = in.readLine();
+
+			ReportWriter report = (file == null || file.trim().isEmpty()) ? ReportWriter.toConsole() : ReportWriter.toFile(file.trim());
+
+			esql.writeTopRepairedShips(report, k, repairCode, from, to);
+
+			System.out.println("Report: " + report);
 		}
 		catch (Exception e)
                 {
@@ -1123,7 +2513,12 @@ public class DBproject
 	}
 
 	
-	public static void FindPassengersCountWithStatus(DBproject esql) //7
+	private static String blankToNull(String line)
+	{
+		return (line == null || line.trim().isEmpty()) ? null : line.trim();
+	}
+
+	public static void FindPassengersCountWithStatus(CruiseStore esql) //7
 	{
 		// Find how many passengers there are with a status (i.e. W,C,R) and list that number.
 		// For a given Cruise and passenger status, return the number of passengers with the given status.
@@ -1175,18 +2570,32 @@ public class DBproject
 
 		try
 		{
-			String query = "SELECT Reservation.ccid\n" +
-					"FROM Reservation\n" +
-                                        "WHERE Reservation.cid = " + cruiseNumber + " AND Reservation.status = '" + status + "';";
+			// a primary key lookup in the count table, Reservation is only read to list the IDs
+			int count = esql.countPassengers(cruiseNumber, status);
 
-			List<List<String>> passengerIDs = esql.executeQueryAndReturnResult(query);
+			System.out.println("There are " + count + " passengers with passenger status " + status + " on cruise " + cruiseNumber);
 
-			System.out.println("There are " + passengerIDs.size() + " passengers with passenger status " + status + " on cruise " + cruiseNumber + ", specifically");
-			
-			for (List<String> passengerID : passengerIDs)
+			int afterRnum = -1;
+			int listed = 0;
+
+			while (listed < count)
 			{
-				for (String ccid : passengerID)
-					System.out.println("Passenger ID: " + ccid);
+				System.out.print("List " + ((listed == 0) ? "the" : "the next") + " passenger IDs? (y/N): ");
+				String answer = in.readLine();
+
+				if (answer == null || !answer.trim().toLowerCase().startsWith("y"))
+					break;
+
+				List<Reservation> page = esql.listPassengers(cruiseNumber, status, afterRnum, PassengerCounts.DEFAULT_PAGE_SIZE);
+
+				if (page.isEmpty())
+					break;
+
+				for (Reservation reservation : page)
+					System.out.println("Passenger ID: " + reservation.ccid);
+
+				listed += page.size();
+				afterRnum = page.get(page.size() - 1).rnum;
 			}
 		}
 		catch (Exception e)
@@ -0,0 +1,170 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.*;
+import java.util.*;
+
+/*
+* This class is a read-through cache of rows keyed by their integer id.  A miss loads the row from
+* the DBMS and keeps it; the least recently used row is evicted once the cache is full, and rows
+* older than the time to live are loaded again.  Writers invalidate the rows they change.
+*/
+
+public class EntityCache<T>
+{
+	/*
+	* Loads one row on a miss.
+	*/
+	public interface Loader<T>
+	{
+		T load(int key) throws SQLException;
+	}
+
+	private static class Entry<T>
+	{
+		private final T _value;
+		private final long _loadedAtMillis;
+
+		private Entry(T value, long loadedAtMillis)
+		{
+			this._value = value;
+			this._loadedAtMillis = loadedAtMillis;
+		}
+	}
+
+	private final String _name;
+	private final int _capacity;
+	private final long _ttlMillis;
+	private final Loader<T> _loader;
+
+	//access-ordered so the least recently used row is evicted first
+	private final LinkedHashMap<Integer, Entry<T>> _entries;
+
+	//bumped by every invalidation, so a load that raced with one is not cached
+	private long _generation = 0;
+
+	private long _hits = 0;
+	private long _misses = 0;
+	private long _evictions = 0;
+	private long _expirations = 0;
+	private long _invalidations = 0;
+
+	/**
+	 * @param name the name shown in the statistics
+	 * @param capacity the maximum number of rows kept
+	 * @param ttlMillis how long a row is served before it is loaded again, 0 to keep it until evicted
+	 * @param loader loads a row by key, returning null when it does not exist
+	 */
+	public EntityCache(String name, int capacity, long ttlMillis, Loader<T> loader)
+	{
+		if (capacity <= 0)
+			throw new IllegalArgumentException("Cache capacity must be positive: " + capacity);
+
+		this._name = name;
+		this._capacity = capacity;
+		this._ttlMillis = ttlMillis;
+		this._loader = loader;
+		this._entries = new LinkedHashMap<Integer, Entry<T>>(16, 0.75f, true);
+	}
+
+	/**
+	 * Method to return a row, loading it on a miss.  Rows that do not exist
+	 * are not cached.
+	 *
+	 * @param key the id of the row
+	 * @return the row, or null when it does not exist
+	 * @throws java.sql.SQLException when the row cannot be loaded
+	 */
+	public T get(int key) throws SQLException
+	{
+		long generation;
+
+		synchronized (this)
+		{
+			Entry<T> entry = this._entries.get(key);
+
+			if (entry != null)
+			{
+				if (this._ttlMillis <= 0 || System.currentTimeMillis() - entry._loadedAtMillis < this._ttlMillis)
+				{
+					++this._hits;
+					return entry._value;
+				}
+
+				this._entries.remove(key);
+				++this._expirations;
+			}
+
+			++this._misses;
+			generation = this._generation;
+		}
+
+		// loads outside the lock so a slow query does not block hits on other keys
+		long loadedAt = System.currentTimeMillis();
+		T value = this._loader.load(key);
+
+		if (value != null)
+		{
+			synchronized (this)
+			{
+				if (generation == this._generation)
+				{
+					this._entries.put(key, new Entry<T>(value, loadedAt));
+
+					if (this._entries.size() > this._capacity)
+					{
+						Iterator<Integer> eldest = this._entries.keySet().iterator();
+						eldest.next();
+						eldest.remove();
+						++this._evictions;
+					}
+				}
+			}
+		}
+
+		return value;
+	}
+
+	/**
+	 * Method to drop a row after it was written, so the next get loads it
+	 * again.
+	 *
+	 * @param key the id of the row
+	 */
+	public synchronized void invalidate(int key)
+	{
+		this._entries.remove(key);
+		++this._generation;
+		++this._invalidations;
+	}
+
+	public synchronized void clear()
+	{
+		this._entries.clear();
+		++this._generation;
+	}
+
+	public synchronized double getHitRatio()
+	{
+		long lookups = this._hits + this._misses;
+
+		return (lookups == 0) ? 0.0 : (double) this._hits / lookups;
+	}
+
+	public synchronized String toString()
+	{
+		return String.format("%s rows:%d/%d hits:%d misses:%d hit ratio:%.1f%% evictions:%d expirations:%d invalidations:%d",
+					this._name, this._entries.size(), this._capacity, this._hits, this._misses, 100.0 * getHitRatio(),
+					this._evictions, this._expirations, this._invalidations);
+	}
+}
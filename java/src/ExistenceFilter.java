@@ -0,0 +1,271 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+* This class answers "does this key exist" for one key column.  A Bloom filter over every key is
+* built from the table once.  Keys the filter might contain are confirmed by the caller; keys it
+* rejects are confirmed with an index-only EXISTS probe, because the filter only sees keys inserted
+* through this process and another client may have added the key since the last build.  A key
+* found that way is added and the filter is rebuilt early; otherwise it is rebuilt after the
+* refresh interval.  Only the first build runs on the caller's thread; later ones run in the
+* background while lookups keep using the old filter.
+*/
+
+public class ExistenceFilter
+{
+	public static final double FALSE_POSITIVE_RATE = 0.01;
+
+	//the filter is rebuilt this often to pick up rows inserted by other clients
+	public static final long DEFAULT_REFRESH_MILLIS = 60000;
+
+	private final DBproject _esql;
+	private final String _table;
+	private final String _column;
+	private final long _refreshMillis;
+
+	private volatile BloomFilter _filter = null;
+	private volatile long _builtAtMillis = 0;
+	private final AtomicLong _keysAdded = new AtomicLong();
+
+	//one build at a time; keys added while it streams the table are replayed into its filter
+	private final Object _buildLock = new Object();
+	private List<Integer> _addedDuringBuild = null;
+
+	private final AtomicBoolean _refreshing = new AtomicBoolean();
+	private ExecutorService _refresher = null;
+
+	private final AtomicLong _lookups = new AtomicLong();
+	private final AtomicLong _filtered = new AtomicLong();
+	private final AtomicLong _falsePositives = new AtomicLong();
+	private final AtomicLong _falseNegatives = new AtomicLong();
+
+	public ExistenceFilter(DBproject esql, String table, String column, long refreshMillis)
+	{
+		this._esql = esql;
+		this._table = table;
+		this._column = column;
+		this._refreshMillis = refreshMillis;
+	}
+
+	/**
+	 * Method to (re)build the filter from every key in the table.  The keys
+	 * are streamed, so the table is never held in memory.  Lookups and adds
+	 * carry on against the old filter meanwhile.
+	 *
+	 * @throws java.sql.SQLException when the keys cannot be read
+	 */
+	public void build() throws SQLException
+	{
+		synchronized (this._buildLock)
+		{
+			synchronized (this)
+			{
+				this._addedDuringBuild = new ArrayList<Integer>();
+			}
+
+			try
+			{
+				int count = this._esql.executePreparedQueryForInt("SELECT COUNT(*) FROM " + this._table + ";", 0);
+
+				// room to grow before the false positive rate degrades
+				final BloomFilter filter = new BloomFilter(Math.max(1024, 2 * count), FALSE_POSITIVE_RATE);
+
+				this._esql.executePreparedQueryForEach("SELECT " + this._column + " FROM " + this._table + ";",
+							DBproject.DEFAULT_FETCH_SIZE, rs -> filter.add(rs.getInt(1)));
+
+				synchronized (this)
+				{
+					// the stream may have missed keys inserted after it started
+					for (int key : this._addedDuringBuild)
+						filter.add(key);
+
+					this._filter = filter;
+					this._builtAtMillis = System.currentTimeMillis();
+					this._keysAdded.set(count + this._addedDuringBuild.size());
+				}
+			}
+			finally
+			{
+				synchronized (this)
+				{
+					this._addedDuringBuild = null;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Method to record a key inserted by this process, so the filter never
+	 * rejects it, including the one a running build is about to install.
+	 *
+	 * @param key the inserted key
+	 */
+	public synchronized void add(int key)
+	{
+		if (this._addedDuringBuild != null)
+			this._addedDuringBuild.add(key);
+
+		BloomFilter filter = this._filter;
+
+		if (filter == null)
+			return;
+
+		filter.add(key);
+
+		// rebuilds on the next lookup once the filter is past its sizing
+		if (this._keysAdded.incrementAndGet() > filter.getExpectedKeys())
+			this._builtAtMillis = 0;
+	}
+
+	/**
+	 * Method to check a key against the filter only.  False means the key
+	 * was not in the table at the last build, which confirmMissing checks
+	 * against the table; true means it has to be confirmed.
+	 *
+	 * @param key the key to look for
+	 * @return false when the key was never loaded or inserted
+	 * @throws java.sql.SQLException when the filter had to be rebuilt and that failed
+	 */
+	public boolean mightContain(int key) throws SQLException
+	{
+		this._lookups.incrementAndGet();
+
+		if (this._filter == null)
+			refresh();
+		else if (isStale())
+			refreshInBackground();
+
+		if (this._filter.mightContain(key))
+			return true;
+
+		this._filtered.incrementAndGet();
+		return false;
+	}
+
+	/**
+	 * Method to confirm a key the filter rejected with an index lookup.  A
+	 * key another client inserted since the last build is added to the
+	 * filter, and the filter is rebuilt in the background to pick up the
+	 * rest of that client's rows.
+	 *
+	 * @param key the key the filter rejected
+	 * @return true when the key exists after all
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public boolean confirmMissing(int key) throws SQLException
+	{
+		Boolean found = this._esql.executePreparedQueryForObject("SELECT EXISTS (SELECT 1 FROM " + this._table + " WHERE " + this._column + " = ?);",
+						rs -> rs.getBoolean(1), key);
+
+		if (!Boolean.TRUE.equals(found))
+			return false;
+
+		this._falseNegatives.incrementAndGet();
+		add(key);
+
+		this._builtAtMillis = 0;
+		refreshInBackground();
+		return true;
+	}
+
+	/**
+	 * Method to count a key that passed the filter but does not exist.
+	 */
+	public void recordFalsePositive()
+	{
+		this._falsePositives.incrementAndGet();
+	}
+
+	private boolean isStale()
+	{
+		return this._filter == null || System.currentTimeMillis() - this._builtAtMillis > this._refreshMillis;
+	}
+
+	private void refresh() throws SQLException
+	{
+		synchronized (this._buildLock)
+		{
+			// another thread may have built it while this one waited
+			if (this._filter == null)
+				build();
+		}
+	}
+
+	/*
+	* Starts a rebuild on the refresher thread unless one is already running.
+	*/
+	private void refreshInBackground()
+	{
+		if (!this._refreshing.compareAndSet(false, true))
+			return;
+
+		try
+		{
+			refresher().execute(() ->
+			{
+				try
+				{
+					build();
+				}
+				catch (SQLException e)
+				{
+					// retried after another interval rather than on every lookup
+					this._builtAtMillis = System.currentTimeMillis();
+					System.err.println("Error - Unable to Rebuild the " + this._table + "." + this._column + " Filter: " + e.getMessage());
+				}
+				finally
+				{
+					this._refreshing.set(false);
+				}
+			});
+		}
+		catch (RejectedExecutionException e)
+		{
+			// closed, the current filter stays
+			this._refreshing.set(false);
+		}
+	}
+
+	private synchronized ExecutorService refresher()
+	{
+		if (this._refresher == null)
+		{
+			this._refresher = Executors.newSingleThreadExecutor(r ->
+			{
+				Thread t = new Thread(r, "ExistenceFilter-" + this._table);
+				t.setDaemon(true);
+				return t;
+			});
+		}
+
+		return this._refresher;
+	}
+
+	public synchronized void close()
+	{
+		if (this._refresher != null)
+			this._refresher.shutdownNow();
+	}
+
+	public String toString()
+	{
+		return String.format("%s.%s lookups:%d rejected by the filter:%d false positives:%d inserted since the build:%d",
+					this._table, this._column, this._lookups.get(), this._filtered.get(), this._falsePositives.get(), this._falseNegatives.get());
+	}
+}
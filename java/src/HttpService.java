@@ -0,0 +1,490 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import com.sun.net.httpserver.*;
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+* This class serves the seven menu operations as HTTP/JSON endpoints on the JDK's HttpServer:
+*
+*	POST /ships                         {"make", "model", "age", "seats"}
+*	POST /captains                      {"fullname", "nationality"}
+*	POST /cruises                       {"cost", "num_sold", "num_stops", "departure", "arrival", "arrival_port", "departure_port"}
+*	POST /bookings                      {"customer", "cruise"}
+*	DELETE /bookings/<rnum>
+*	GET  /cruises/<cnum>/seats
+*	GET  /repairs/top?k=&code=&from=&to=
+*	GET  /cruises/<cnum>/passengers?status=<W|C|R>[&list=true&after=<rnum>&limit=<n>]
+*	GET  /stats
+*
+* Fields may also be given as query or form parameters.  Each request runs on its own virtual
+* thread when the JVM has them (Java 21 and later) and on a fixed pool of platform threads
+* otherwise; either way the DBMS work is bounded by the DBproject connection pool, and a request
+* that cannot get a connection in time is answered 503.  stop() lets requests in flight finish.
+*/
+
+public final class HttpService
+{
+	//platform threads serving requests when virtual threads are not available
+	public static final int DEFAULT_PLATFORM_THREADS = 64;
+
+	//how long stop() waits for requests in flight
+	public static final int DEFAULT_SHUTDOWN_SECONDS = 10;
+
+	/*
+	* The answer to one request.
+	*/
+	static final class Response
+	{
+		final int status;
+		final String json;
+
+		Response(int status, String json)
+		{
+			this.status = status;
+			this.json = json;
+		}
+	}
+
+	/*
+	* One route; params holds the query, form and JSON body fields of the request.
+	*/
+	private interface Endpoint
+	{
+		Response handle(String method, String[] path, Map<String, String> params) throws Exception;
+	}
+
+	private final DBproject _esql;
+	private final HttpServer _server;
+	private final ExecutorService _executor;
+	private final boolean _virtualThreads;
+
+	private final AtomicLong _requests = new AtomicLong();
+	private final AtomicLong _clientErrors = new AtomicLong();
+	private final AtomicLong _serverErrors = new AtomicLong();
+
+	public HttpService(DBproject esql, int port, int platformThreads) throws IOException
+	{
+		this._esql = esql;
+		this._server = HttpServer.create(new InetSocketAddress(port), 0);
+
+		ExecutorService virtual = newVirtualThreadExecutor();
+
+		this._virtualThreads = (virtual != null);
+		this._executor = (virtual != null) ? virtual : Executors.newFixedThreadPool(platformThreads);
+		this._server.setExecutor(this._executor);
+
+		route("/ships", this::addShip);
+		route("/captains", this::addCaptain);
+		route("/cruises", this::cruises);
+		route("/bookings", this::bookCruise);
+		route("/repairs", this::repairs);
+		route("/stats", this::stats);
+	}
+
+	/*
+	* Executors.newVirtualThreadPerTaskExecutor through reflection, so the class still compiles and
+	* runs on JVMs older than 21; null when it is not there.
+	*/
+	static ExecutorService newVirtualThreadExecutor()
+	{
+		try
+		{
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		}
+		catch (ReflectiveOperationException e)
+		{
+			return null;
+		}
+	}
+
+	public void start()
+	{
+		this._server.start();
+		System.out.println(String.format("Serving on port %d with %s", this._server.getAddress().getPort(),
+					this._virtualThreads ? "virtual threads" : "platform threads"));
+	}
+
+	/**
+	 * Method to stop accepting requests and wait for the ones in flight.
+	 *
+	 * @param seconds the longest wait for requests in flight
+	 */
+	public void stop(int seconds)
+	{
+		this._server.stop(seconds);
+		this._executor.shutdown();
+
+		try
+		{
+			this._executor.awaitTermination(seconds, TimeUnit.SECONDS);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Method to serve until the JVM is asked to exit, e.g. by Ctrl-C or
+	 * SIGTERM, then stop gracefully.  Returns once the service stopped so the
+	 * caller can close the database connections.
+	 *
+	 * @throws java.lang.InterruptedException when interrupted while serving
+	 */
+	public void serveUntilShutdown() throws InterruptedException
+	{
+		final CountDownLatch stopped = new CountDownLatch(1);
+		final Thread caller = Thread.currentThread();
+
+		Runtime.getRuntime().addShutdownHook(new Thread(() ->
+		{
+			System.out.println("Shutting down, waiting for requests in flight...");
+			stop(DEFAULT_SHUTDOWN_SECONDS);
+			stopped.countDown();
+
+			// the JVM halts when this hook returns, so the caller gets to clean up first
+			try
+			{
+				caller.join(DEFAULT_SHUTDOWN_SECONDS * 1000L);
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+		}, "HttpService-shutdown"));
+
+		start();
+		stopped.await();
+	}
+
+	public String toString()
+	{
+		return String.format("requests:%d client errors:%d server errors:%d %s threads",
+					this._requests.get(), this._clientErrors.get(), this._serverErrors.get(), this._virtualThreads ? "virtual" : "platform");
+	}
+
+	private void route(String prefix, Endpoint endpoint)
+	{
+		this._server.createContext(prefix, exchange ->
+		{
+			Response response;
+
+			this._requests.incrementAndGet();
+
+			try
+			{
+				String[] path = exchange.getRequestURI().getPath().replaceAll("^/+|/+$", "").split("/+");
+				response = endpoint.handle(exchange.getRequestMethod(), path, readParams(exchange));
+			}
+			catch (IllegalArgumentException e)
+			{
+				response = error(400, e.getMessage());
+			}
+			catch (SQLTransientException e)
+			{
+				response = error(503, e.getMessage());
+			}
+			catch (Exception e)
+			{
+				// the cause may name tables, columns or the server, so it stays in the log
+				System.err.println("Error - Unable to Handle " + exchange.getRequestMethod() + " " + exchange.getRequestURI().getPath() + ": " + e);
+				response = error(500, "Internal server error");
+			}
+
+			if (response.status >= 500)
+				this._serverErrors.incrementAndGet();
+			else if (response.status >= 400)
+				this._clientErrors.incrementAndGet();
+
+			byte[] body = response.json.getBytes(StandardCharsets.UTF_8);
+
+			exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+			exchange.sendResponseHeaders(response.status, body.length);
+
+			try (OutputStream out = exchange.getResponseBody())
+			{
+				out.write(body);
+			}
+		});
+	}
+
+	private Response addShip(String method, String[] path, Map<String, String> params) throws SQLException
+	{
+		if (path.length != 1)
+			return notFound();
+
+		if (!method.equals("POST"))
+			return methodNotAllowed();
+
+		String make = InputChecks.letters(params.get("make"), false, "make");
+		String model = InputChecks.letters(params.get("model"), false, "model");
+		int age = InputChecks.nonnegative(params.get("age"), "age");
+		int seats = InputChecks.nonnegative(params.get("seats"), "seats");
+		int id = this._esql.nextId(IdGenerator.SHIP_ID);
+
+		this._esql.insertShip(id, make, model, age, seats);
+
+		return new Response(201, new JsonBuilder().field("id", id).field("make", make).field("model", model)
+					.field("age", age).field("seats", seats).toString());
+	}
+
+	private Response addCaptain(String method, String[] path, Map<String, String> params) throws SQLException
+	{
+		if (path.length != 1)
+			return notFound();
+
+		if (!method.equals("POST"))
+			return methodNotAllowed();
+
+		String fullname = InputChecks.letters(params.get("fullname"), true, "fullname");
+		String nationality = InputChecks.letters(params.get("nationality"), true, "nationality");
+		int id = this._esql.nextId(IdGenerator.CAPTAIN_ID);
+
+		this._esql.insertCaptain(id, fullname, nationality);
+
+		return new Response(201, new JsonBuilder().field("id", id).field("fullname", fullname).field("nationality", nationality).toString());
+	}
+
+	private Response cruises(String method, String[] path, Map<String, String> params) throws SQLException
+	{
+		if (path.length == 1)
+			return addCruise(method, params);
+
+		if (path.length != 3)
+			return notFound();
+
+		if (!method.equals("GET"))
+			return methodNotAllowed();
+
+		int cruise = InputChecks.nonnegative(path[1], "cruise number");
+
+		switch (path[2])
+		{
+			case "seats":
+				return listAvailableSeats(cruise);
+			case "passengers":
+				return findPassengersWithStatus(cruise, params);
+			default:
+				return notFound();
+		}
+	}
+
+	private Response addCruise(String method, Map<String, String> params) throws SQLException
+	{
+		if (!method.equals("POST"))
+			return methodNotAllowed();
+
+		int cost = InputChecks.nonnegative(params.get("cost"), "cost");
+		int numSold = InputChecks.nonnegative(params.get("num_sold"), "num_sold");
+		int numStops = InputChecks.nonnegative(params.get("num_stops"), "num_stops");
+		String departure = InputChecks.cruiseDate(params.get("departure"), "departure");
+		String arrival = InputChecks.cruiseDate(params.get("arrival"), "arrival");
+		String arrivalPort = InputChecks.letters(params.get("arrival_port"), false, "arrival_port");
+		String departurePort = InputChecks.letters(params.get("departure_port"), false, "departure_port");
+		int cnum = this._esql.nextId(IdGenerator.CRUISE_ID);
+
+		this._esql.insertCruise(cnum, cost, numSold, numStops, departure, arrival, arrivalPort, departurePort);
+
+		return new Response(201, new JsonBuilder().field("cnum", cnum).field("cost", cost).field("num_sold", numSold)
+					.field("num_stops", numStops).field("departure", departure).field("arrival", arrival)
+					.field("arrival_port", arrivalPort).field("departure_port", departurePort).toString());
+	}
+
+	private Response bookCruise(String method, String[] path, Map<String, String> params) throws SQLException
+	{
+		if (path.length == 2)
+			return cancelReservation(method, path[1]);
+
+		if (path.length != 1)
+			return notFound();
+
+		if (!method.equals("POST"))
+			return methodNotAllowed();
+
+		int customer = InputChecks.nonnegative(params.get("customer"), "customer");
+		int cruise = InputChecks.nonnegative(params.get("cruise"), "cruise");
+
+		BookingEngine.Booking booking = null;
+
+		// both lookups run at once, on connections of their own
+		boolean exist = DBproject.await(this._esql.customerExistsAsync(customer)
+					.thenCombine(this._esql.cruiseExistsAsync(cruise), (customerExists, cruiseExists) -> customerExists && cruiseExists));
+
+		if (exist)
+			booking = this._esql.bookCruise(customer, cruise);
+
+		if (booking == null)
+			return error(404, "The record with Customer Number " + customer + " or Cruise Number " + cruise + " does not exist.");
+
+		return new Response(201, new JsonBuilder().field("rnum", booking.rnum).field("customer", booking.customerId)
+					.field("cruise", booking.cruiseNumber).field("status", String.valueOf(booking.status)).toString());
+	}
+
+	private Response cancelReservation(String method, String rnumText) throws SQLException
+	{
+		if (!method.equals("DELETE"))
+			return methodNotAllowed();
+
+		int rnum = InputChecks.nonnegative(rnumText, "reservation number");
+		WaitlistEngine.Cancellation cancellation = this._esql.cancelReservation(rnum);
+
+		if (cancellation == null)
+			return error(404, "The record with Reservation Number " + rnum + " does not exist.");
+
+		List<String> promoted = new ArrayList<String>();
+
+		for (Reservation reservation : cancellation.promoted)
+			promoted.add(reservationJson(reservation));
+
+		return new Response(200, new JsonBuilder().field("cancelled", cancellation.cancelled.rnum)
+					.field("cruise", cancellation.cancelled.cid).field("status", String.valueOf(cancellation.cancelled.status))
+					.array("promoted", promoted).toString());
+	}
+
+	private static String reservationJson(Reservation reservation)
+	{
+		return new JsonBuilder().field("rnum", reservation.rnum).field("customer", reservation.ccid)
+					.field("cruise", reservation.cid).field("status", String.valueOf(reservation.status)).toString();
+	}
+
+	private Response listAvailableSeats(int cruise) throws SQLException
+	{
+		Integer available = this._esql.getAvailableSeats(cruise);
+
+		if (available == null)
+			return error(404, "The record with Cruise Number " + cruise + " does not exist.");
+
+		return new Response(200, new JsonBuilder().field("cruise", cruise).field("available", Math.max(0, available)).toString());
+	}
+
+	private Response repairs(String method, String[] path, Map<String, String> params) throws SQLException
+	{
+		if (path.length != 2 || !path[1].equals("top"))
+			return notFound();
+
+		if (!method.equals("GET"))
+			return methodNotAllowed();
+
+		String k = params.get("k");
+		String from = params.get("from");
+		String to = params.get("to");
+
+		List<RepairLeaderboard.Entry> ships = this._esql.getTopRepairedShips(
+					(k == null || k.isEmpty()) ? 0 : InputChecks.nonnegative(k, "k"),
+					InputChecks.repairCode(params.get("code")),
+					(from == null || from.isEmpty()) ? null : InputChecks.date(from, "from"),
+					(to == null || to.isEmpty()) ? null : InputChecks.date(to, "to"));
+
+		List<String> rows = new ArrayList<String>();
+
+		for (RepairLeaderboard.Entry ship : ships)
+			rows.add(new JsonBuilder().field("ship_id", ship.shipId).field("repairs", ship.repairs).toString());
+
+		return new Response(200, new JsonBuilder().array("ships", rows).toString());
+	}
+
+	private Response findPassengersWithStatus(int cruise, Map<String, String> params) throws SQLException
+	{
+		char status = InputChecks.status(params.get("status"));
+		JsonBuilder json = new JsonBuilder().field("cruise", cruise).field("status", String.valueOf(status))
+					.field("count", this._esql.countPassengers(cruise, status));
+
+		if (Boolean.parseBoolean(params.get("list")))
+		{
+			String after = params.get("after");
+			String limit = params.get("limit");
+			List<Reservation> page = this._esql.listPassengers(cruise, status,
+						(after == null) ? -1 : InputChecks.nonnegative(after, "after"),
+						(limit == null) ? PassengerCounts.DEFAULT_PAGE_SIZE : Math.min(1000, InputChecks.nonnegative(limit, "limit")));
+			List<String> rows = new ArrayList<String>();
+
+			for (Reservation reservation : page)
+				rows.add(new JsonBuilder().field("rnum", reservation.rnum).field("ccid", reservation.ccid).toString());
+
+			json.array("passengers", rows);
+
+			if (!page.isEmpty())
+				json.field("after", page.get(page.size() - 1).rnum);
+		}
+
+		return new Response(200, json.toString());
+	}
+
+	private Response stats(String method, String[] path, Map<String, String> params)
+	{
+		if (path.length != 1)
+			return notFound();
+
+		return new Response(200, new JsonBuilder().field("service", toString()).field("pool", this._esql.getPoolStats())
+					.field("statement_cache", this._esql.getStatementCacheStats()).field("queries", this._esql.getQueryMetrics().toString()).toString());
+	}
+
+	private static Response error(int status, String message)
+	{
+		return new Response(status, new JsonBuilder().field("error", (message == null) ? "" : message).toString());
+	}
+
+	private static Response notFound()
+	{
+		return error(404, "No such endpoint");
+	}
+
+	private static Response methodNotAllowed()
+	{
+		return error(405, "Method not allowed");
+	}
+
+	/*
+	* Merges the query parameters with the fields of a JSON object or form encoded body.
+	*/
+	private static Map<String, String> readParams(HttpExchange exchange) throws IOException
+	{
+		Map<String, String> params = new HashMap<String, String>();
+		String query = exchange.getRequestURI().getRawQuery();
+
+		if (query != null)
+			parseForm(query, params);
+
+		byte[] bytes = exchange.getRequestBody().readAllBytes();
+		String body = new String(bytes, StandardCharsets.UTF_8).trim();
+
+		if (body.startsWith("{"))
+			params.putAll(JsonBuilder.parseFlatObject(body));
+		else if (!body.isEmpty())
+			parseForm(body, params);
+
+		return params;
+	}
+
+	private static void parseForm(String form, Map<String, String> params)
+	{
+		for (String pair : form.split("&"))
+		{
+			if (pair.isEmpty())
+				continue;
+
+			int eq = pair.indexOf('=');
+			String key = (eq < 0) ? pair : pair.substring(0, eq);
+			String value = (eq < 0) ? "" : pair.substring(eq + 1);
+
+			params.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+		}
+	}
+}
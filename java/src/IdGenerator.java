@@ -0,0 +1,227 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.*;
+import java.util.*;
+
+/*
+* This class hands out primary keys in hi/lo blocks.  Each call to nextval on a PostgreSQL sequence
+* reserves BLOCK_SIZE consecutive ids for this client, so most inserts need no extra round trip and
+* two clients never receive the same id.  Ids left over in a block when the client exits are skipped.
+*/
+
+public final class IdGenerator
+{
+	//ids reserved per nextval; must match INCREMENT BY of the sequences in sql/create.sql
+	public static final int BLOCK_SIZE = 50;
+
+	//sequences backing the tables whose keys the menu operations generate
+	public static final String SHIP_ID = "ship_id_seq";
+	public static final String CAPTAIN_ID = "captain_id_seq";
+	public static final String CRUISE_ID = "cruise_cnum_seq";
+	public static final String RESERVATION_ID = "reservation_rnum_seq";
+
+	/*
+	* The current block of one sequence.  Ids in [next, limit) are still free.
+	*/
+	private static class Block
+	{
+		private final String _sequence;
+		private final String _table;
+		private final String _column;
+		private boolean _initialized = false;
+		private long _next = 0;
+		private long _limit = 0;
+
+		private Block(String sequence, String table, String column)
+		{
+			this._sequence = sequence;
+			this._table = table;
+			this._column = column;
+		}
+	}
+
+	private final DBproject _esql;
+	private final Map<String, Block> _blocks = new HashMap<String, Block>();
+
+	//number of nextval round trips, one per block
+	private long _allocations = 0;
+
+	public IdGenerator(DBproject esql)
+	{
+		this._esql = esql;
+
+		register(SHIP_ID, "Ship", "id");
+		register(CAPTAIN_ID, "Captain", "id");
+		register(CRUISE_ID, "Cruise", "cnum");
+		register(RESERVATION_ID, "Reservation", "rnum");
+	}
+
+	/**
+	 * Method to register a sequence and the key column it generates.
+	 *
+	 * @param sequence the sequence name
+	 * @param table the table whose keys come from the sequence
+	 * @param column the key column of the table
+	 */
+	public synchronized void register(String sequence, String table, String column)
+	{
+		this._blocks.put(sequence, new Block(sequence, table, column));
+	}
+
+	/**
+	 * Method to return the next id of a sequence.  Only the first call after
+	 * a block is used up issues a query to the DBMS.
+	 *
+	 * @param sequence the registered sequence name
+	 * @return an id no other client has been given
+	 * @throws java.sql.SQLException when a new block cannot be reserved
+	 */
+	public int nextId(String sequence) throws SQLException
+	{
+		Block block;
+
+		synchronized (this)
+		{
+			block = this._blocks.get(sequence);
+		}
+
+		if (block == null)
+			throw new IllegalArgumentException("Unknown sequence: " + sequence);
+
+		synchronized (block)
+		{
+			if (block._next >= block._limit)
+				allocate(block);
+
+			return (int) block._next++;
+		}
+	}
+
+	/**
+	 * Method to reserve many ids of a sequence in one round trip, e.g. for a
+	 * bulk load.  Whole blocks are reserved and the unused tail of the last
+	 * one is skipped.
+	 *
+	 * @param sequence the registered sequence name
+	 * @param count the number of ids wanted
+	 * @return count ids no other client has been given
+	 * @throws java.sql.SQLException when the blocks cannot be reserved
+	 */
+	public int[] nextIds(String sequence, int count) throws SQLException
+	{
+		Block block;
+
+		synchronized (this)
+		{
+			block = this._blocks.get(sequence);
+		}
+
+		if (block == null)
+			throw new IllegalArgumentException("Unknown sequence: " + sequence);
+
+		int[] ids = new int[count];
+
+		if (count == 0)
+			return ids;
+
+		synchronized (block)
+		{
+			initialize(block);
+		}
+
+		int blocks = (count + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		this._esql.executePreparedQueryAndRead(
+			String.format("SELECT nextval('%s') FROM generate_series(1, ?);", block._sequence), rs ->
+		{
+			int i = 0;
+
+			while (rs.next())
+			{
+				long start = rs.getLong(1);
+
+				for (int j = 0; j < BLOCK_SIZE && i < count; ++j)
+					ids[i++] = (int) (start + j);
+			}
+
+			return i;
+		}, blocks);
+
+		synchronized (this)
+		{
+			this._allocations += blocks;
+		}
+
+		return ids;
+	}
+
+	/*
+	* Reserves the next block of a sequence.
+	*/
+	private void allocate(Block block) throws SQLException
+	{
+		initialize(block);
+
+		long start = this._esql.executePreparedQueryForLong(
+			String.format("SELECT nextval('%s');", block._sequence), -1);
+
+		block._next = start;
+		block._limit = start + BLOCK_SIZE;
+
+		synchronized (this)
+		{
+			++this._allocations;
+		}
+	}
+
+	/*
+	* The first time a sequence is used in this process it is created if missing and moved past any
+	* key inserted without it, e.g. by a bulk load.  This commits on its own connection, so a batch
+	* that rolls back cannot undo it after _initialized is set.
+	*/
+	private void initialize(Block block) throws SQLException
+	{
+		if (!block._initialized)
+		{
+			this._esql.executeInOwnTransaction(pc ->
+			{
+				try (Statement stmt = pc.getConnection().createStatement())
+				{
+					// clients initializing the same sequence take turns, until commit
+					stmt.execute(String.format("SELECT pg_advisory_xact_lock(hashtext('%s'));", block._sequence));
+
+					stmt.execute(String.format(
+						"CREATE SEQUENCE IF NOT EXISTS %s INCREMENT BY %d MINVALUE 0 START WITH 0;",
+						block._sequence, BLOCK_SIZE));
+
+					// moved forward with nextval, never setval: another client's nextval between the read
+					// and a setval could be handed the same block again; extra blocks are merely skipped
+					stmt.execute(String.format(
+						"SELECT nextval('%s')\n" +
+						"FROM %s s, (SELECT COALESCE(MAX(%s), -1) AS maxId FROM %s) t,\n" +
+						"	generate_series(1, CEIL((t.maxId + 1 - s.last_value - (CASE WHEN s.is_called THEN %d ELSE 0 END)) / %d.0)::INTEGER);",
+						block._sequence, block._sequence, block._column, block._table, BLOCK_SIZE, BLOCK_SIZE));
+				}
+
+				return null;
+			});
+
+			block._initialized = true;
+		}
+	}
+
+	public synchronized long getAllocations()
+	{
+		return this._allocations;
+	}
+}
@@ -0,0 +1,689 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetMetaDataImpl;
+import javax.sql.rowset.RowSetProvider;
+
+/*
+* This class answers the menu operations without Postgres, from the data/*.csv files create.sql
+* loads.  Every table is kept column by column in primitive arrays: ids, counts and foreign keys in
+* int arrays, dates as epoch days, the reservation status and repair code in byte arrays, and port
+* codes dictionary-encoded into ints.  Foreign keys are resolved to row numbers when a row is added,
+* and each cruise keeps its seats, its num_sold and a chain through its reservations, so
+* lookups never scan a table.  Only the repairs report scans, over three arrays.
+*
+* Inserts and bookings change the memory only and are lost on exit.  The store checks the keys and
+* the domains of create.sql the way Postgres would, and takes one caller at a time.
+*/
+
+public class InMemoryStore implements CruiseStore
+{
+	private static final int INITIAL_CAPACITY = 256;
+
+	//ids at or past this are kept in a map instead of the array of rows
+	private static final int MAX_DENSE_ID = 1 << 24;
+
+	//widths of the CHAR columns of create.sql
+	private static final int MAKE_LENGTH = 32;
+	private static final int MODEL_LENGTH = 64;
+	private static final int FULLNAME_LENGTH = 128;
+	private static final int NATIONALITY_LENGTH = 24;
+	private static final int PORT_LENGTH = 5;
+
+	/*
+	* A growable int column.
+	*/
+	static final class IntColumn
+	{
+		int[] _values = new int[INITIAL_CAPACITY];
+		int _size = 0;
+
+		int add(int value)
+		{
+			if (this._size == this._values.length)
+				this._values = Arrays.copyOf(this._values, 2 * this._size);
+
+			this._values[this._size] = value;
+			return this._size++;
+		}
+
+		int get(int row)
+		{
+			return this._values[row];
+		}
+
+		void set(int row, int value)
+		{
+			this._values[row] = value;
+		}
+	}
+
+	/*
+	* A growable byte column, for the one character codes.
+	*/
+	static final class ByteColumn
+	{
+		byte[] _values = new byte[INITIAL_CAPACITY];
+		int _size = 0;
+
+		int add(byte value)
+		{
+			if (this._size == this._values.length)
+				this._values = Arrays.copyOf(this._values, 2 * this._size);
+
+			this._values[this._size] = value;
+			return this._size++;
+		}
+
+		byte get(int row)
+		{
+			return this._values[row];
+		}
+	}
+
+	/*
+	* The distinct values of a text column, each one stored once and referred to by its code.
+	*/
+	static final class Dictionary
+	{
+		private final Map<String, Integer> _codes = new HashMap<String, Integer>();
+		private final List<String> _values = new ArrayList<String>();
+
+		int encode(String value)
+		{
+			Integer code = this._codes.get(value);
+
+			if (code == null)
+			{
+				code = this._values.size();
+				this._codes.put(value, code);
+				this._values.add(value);
+			}
+
+			return code;
+		}
+
+		String decode(int code)
+		{
+			return this._values.get(code);
+		}
+
+		int size()
+		{
+			return this._values.size();
+		}
+	}
+
+	/*
+	* The row of each primary key.  Keys are dense from 0, both in data/ and from the sequences, so
+	* rows are looked up in an array indexed by key and only stray keys go to a map.
+	*/
+	static final class IdIndex
+	{
+		//row + 1 of each id, 0 when there is none
+		private int[] _rows = new int[INITIAL_CAPACITY];
+		private final Map<Integer, Integer> _sparse = new HashMap<Integer, Integer>();
+		private int _maxId = -1;
+
+		int find(int id)
+		{
+			if (id >= 0 && id < MAX_DENSE_ID)
+				return (id < this._rows.length) ? this._rows[id] - 1 : -1;
+
+			Integer row = this._sparse.get(id);
+			return (row == null) ? -1 : row;
+		}
+
+		/*
+		* Returns false, and changes nothing, when the id already has a row.
+		*/
+		boolean put(int id, int row)
+		{
+			if (find(id) >= 0)
+				return false;
+
+			if (id >= 0 && id < MAX_DENSE_ID)
+			{
+				if (id >= this._rows.length)
+					this._rows = Arrays.copyOf(this._rows, Math.max(2 * this._rows.length, id + 1));
+
+				this._rows[id] = row + 1;
+			}
+			else
+				this._sparse.put(id, row);
+
+			this._maxId = Math.max(this._maxId, id);
+			return true;
+		}
+
+		int getMaxId()
+		{
+			return this._maxId;
+		}
+	}
+
+	/*
+	* Callback given the fields of each line of a CSV file.
+	*/
+	private interface LineReader
+	{
+		void line(String[] fields) throws SQLException;
+	}
+
+	//Ship
+	private final IdIndex _shipRows = new IdIndex();
+	private final IntColumn _shipId = new IntColumn();
+	private final IntColumn _shipAge = new IntColumn();
+	private final IntColumn _shipSeats = new IntColumn();
+	private final List<String> _shipMake = new ArrayList<String>();
+	private final List<String> _shipModel = new ArrayList<String>();
+
+	//Captain
+	private final IdIndex _captainRows = new IdIndex();
+	private final IntColumn _captainId = new IntColumn();
+	private final List<String> _captainName = new ArrayList<String>();
+	private final List<String> _captainNationality = new ArrayList<String>();
+
+	//Customer, only the ids: no menu operation reads the rest
+	private final IdIndex _customerRows = new IdIndex();
+	private final IntColumn _customerId = new IntColumn();
+
+	//Cruise, dates as epoch days and ports as codes of _ports
+	private final IdIndex _cruiseRows = new IdIndex();
+	private final IntColumn _cruiseNum = new IntColumn();
+	private final IntColumn _cruiseCost = new IntColumn();
+	private final IntColumn _cruiseSold = new IntColumn();
+	private final IntColumn _cruiseStops = new IntColumn();
+	private final IntColumn _cruiseDeparture = new IntColumn();
+	private final IntColumn _cruiseArrival = new IntColumn();
+	private final IntColumn _cruiseArrivalPort = new IntColumn();
+	private final IntColumn _cruiseDeparturePort = new IntColumn();
+	private final Dictionary _ports = new Dictionary();
+
+	//per cruise: MIN(Ship.seats) over its CruiseInfo rows and its newest reservation
+	private final IntColumn _cruiseSeats = new IntColumn();
+	private final IntColumn _cruiseReservations = new IntColumn();
+
+	//CruiseInfo, only kept as the seats of each cruise
+	private int _cruiseInfoCount = 0;
+
+	//Repairs, the ship as its row and the code as its index in RepairLeaderboard.REPAIR_CODES
+	private final IntColumn _repairShip = new IntColumn();
+	private final IntColumn _repairDate = new IntColumn();
+	private final ByteColumn _repairCode = new ByteColumn();
+
+	//Reservation, the cruise as its row; each row links to the previous reservation of its cruise
+	private final IdIndex _reservationRows = new IdIndex();
+	private final IntColumn _reservationNum = new IntColumn();
+	private final IntColumn _reservationCustomer = new IntColumn();
+	private final IntColumn _reservationCruise = new IntColumn();
+	private final ByteColumn _reservationStatus = new ByteColumn();
+	private final IntColumn _reservationNext = new IntColumn();
+
+	//the next key of each IdGenerator sequence
+	private final Map<String, Integer> _sequences = new HashMap<String, Integer>();
+
+	private long _loadNanos = 0;
+
+	/**
+	 * Method to load a store from the CSV files of a data directory.
+	 *
+	 * @param dataDir the directory with the CSV files create.sql loads, e.g. ../data
+	 * @return the store, with its sequences past the largest loaded keys
+	 * @throws java.io.IOException when a file cannot be read or a line breaks a key or a domain
+	 */
+	public static InMemoryStore load(Path dataDir) throws IOException
+	{
+		long begin = System.nanoTime();
+		InMemoryStore store = new InMemoryStore();
+
+		//id,make,model,age,seats
+		read(dataDir, "Ships.csv", 5, f -> store.insertShip(parse(f[0]), f[1], f[2], parse(f[3]), parse(f[4])));
+
+		//id,fullname,nationality
+		read(dataDir, "Captains.csv", 3, f -> store.insertCaptain(parse(f[0]), f[1], f[2]));
+
+		//id,fname,lname,gtype,dob,address,phone,zipcode
+		read(dataDir, "customer.csv", 1, f -> store.insertCustomer(parse(f[0])));
+
+		//cnum,cost,num_sold,num_stops,actual_departure_date,actual_arrival_date,arrival_port,departure_port
+		read(dataDir, "Cruises.csv", 8, f -> store.insertCruise(parse(f[0]), parse(f[1]), parse(f[2]), parse(f[3]), f[4], f[5], f[6], f[7]));
+
+		//ciid,cruise_id,captain_id,ship_id
+		read(dataDir, "Cruiseinfo.csv", 4, f -> store.insertCruiseInfo(parse(f[1]), parse(f[2]), parse(f[3])));
+
+		//rid,repair_date,repair_code,captain_id,ship_id,technician_id
+		read(dataDir, "repairs.csv", 6, f -> store.insertRepair(f[1], f[2], parse(f[4])));
+
+		//rnum,ccid,cid,status
+		read(dataDir, "reservation.csv", 4, f -> store.insertReservation(parse(f[0]), parse(f[1]), parse(f[2]), f[3]));
+
+		store._sequences.put(IdGenerator.SHIP_ID, store._shipRows.getMaxId() + 1);
+		store._sequences.put(IdGenerator.CAPTAIN_ID, store._captainRows.getMaxId() + 1);
+		store._sequences.put(IdGenerator.CRUISE_ID, store._cruiseRows.getMaxId() + 1);
+		store._sequences.put(IdGenerator.RESERVATION_ID, store._reservationRows.getMaxId() + 1);
+
+		store._loadNanos = System.nanoTime() - begin;
+		return store;
+	}
+
+	private static void read(Path dataDir, String file, int fields, LineReader reader) throws IOException
+	{
+		try (BufferedReader in = Files.newBufferedReader(dataDir.resolve(file), StandardCharsets.UTF_8))
+		{
+			String line;
+			int lineNumber = 0;
+
+			while ((line = in.readLine()) != null)
+			{
+				++lineNumber;
+
+				if (line.trim().isEmpty())
+					continue;
+
+				String[] values = line.split(",", -1);
+
+				try
+				{
+					if (values.length < fields)
+						throw new IllegalArgumentException("expected " + fields + " fields, got " + values.length);
+
+					reader.line(values);
+				}
+				catch (SQLException | RuntimeException e)
+				{
+					throw new IOException(file + " line " + lineNumber + ": " + e.getMessage(), e);
+				}
+			}
+		}
+	}
+
+	private static int parse(String field)
+	{
+		return Integer.parseInt(field.trim());
+	}
+
+	public synchronized int nextId(String sequence) throws SQLException
+	{
+		Integer next = this._sequences.get(sequence);
+
+		if (next == null)
+			throw new SQLException("Unknown sequence: " + sequence, "42P01");
+
+		this._sequences.put(sequence, next + 1);
+		return next;
+	}
+
+	public synchronized void insertShip(int id, String make, String model, int age, int seats) throws SQLException
+	{
+		checkLength(make, MAKE_LENGTH);
+		checkLength(model, MODEL_LENGTH);
+		check(age >= 0, "_year_1970", age);
+		check(seats > 0 && seats < 500, "_seats", seats);
+
+		if (!this._shipRows.put(id, this._shipId._size))
+			throw duplicateKey("ship", id);
+
+		this._shipId.add(id);
+		this._shipAge.add(age);
+		this._shipSeats.add(seats);
+		this._shipMake.add(make);
+		this._shipModel.add(model);
+	}
+
+	public synchronized void insertCaptain(int id, String fullname, String nationality) throws SQLException
+	{
+		checkLength(fullname, FULLNAME_LENGTH);
+		checkLength(nationality, NATIONALITY_LENGTH);
+
+		if (!this._captainRows.put(id, this._captainId._size))
+			throw duplicateKey("captain", id);
+
+		this._captainId.add(id);
+		this._captainName.add(fullname);
+		this._captainNationality.add(nationality);
+	}
+
+	private void insertCustomer(int id) throws SQLException
+	{
+		if (!this._customerRows.put(id, this._customerId._size))
+			throw duplicateKey("customer", id);
+
+		this._customerId.add(id);
+	}
+
+	public synchronized void insertCruise(int cnum, int cost, int num_sold, int num_stops, String actual_departure_date, String actual_arrival_date,
+				String arrival_port, String departure_port) throws SQLException
+	{
+		check(cost > 0, "_pinteger", cost);
+		check(num_sold >= 0, "_pzerointeger", num_sold);
+		check(num_stops >= 0, "_pzerointeger", num_stops);
+		checkLength(arrival_port, PORT_LENGTH);
+		checkLength(departure_port, PORT_LENGTH);
+
+		int departure = parseDay(actual_departure_date);
+		int arrival = parseDay(actual_arrival_date);
+
+		if (!this._cruiseRows.put(cnum, this._cruiseNum._size))
+			throw duplicateKey("cruise", cnum);
+
+		this._cruiseNum.add(cnum);
+		this._cruiseCost.add(cost);
+		this._cruiseSold.add(num_sold);
+		this._cruiseStops.add(num_stops);
+		this._cruiseDeparture.add(departure);
+		this._cruiseArrival.add(arrival);
+		this._cruiseArrivalPort.add(this._ports.encode(arrival_port));
+		this._cruiseDeparturePort.add(this._ports.encode(departure_port));
+		this._cruiseSeats.add(0);
+		this._cruiseReservations.add(-1);
+	}
+
+	private void insertCruiseInfo(int cruiseId, int captainId, int shipId) throws SQLException
+	{
+		int cruise = findRow(this._cruiseRows, cruiseId, "cruise");
+		int ship = findRow(this._shipRows, shipId, "ship");
+
+		findRow(this._captainRows, captainId, "captain");
+
+		int seats = this._shipSeats.get(ship);
+		int current = this._cruiseSeats.get(cruise);
+
+		// a cruise with several ships gets the smallest, like the MIN(Ship.seats) of SeatInventory
+		this._cruiseSeats.set(cruise, (current == 0) ? seats : Math.min(current, seats));
+		++this._cruiseInfoCount;
+	}
+
+	private void insertRepair(String repairDate, String repairCode, int shipId) throws SQLException
+	{
+		int code = Arrays.asList(RepairLeaderboard.REPAIR_CODES).indexOf(repairCode);
+
+		check(code >= 0, "_code", repairCode);
+
+		this._repairShip.add(findRow(this._shipRows, shipId, "ship"));
+		this._repairDate.add(parseDay(repairDate));
+		this._repairCode.add((byte) code);
+	}
+
+	private void insertReservation(int rnum, int ccid, int cid, String status) throws SQLException
+	{
+		check(status.length() == 1 && "WCR".indexOf(status.charAt(0)) >= 0, "_status", status);
+		findRow(this._customerRows, ccid, "customer");
+
+		addReservation(rnum, ccid, findRow(this._cruiseRows, cid, "cruise"), status.charAt(0));
+	}
+
+	private void addReservation(int rnum, int ccid, int cruise, char status) throws SQLException
+	{
+		int row = this._reservationNum._size;
+
+		if (!this._reservationRows.put(rnum, row))
+			throw duplicateKey("reservation", rnum);
+
+		this._reservationNum.add(rnum);
+		this._reservationCustomer.add(ccid);
+		this._reservationCruise.add(cruise);
+		this._reservationStatus.add((byte) status);
+		this._reservationNext.add(this._cruiseReservations.get(cruise));
+		this._cruiseReservations.set(cruise, row);
+	}
+
+	public synchronized boolean customerExists(int id)
+	{
+		return this._customerRows.find(id) >= 0;
+	}
+
+	public synchronized boolean cruiseExists(int cnum)
+	{
+		return this._cruiseRows.find(cnum) >= 0;
+	}
+
+	/**
+	 * Method to book a cruise for a customer.  The status is decided by
+	 * BookingEngine.decideStatus from the cruise's num_sold and seats, and
+	 * num_sold goes up with every R, as in the JDBC backend.
+	 *
+	 * @param customerId the Customer.id of the passenger
+	 * @param cruiseNumber the Cruise.cnum to book
+	 * @return the reservation, or null when the customer or the cruise does not exist
+	 * @throws java.sql.SQLException when the reservation number is taken
+	 */
+	public synchronized BookingEngine.Booking bookCruise(int customerId, int cruiseNumber) throws SQLException
+	{
+		int cruise = this._cruiseRows.find(cruiseNumber);
+
+		if (cruise < 0 || this._customerRows.find(customerId) < 0)
+			return null;
+
+		char status = BookingEngine.decideStatus(this._cruiseSold.get(cruise), this._cruiseSeats.get(cruise));
+		int rnum = nextId(IdGenerator.RESERVATION_ID);
+
+		addReservation(rnum, customerId, cruise, status);
+
+		if (status == 'R')
+			this._cruiseSold.set(cruise, this._cruiseSold.get(cruise) + 1);
+
+		return new BookingEngine.Booking(rnum, customerId, cruiseNumber, status);
+	}
+
+	public synchronized Integer getAvailableSeats(int cnum)
+	{
+		int cruise = this._cruiseRows.find(cnum);
+
+		return (cruise < 0) ? null : this._cruiseSeats.get(cruise) - this._cruiseSold.get(cruise);
+	}
+
+	/**
+	 * Method to return the ships with the most repairs, counted in one scan
+	 * of the repair columns.
+	 *
+	 * @param k the number of ships wanted, 0 for every ship with a repair
+	 * @param repairCode MJ, MN or SV to count only those repairs, null for every code
+	 * @param from the first day counted as yyyy-mm-dd, null for no lower bound
+	 * @param to the last day counted as yyyy-mm-dd, null for no upper bound
+	 * @return the ships in decreasing order of repairs, then increasing id
+	 * @throws java.sql.SQLException when a date is not a valid day
+	 */
+	public synchronized List<RepairLeaderboard.Entry> getTopRepairedShips(int k, String repairCode, String from, String to) throws SQLException
+	{
+		int code = -1;
+
+		if (repairCode != null)
+		{
+			code = Arrays.asList(RepairLeaderboard.REPAIR_CODES).indexOf(repairCode);
+
+			if (code < 0)
+				throw new IllegalArgumentException("Unknown repair code: " + repairCode);
+		}
+
+		int first = (from == null) ? Integer.MIN_VALUE : parseDay(from);
+		int last = (to == null) ? Integer.MAX_VALUE : parseDay(to);
+
+		int[] ships = this._repairShip._values;
+		int[] days = this._repairDate._values;
+		byte[] codes = this._repairCode._values;
+		int[] counts = new int[this._shipId._size];
+
+		for (int row = 0; row < this._repairShip._size; ++row)
+			if ((code < 0 || codes[row] == code) && days[row] >= first && days[row] <= last)
+				++counts[ships[row]];
+
+		List<RepairLeaderboard.Entry> top = new ArrayList<RepairLeaderboard.Entry>();
+
+		for (int ship = 0; ship < counts.length; ++ship)
+			if (counts[ship] > 0)
+				top.add(new RepairLeaderboard.Entry(this._shipId.get(ship), counts[ship]));
+
+		top.sort((a, b) -> (a.repairs != b.repairs) ? Long.compare(b.repairs, a.repairs) : Integer.compare(a.shipId, b.shipId));
+
+		return (k > 0 && k < top.size()) ? new ArrayList<RepairLeaderboard.Entry>(top.subList(0, k)) : top;
+	}
+
+	/**
+	 * Method to write the ships with the most repairs as a report.  The
+	 * rows are handed to the report as a disconnected row set with the
+	 * columns of the JDBC backend's query.
+	 *
+	 * @param report the writer of the report
+	 * @param k the number of ships wanted, 0 for every ship with a repair
+	 * @param repairCode MJ, MN or SV to count only those repairs, null for every code
+	 * @param from the first day counted as yyyy-mm-dd, null for no lower bound
+	 * @param to the last day counted as yyyy-mm-dd, null for no upper bound
+	 * @return the number of ships written
+	 * @throws java.sql.SQLException when a date is not a valid day or the report cannot be written
+	 */
+	public long writeTopRepairedShips(ReportWriter report, int k, String repairCode, String from, String to) throws SQLException
+	{
+		List<RepairLeaderboard.Entry> top = getTopRepairedShips(k, repairCode, from, to);
+
+		RowSetMetaDataImpl rsmd = new RowSetMetaDataImpl();
+
+		rsmd.setColumnCount(2);
+		rsmd.setColumnName(1, "ship_id");
+		rsmd.setColumnLabel(1, "ship_id");
+		rsmd.setColumnType(1, Types.INTEGER);
+		rsmd.setColumnName(2, "repaircount");
+		rsmd.setColumnLabel(2, "repaircount");
+		rsmd.setColumnType(2, Types.BIGINT);
+
+		CachedRowSet crs = RowSetProvider.newFactory().createCachedRowSet();
+		crs.setMetaData(rsmd);
+
+		for (RepairLeaderboard.Entry entry : top)
+		{
+			// rows are inserted at the cursor, so it is kept after the last row to keep the order
+			crs.afterLast();
+			crs.moveToInsertRow();
+			crs.updateInt(1, entry.shipId);
+			crs.updateLong(2, entry.repairs);
+			crs.insertRow();
+			crs.moveToCurrentRow();
+		}
+
+		crs.beforeFirst();
+		return DBproject.writeReport(crs, report);
+	}
+
+	public synchronized int countPassengers(int cnum, char status)
+	{
+		int count = 0;
+		int cruise = this._cruiseRows.find(cnum);
+
+		for (int row = (cruise < 0) ? -1 : this._cruiseReservations.get(cruise); row >= 0; row = this._reservationNext.get(row))
+			if (this._reservationStatus.get(row) == status)
+				++count;
+
+		return count;
+	}
+
+	public synchronized List<Reservation> listPassengers(int cnum, char status, int afterRnum, int pageSize)
+	{
+		List<Reservation> page = new ArrayList<Reservation>();
+		int cruise = this._cruiseRows.find(cnum);
+
+		for (int row = (cruise < 0) ? -1 : this._cruiseReservations.get(cruise); row >= 0; row = this._reservationNext.get(row))
+			if (this._reservationStatus.get(row) == status && this._reservationNum.get(row) > afterRnum)
+				page.add(new Reservation(this._reservationNum.get(row), this._reservationCustomer.get(row), cnum, status));
+
+		page.sort((a, b) -> Integer.compare(a.rnum, b.rnum));
+
+		return (page.size() > pageSize) ? new ArrayList<Reservation>(page.subList(0, pageSize)) : page;
+	}
+
+	/**
+	 * Method to return the number of cruises, e.g. to pick cruise numbers
+	 * that exist.
+	 *
+	 * @return the number of rows of Cruise
+	 */
+	public synchronized int getCruiseCount()
+	{
+		return this._cruiseNum._size;
+	}
+
+	public synchronized int getCustomerCount()
+	{
+		return this._customerId._size;
+	}
+
+	public long getLoadNanos()
+	{
+		return this._loadNanos;
+	}
+
+	/**
+	 * Method to release the store.  It holds memory only, which is dropped
+	 * with it.
+	 */
+	public void cleanup()
+	{
+	}
+
+	public synchronized String toString()
+	{
+		return String.format("%d ships, %d captains, %d customers, %d cruises (%d ports), %d cruise infos, %d repairs, %d reservations loaded in %.1f ms",
+					this._shipId._size, this._captainId._size, this._customerId._size, this._cruiseNum._size, this._ports.size(),
+					this._cruiseInfoCount, this._repairShip._size, this._reservationNum._size, this._loadNanos / 1e6);
+	}
+
+	private static int findRow(IdIndex index, int id, String table) throws SQLException
+	{
+		int row = index.find(id);
+
+		if (row < 0)
+			throw new SQLException("insert or update violates foreign key constraint: key (" + id + ") is not present in table \"" + table + "\"", "23503");
+
+		return row;
+	}
+
+	private static SQLException duplicateKey(String table, int id)
+	{
+		return new SQLException("duplicate key value violates unique constraint \"" + table + "_pkey\": key (" + id + ") already exists", "23505");
+	}
+
+	private static void check(boolean valid, String domain, Object value) throws SQLException
+	{
+		if (!valid)
+			throw new SQLException("value for domain " + domain + " violates check constraint: " + value, "23514");
+	}
+
+	private static void checkLength(String value, int length) throws SQLException
+	{
+		if (value != null && value.length() > length)
+			throw new SQLException("value too long for type character(" + length + "): " + value, "22001");
+	}
+
+	/*
+	* Reads yyyy-mm-dd, or the yyyy-mm-dd HH:MM of Cruises.csv, as an epoch day; the time is dropped
+	* as when Postgres casts it to DATE.
+	*/
+	private static int parseDay(String date) throws SQLException
+	{
+		try
+		{
+			return (int) LocalDate.parse(date.trim().substring(0, Math.min(10, date.trim().length()))).toEpochDay();
+		}
+		catch (DateTimeParseException e)
+		{
+			throw new SQLException("invalid input syntax for type date: \"" + date + "\"", "22008", e);
+		}
+	}
+}
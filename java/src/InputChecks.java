@@ -0,0 +1,106 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
+/*
+* The checks the interactive menu applies to its inputs, for the callers that receive their
+* fields all at once (the batch mode and the HTTP service).  A field that fails a check throws an
+* IllegalArgumentException naming the field.
+*/
+
+public final class InputChecks
+{
+	private InputChecks()
+	{
+	}
+
+	public static int nonnegative(String field, String what)
+	{
+		int value;
+
+		try
+		{
+			value = Integer.parseInt(field);
+		}
+		catch (NumberFormatException e)
+		{
+			throw new IllegalArgumentException(what + " must be an integer: " + field);
+		}
+
+		if (value < 0)
+			throw new IllegalArgumentException(what + " must be nonnegative: " + field);
+
+		return value;
+	}
+
+	public static String letters(String field, boolean spaces, String what)
+	{
+		if (field == null || field.isEmpty())
+			throw new IllegalArgumentException(what + " must not be empty");
+
+		for (int i = 0; i < field.length(); ++i)
+		{
+			if (!Character.isLetter(field.charAt(i)) && !(spaces && Character.isSpaceChar(field.charAt(i))))
+				throw new IllegalArgumentException(what + " must contain only letters" + (spaces ? " and spaces" : "") + ": " + field);
+		}
+
+		return field;
+	}
+
+	public static String date(String field, String what)
+	{
+		try
+		{
+			return LocalDate.parse(field).toString();
+		}
+		catch (DateTimeParseException | NullPointerException e)
+		{
+			throw new IllegalArgumentException(what + " must be yyyy-mm-dd: " + field);
+		}
+	}
+
+	//the menu only takes cruise dates from 2014 to 2021
+	public static String cruiseDate(String field, String what)
+	{
+		String date = date(field, what);
+		int year = Integer.parseInt(date.substring(0, 4));
+
+		if (year < 2014 || year > 2021)
+			throw new IllegalArgumentException(what + " must be between 2014 and 2021: " + field);
+
+		return date;
+	}
+
+	public static char status(String field)
+	{
+		if (field == null || field.length() != 1 || "WCR".indexOf(Character.toUpperCase(field.charAt(0))) < 0)
+			throw new IllegalArgumentException("Passenger status must be W, C or R: " + field);
+
+		return Character.toUpperCase(field.charAt(0));
+	}
+
+	public static String repairCode(String field)
+	{
+		if (field == null || field.isEmpty())
+			return null;
+
+		String code = field.toUpperCase();
+
+		if (!code.equals("MJ") && !code.equals("MN") && !code.equals("SV"))
+			throw new IllegalArgumentException("Repair code must be MJ, MN or SV: " + field);
+
+		return code;
+	}
+}
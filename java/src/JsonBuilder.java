@@ -0,0 +1,223 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.util.*;
+
+/*
+* Just enough JSON for the HTTP service: builds one object field by field, and reads the flat
+* objects the service receives (string, number, boolean and null values, no nesting).
+*/
+
+public class JsonBuilder
+{
+	private final StringBuilder _json = new StringBuilder("{");
+
+	public JsonBuilder field(String name, long value)
+	{
+		name(name).append(value);
+		return this;
+	}
+
+	public JsonBuilder field(String name, String value)
+	{
+		quote(name(name), value);
+		return this;
+	}
+
+	/**
+	 * Method to add an array of values that are already JSON.
+	 *
+	 * @param name the field name
+	 * @param values the JSON text of each element
+	 * @return this builder
+	 */
+	public JsonBuilder array(String name, List<String> values)
+	{
+		StringBuilder json = name(name).append('[');
+
+		for (int i = 0; i < values.size(); ++i)
+			json.append((i == 0) ? "" : ",").append(values.get(i));
+
+		json.append(']');
+		return this;
+	}
+
+	private StringBuilder name(String name)
+	{
+		if (this._json.length() > 1)
+			this._json.append(',');
+
+		return quote(this._json, name).append(':');
+	}
+
+	public String toString()
+	{
+		return this._json + "}";
+	}
+
+	static StringBuilder quote(StringBuilder json, String value)
+	{
+		json.append('"');
+
+		for (int i = 0; i < value.length(); ++i)
+		{
+			char c = value.charAt(i);
+
+			switch (c)
+			{
+				case '"': json.append("\\\""); break;
+				case '\\': json.append("\\\\"); break;
+				case '\n': json.append("\\n"); break;
+				case '\r': json.append("\\r"); break;
+				case '\t': json.append("\\t"); break;
+				default:
+					if (c < 0x20)
+						json.append(String.format("\\u%04x", (int) c));
+					else
+						json.append(c);
+			}
+		}
+
+		return json.append('"');
+	}
+
+	/**
+	 * Method to read a JSON object whose values are all strings, numbers,
+	 * booleans or null.  Every value is returned as its text; null values
+	 * are left out.
+	 *
+	 * @param json the object
+	 * @return the fields of the object
+	 * @throws java.lang.IllegalArgumentException when the text is not such an object
+	 */
+	public static Map<String, String> parseFlatObject(String json)
+	{
+		Map<String, String> fields = new HashMap<String, String>();
+		int[] pos = { skipBlanks(json, 0) };
+
+		expect(json, pos, '{');
+
+		if (peek(json, pos) == '}')
+		{
+			++pos[0];
+			return fields;
+		}
+
+		while (true)
+		{
+			String name = readString(json, pos);
+
+			expect(json, pos, ':');
+
+			String value = (peek(json, pos) == '"') ? readString(json, pos) : readLiteral(json, pos);
+
+			if (value != null)
+				fields.put(name, value);
+
+			char c = peek(json, pos);
+			++pos[0];
+
+			if (c == '}')
+				return fields;
+
+			if (c != ',')
+				throw new IllegalArgumentException("Expected ',' or '}' at " + (pos[0] - 1) + " in the JSON body");
+		}
+	}
+
+	private static String readString(String json, int[] pos)
+	{
+		expect(json, pos, '"');
+
+		StringBuilder value = new StringBuilder();
+
+		while (pos[0] < json.length())
+		{
+			char c = json.charAt(pos[0]++);
+
+			if (c == '"')
+				return value.toString();
+
+			if (c != '\\')
+			{
+				value.append(c);
+				continue;
+			}
+
+			if (pos[0] >= json.length())
+				break;
+
+			char escaped = json.charAt(pos[0]++);
+
+			switch (escaped)
+			{
+				case 'n': value.append('\n'); break;
+				case 'r': value.append('\r'); break;
+				case 't': value.append('\t'); break;
+				case 'b': value.append('\b'); break;
+				case 'f': value.append('\f'); break;
+				case 'u':
+					if (pos[0] + 4 > json.length())
+						throw new IllegalArgumentException("Truncated \\u escape in the JSON body");
+
+					value.append((char) Integer.parseInt(json.substring(pos[0], pos[0] + 4), 16));
+					pos[0] += 4;
+					break;
+				default: value.append(escaped);
+			}
+		}
+
+		throw new IllegalArgumentException("Unterminated string in the JSON body");
+	}
+
+	private static String readLiteral(String json, int[] pos)
+	{
+		int begin = pos[0];
+
+		while (pos[0] < json.length() && ",}".indexOf(json.charAt(pos[0])) < 0 && !Character.isWhitespace(json.charAt(pos[0])))
+			++pos[0];
+
+		String literal = json.substring(begin, pos[0]);
+
+		if (literal.isEmpty() || literal.startsWith("[") || literal.startsWith("{"))
+			throw new IllegalArgumentException("Expected a string, number, boolean or null at " + begin + " in the JSON body");
+
+		return literal.equals("null") ? null : literal;
+	}
+
+	private static char peek(String json, int[] pos)
+	{
+		pos[0] = skipBlanks(json, pos[0]);
+
+		if (pos[0] >= json.length())
+			throw new IllegalArgumentException("Unexpected end of the JSON body");
+
+		return json.charAt(pos[0]);
+	}
+
+	private static void expect(String json, int[] pos, char c)
+	{
+		if (peek(json, pos) != c)
+			throw new IllegalArgumentException("Expected '" + c + "' at " + pos[0] + " in the JSON body");
+
+		++pos[0];
+	}
+
+	private static int skipBlanks(String json, int pos)
+	{
+		while (pos < json.length() && Character.isWhitespace(json.charAt(pos)))
+			++pos;
+
+		return pos;
+	}
+}
@@ -0,0 +1,161 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.util.concurrent.atomic.*;
+
+/*
+* A latency histogram in fixed memory, laid out like HdrHistogram: values below 128 microseconds
+* get one bucket each, and every power of two above that is split into 64 buckets, so a recorded
+* value is off by at most 1/64 (about 1.5%) whatever its size.  Values are kept in microseconds up
+* to about 18 minutes; longer ones land in the last bucket.  Recording is one atomic increment and
+* takes no lock, so any number of threads can record into the same histogram.
+*/
+
+public class LatencyHistogram
+{
+	//buckets per power of two above the linear range, as a power of two
+	private static final int SUB_BUCKET_BITS = 6;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	//values below this many microseconds are counted exactly
+	private static final int LINEAR_LIMIT = 2 * SUB_BUCKETS;
+
+	//largest value kept, 2^30 microseconds
+	private static final int MAX_EXPONENT = 30;
+	private static final long MAX_MICROS = (1L << MAX_EXPONENT) - 1;
+
+	private static final int BUCKETS = LINEAR_LIMIT + (MAX_EXPONENT - SUB_BUCKET_BITS - 1) * SUB_BUCKETS;
+
+	private final AtomicLongArray _counts = new AtomicLongArray(BUCKETS);
+	private final LongAdder _count = new LongAdder();
+	private final LongAdder _totalNanos = new LongAdder();
+	private final LongAccumulator _maxNanos = new LongAccumulator(Math::max, 0);
+
+	/**
+	 * Method to count one latency.
+	 *
+	 * @param nanos the latency in nanoseconds
+	 */
+	public void record(long nanos)
+	{
+		if (nanos < 0)
+			nanos = 0;
+
+		this._counts.incrementAndGet(bucket(nanos / 1000));
+		this._count.increment();
+		this._totalNanos.add(nanos);
+		this._maxNanos.accumulate(nanos);
+	}
+
+	static int bucket(long micros)
+	{
+		if (micros < LINEAR_LIMIT)
+			return (int) micros;
+
+		if (micros > MAX_MICROS)
+			micros = MAX_MICROS;
+
+		// the top SUB_BUCKET_BITS + 1 bits of the value, the first of which is always set
+		int exponent = 63 - Long.numberOfLeadingZeros(micros);
+		int shift = exponent - SUB_BUCKET_BITS;
+
+		return LINEAR_LIMIT + (exponent - SUB_BUCKET_BITS - 1) * SUB_BUCKETS + (int) (micros >>> shift) - SUB_BUCKETS;
+	}
+
+	//the largest value in microseconds counted in a bucket
+	static long highestValue(int bucket)
+	{
+		if (bucket < LINEAR_LIMIT)
+			return bucket;
+
+		int exponent = (bucket - LINEAR_LIMIT) / SUB_BUCKETS + SUB_BUCKET_BITS + 1;
+		int shift = exponent - SUB_BUCKET_BITS;
+		long subBucket = (bucket - LINEAR_LIMIT) % SUB_BUCKETS + SUB_BUCKETS;
+
+		return ((subBucket + 1) << shift) - 1;
+	}
+
+	public long getCount()
+	{
+		return this._count.sum();
+	}
+
+	public double getMeanMillis()
+	{
+		long count = getCount();
+
+		return (count == 0) ? 0.0 : this._totalNanos.sum() / 1e6 / count;
+	}
+
+	public double getMaxMillis()
+	{
+		return this._maxNanos.get() / 1e6;
+	}
+
+	/**
+	 * Method to return the latency below which the given fraction of the
+	 * recorded values fall.  Values recorded while the buckets are read may
+	 * or may not be included.
+	 *
+	 * @param p the fraction, e.g. 0.99
+	 * @return the latency in milliseconds, 0 when nothing was recorded
+	 */
+	public double getPercentileMillis(double p)
+	{
+		long[] counts = new long[BUCKETS];
+		long total = 0;
+
+		for (int i = 0; i < BUCKETS; ++i)
+		{
+			counts[i] = this._counts.get(i);
+			total += counts[i];
+		}
+
+		if (total == 0)
+			return 0.0;
+
+		long rank = Math.max(1, (long) Math.ceil(p * total));
+		long seen = 0;
+
+		for (int i = 0; i < BUCKETS; ++i)
+		{
+			seen += counts[i];
+
+			if (seen >= rank)
+				return Math.min(highestValue(i) / 1e3, getMaxMillis());
+		}
+
+		return getMaxMillis();
+	}
+
+	/**
+	 * Method to forget every recorded value.  Values recorded during the
+	 * reset may survive it.
+	 */
+	public void reset()
+	{
+		for (int i = 0; i < BUCKETS; ++i)
+			this._counts.set(i, 0);
+
+		this._count.reset();
+		this._totalNanos.reset();
+		this._maxNanos.reset();
+	}
+
+	public String toString()
+	{
+		return String.format("n %d  mean %.3f ms  p50 %.3f ms  p95 %.3f ms  p99 %.3f ms  max %.3f ms",
+					getCount(), getMeanMillis(), getPercentileMillis(0.50), getPercentileMillis(0.95),
+					getPercentileMillis(0.99), getMaxMillis());
+	}
+}
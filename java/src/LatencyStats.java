@@ -0,0 +1,87 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.util.*;
+
+/*
+* The latencies of one kind of operation, kept in full so exact percentiles can be reported at the
+* end of a run.  Safe to record from several threads.
+*/
+
+public class LatencyStats
+{
+	private long[] _nanos = new long[64];
+	private int _count = 0;
+	private int _failures = 0;
+
+	public synchronized void record(long nanos, boolean failed)
+	{
+		if (this._count == this._nanos.length)
+			this._nanos = Arrays.copyOf(this._nanos, 2 * this._count);
+
+		this._nanos[this._count++] = nanos;
+
+		if (failed)
+			++this._failures;
+	}
+
+	public synchronized int getCount()
+	{
+		return this._count;
+	}
+
+	public synchronized int getFailures()
+	{
+		return this._failures;
+	}
+
+	/**
+	 * Method to return the count, failures, mean, p50, p95, p99 and maximum
+	 * latency on one line.
+	 *
+	 * @return the summary
+	 */
+	public String summary()
+	{
+		long[] sorted;
+		int failures;
+
+		synchronized (this)
+		{
+			sorted = Arrays.copyOf(this._nanos, this._count);
+			failures = this._failures;
+		}
+
+		Arrays.sort(sorted);
+
+		long total = 0;
+
+		for (long nanos : sorted)
+			total += nanos;
+
+		return String.format("%6d ops %4d failed  mean %8.3f ms  p50 %8.3f ms  p95 %8.3f ms  p99 %8.3f ms  max %8.3f ms",
+					sorted.length, failures, total / 1e6 / Math.max(1, sorted.length),
+					percentile(sorted, 0.50) / 1e6, percentile(sorted, 0.95) / 1e6, percentile(sorted, 0.99) / 1e6,
+					percentile(sorted, 1.0) / 1e6);
+	}
+
+	private static long percentile(long[] sorted, double p)
+	{
+		if (sorted.length == 0)
+			return 0;
+
+		int index = (int) Math.ceil(p * sorted.length) - 1;
+
+		return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+	}
+}
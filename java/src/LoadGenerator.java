@@ -0,0 +1,349 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.File;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/*
+* This program puts DBproject under load.  N agents, each on its own virtual thread when the JVM
+* has them, run a weighted mix of bookings, seat lookups, status counts and repair reports for a
+* fixed time against a set of hot cruises.  At the end it reports throughput, latency percentiles
+* per operation, the error, conflict and pool timeout rates, and checks the hot cruises for
+* oversold seats and lost num_sold updates.  Options are given as key=value:
+*
+*	agents=32 seconds=30 pool=16 cruises=10 strategy=single_statement|row_lock|group_commit
+*	mix=book:50,seats:30,status:15,repairs:5 reload=../data
+*/
+
+public class LoadGenerator
+{
+	public static final String[] OPERATIONS = { "book", "seats", "status", "repairs" };
+
+	private static final String SNAPSHOT_QUERY =
+		"SELECT Cruise.cnum, Cruise.num_sold,\n" +
+		"	COALESCE((SELECT MIN(Ship.seats) FROM CruiseInfo, Ship WHERE CruiseInfo.cruise_id = Cruise.cnum AND CruiseInfo.ship_id = Ship.id), 0),\n" +
+		"	(SELECT COUNT(*) FROM Reservation WHERE Reservation.cid = Cruise.cnum AND Reservation.status = 'R')\n" +
+		"FROM Cruise\n" +
+		"WHERE Cruise.cnum = ANY (CAST(? AS INTEGER[]));";
+
+	private final DBproject _esql;
+	private final int _agents;
+	private final long _durationNanos;
+	private final int[] _weights;
+	private final BookingEngine.Strategy _strategy;
+
+	private final Map<String, LatencyStats> _latencies = new LinkedHashMap<String, LatencyStats>();
+	private final AtomicLong _errors = new AtomicLong();
+	private final AtomicLong _conflicts = new AtomicLong();
+	private final AtomicLong _timeouts = new AtomicLong();
+	private final ConcurrentHashMap<Integer, AtomicInteger> _reserved = new ConcurrentHashMap<Integer, AtomicInteger>();
+	private final AtomicInteger _waitlisted = new AtomicInteger();
+
+	public LoadGenerator(DBproject esql, int agents, long durationMillis, int[] weights, BookingEngine.Strategy strategy)
+	{
+		this._esql = esql;
+		this._agents = agents;
+		this._durationNanos = TimeUnit.MILLISECONDS.toNanos(durationMillis);
+		this._weights = weights;
+		this._strategy = strategy;
+
+		for (String operation : OPERATIONS)
+			this._latencies.put(operation, new LatencyStats());
+	}
+
+	/**
+	 * Method to run the agents and print the report.
+	 *
+	 * @param cruises the hot cruises the agents book and look up
+	 * @param customers the customers the agents book for
+	 * @return true when no cruise was oversold and no num_sold update was lost
+	 * @throws java.lang.Exception when the snapshots failed or an agent died
+	 */
+	public boolean run(int[] cruises, int[] customers) throws Exception
+	{
+		Map<Integer, int[]> before = snapshot(cruises);
+
+		for (int cruise : cruises)
+			this._reserved.put(cruise, new AtomicInteger());
+
+		ExecutorService executor = HttpService.newVirtualThreadExecutor();
+		boolean virtual = (executor != null);
+
+		if (!virtual)
+			executor = Executors.newFixedThreadPool(this._agents);
+
+		int totalWeight = 0;
+
+		for (int weight : this._weights)
+			totalWeight += weight;
+
+		final int total = totalWeight;
+		final CountDownLatch start = new CountDownLatch(1);
+		final long[] deadline = new long[1];
+		List<Future<?>> agents = new ArrayList<Future<?>>();
+
+		for (int a = 0; a < this._agents; ++a)
+		{
+			agents.add(executor.submit(() ->
+			{
+				ThreadLocalRandom random = ThreadLocalRandom.current();
+				start.await();
+
+				while (System.nanoTime() < deadline[0])
+				{
+					int pick = random.nextInt(total);
+					int op = 0;
+
+					while (pick >= this._weights[op])
+						pick -= this._weights[op++];
+
+					runOperation(op, cruises[random.nextInt(cruises.length)], customers[random.nextInt(customers.length)], random);
+				}
+
+				return null;
+			}));
+		}
+
+		deadline[0] = System.nanoTime() + this._durationNanos;
+		long begin = System.nanoTime();
+		start.countDown();
+
+		for (Future<?> agent : agents)
+			agent.get();
+
+		double seconds = (System.nanoTime() - begin) / 1e9;
+		executor.shutdown();
+
+		Map<Integer, int[]> after = snapshot(cruises);
+
+		return report(seconds, virtual, before, after);
+	}
+
+	private void runOperation(int op, int cruise, int customer, ThreadLocalRandom random)
+	{
+		long begin = System.nanoTime();
+		boolean failed = false;
+
+		try
+		{
+			switch (OPERATIONS[op])
+			{
+				case "book":
+					BookingEngine.Booking booking = this._esql.bookCruise(customer, cruise, this._strategy);
+
+					if (booking == null)
+						failed = true;
+					else if (booking.status == 'R')
+						this._reserved.get(cruise).incrementAndGet();
+					else
+						this._waitlisted.incrementAndGet();
+					break;
+				case "seats":
+					this._esql.getAvailableSeats(cruise);
+					break;
+				case "status":
+					this._esql.countPassengers(cruise, "WCR".charAt(random.nextInt(3)));
+					break;
+				case "repairs":
+					this._esql.getTopRepairedShips(10, null, null, null);
+					break;
+			}
+		}
+		catch (SQLTransientConnectionException e)
+		{
+			this._timeouts.incrementAndGet();
+			failed = true;
+		}
+		catch (SQLException e)
+		{
+			// serialization failures, deadlocks and lock timeouts
+			String state = e.getSQLState();
+
+			if (state != null && (state.startsWith("40") || state.equals("55P03")))
+				this._conflicts.incrementAndGet();
+			else
+				this._errors.incrementAndGet();
+
+			failed = true;
+		}
+
+		this._latencies.get(OPERATIONS[op]).record(System.nanoTime() - begin, failed);
+	}
+
+	/*
+	* { num_sold, seats, reservations with status R } of each cruise.
+	*/
+	private Map<Integer, int[]> snapshot(int[] cruises) throws SQLException
+	{
+		Map<Integer, int[]> snapshot = new HashMap<Integer, int[]>();
+
+		for (int[] row : this._esql.executePreparedQueryAndMap(SNAPSHOT_QUERY,
+					rs -> new int[] { rs.getInt(1), rs.getInt(2), rs.getInt(3), rs.getInt(4) },
+					Arrays.toString(cruises).replace('[', '{').replace(']', '}')))
+			snapshot.put(row[0], new int[] { row[1], row[2], row[3] });
+
+		return snapshot;
+	}
+
+	private boolean report(double seconds, boolean virtual, Map<Integer, int[]> before, Map<Integer, int[]> after)
+	{
+		long operations = 0;
+		long failures = 0;
+
+		System.out.println(String.format("%d agents on %s threads for %.1f s, strategy %s", this._agents,
+					virtual ? "virtual" : "platform", seconds, this._strategy.name().toLowerCase()));
+
+		for (Map.Entry<String, LatencyStats> entry : this._latencies.entrySet())
+		{
+			operations += entry.getValue().getCount();
+			failures += entry.getValue().getFailures();
+			System.out.println(String.format("%-8s %s", entry.getKey(), entry.getValue().summary()));
+		}
+
+		int reserved = 0;
+
+		for (AtomicInteger count : this._reserved.values())
+			reserved += count.get();
+
+		System.out.println(String.format("%d operations in %.2f s: %.0f ops/s", operations, seconds, operations / seconds));
+		System.out.println(String.format("failed:%.2f%% errors:%.2f%% conflicts:%.2f%% pool timeouts:%.2f%% reserved:%d waitlisted:%d",
+					100.0 * failures / Math.max(1, operations), 100.0 * this._errors.get() / Math.max(1, operations),
+					100.0 * this._conflicts.get() / Math.max(1, operations), 100.0 * this._timeouts.get() / Math.max(1, operations),
+					reserved, this._waitlisted.get()));
+		System.out.println("Connection pool: " + this._esql.getPoolStats());
+
+		int oversold = 0;
+		int lostUpdates = 0;
+
+		for (Map.Entry<Integer, int[]> entry : after.entrySet())
+		{
+			int cruise = entry.getKey();
+			int[] was = before.get(cruise);
+			int[] now = entry.getValue();
+			int confirmed = this._reserved.get(cruise).get();
+
+			// seed data may already be over capacity; this run must not have added to that
+			if (now[0] > Math.max(now[1], was[0]))
+			{
+				++oversold;
+				System.out.println(String.format("OVERSOLD cruise %d: num_sold %d -> %d with %d seats", cruise, was[0], now[0], now[1]));
+			}
+
+			if (now[0] - was[0] != confirmed || now[2] - was[2] != confirmed)
+			{
+				++lostUpdates;
+				System.out.println(String.format("LOST UPDATE cruise %d: %d confirmed, num_sold +%d, R reservations +%d",
+							cruise, confirmed, now[0] - was[0], now[2] - was[2]));
+			}
+		}
+
+		System.out.println(String.format("oversold cruises:%d lost updates:%d", oversold, lostUpdates));
+
+		return oversold == 0 && lostUpdates == 0;
+	}
+
+	/**
+	 * The load generator entry point
+	 *
+	 * @param args <dbname> <port> <user> [key=value ...]
+	 */
+	public static void main(String[] args) throws Exception
+	{
+		if (args.length < 3)
+		{
+			System.err.println("Usage: " + "java [-classpath <classpath>] " + LoadGenerator.class.getName() +
+						" <dbname> <port> <user> [agents=32] [seconds=30] [pool=16] [cruises=10]" +
+						" [strategy=single_statement|row_lock|group_commit] [mix=book:50,seats:30,status:15,repairs:5] [reload=<data dir>]");
+			return;
+		}
+
+		Map<String, String> options = new HashMap<String, String>();
+
+		for (int i = 3; i < args.length; ++i)
+		{
+			int eq = args[i].indexOf('=');
+
+			if (eq < 0)
+				throw new IllegalArgumentException("Options are key=value: " + args[i]);
+
+			options.put(args[i].substring(0, eq), args[i].substring(eq + 1));
+		}
+
+		int agents = Integer.parseInt(options.getOrDefault("agents", "32"));
+		int seconds = Integer.parseInt(options.getOrDefault("seconds", "30"));
+		int pool = Integer.parseInt(options.getOrDefault("pool", "16"));
+		int hotCruises = Integer.parseInt(options.getOrDefault("cruises", "10"));
+		BookingEngine.Strategy strategy = BookingEngine.Strategy.valueOf(options.getOrDefault("strategy", "single_statement").toUpperCase());
+		int[] weights = new int[OPERATIONS.length];
+
+		for (String part : options.getOrDefault("mix", "book:50,seats:30,status:15,repairs:5").split(","))
+		{
+			String[] pair = part.split(":");
+			int op = Arrays.asList(OPERATIONS).indexOf(pair[0].trim());
+
+			if (op < 0 || pair.length != 2)
+				throw new IllegalArgumentException("Unknown mix entry " + part + ", operations are " + Arrays.toString(OPERATIONS));
+
+			weights[op] = Integer.parseInt(pair[1].trim());
+		}
+
+		Class.forName("org.postgresql.Driver");
+
+		DBproject esql = new DBproject(args[0], args[1], args[2], "", Math.min(pool, 4), pool);
+		boolean passed;
+
+		try
+		{
+			if (options.containsKey("reload"))
+				new CsvLoader(esql, new File(options.get("reload"))).reload(true, pool);
+
+			esql.migrateSchema();
+
+			// hot cruises with a ship, so bookings can be confirmed until they fill up
+			int[] cruises = toArray(esql.executePreparedQueryAndMap(
+						"SELECT DISTINCT CruiseInfo.cruise_id FROM CruiseInfo ORDER BY CruiseInfo.cruise_id LIMIT ?;",
+						rs -> rs.getInt(1), hotCruises));
+			int[] customers = toArray(esql.executePreparedQueryAndMap("SELECT Customer.id FROM Customer;", rs -> rs.getInt(1)));
+
+			if (cruises.length == 0 || customers.length == 0)
+				throw new IllegalStateException("The database has no cruise with a ship or no customer, reload it with reload=../data");
+
+			passed = new LoadGenerator(esql, agents, seconds * 1000L, weights, strategy).run(cruises, customers);
+		}
+		finally
+		{
+			esql.cleanup();
+		}
+
+		if (!passed)
+		{
+			System.out.println("FAILED - seats were oversold or num_sold updates were lost");
+			System.exit(1);
+		}
+
+		System.out.println("OK - no overselling and no lost updates");
+	}
+
+	private static int[] toArray(List<Integer> values)
+	{
+		int[] array = new int[values.size()];
+
+		for (int i = 0; i < array.length; ++i)
+			array[i] = values.get(i);
+
+		return array;
+	}
+}
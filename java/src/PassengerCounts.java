@@ -0,0 +1,162 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.*;
+import java.util.*;
+
+/*
+* This class counts the passengers of a cruise by reservation status without scanning Reservation.
+* A trigger on Reservation keeps ReservationStatusCount, one row per cruise and status, current in
+* the same transaction as every insert, status change and delete, so a count is a primary key
+* lookup.  Passenger ids are listed separately, one page at a time.  Like RepairLeaderboard, the
+* table and its trigger are created and filled the first time they are needed.
+*/
+
+public class PassengerCounts
+{
+	public static final int DEFAULT_PAGE_SIZE = 20;
+
+	//also applied by SchemaMigrator to databases installed before null statuses were skipped
+	static final String COUNT_FUNCTION =
+		"CREATE OR REPLACE FUNCTION reservation_count() RETURNS TRIGGER AS $$\n" +
+		"BEGIN\n" +
+		"	IF TG_OP IN ('UPDATE', 'DELETE') AND OLD.status IS NOT NULL THEN\n" +
+		"		UPDATE ReservationStatusCount SET passengers = passengers - 1\n" +
+		"			WHERE cid = OLD.cid AND status = OLD.status;\n" +
+		"	END IF;\n" +
+		"	IF TG_OP IN ('INSERT', 'UPDATE') AND NEW.status IS NOT NULL THEN\n" +
+		"		INSERT INTO ReservationStatusCount VALUES (NEW.cid, NEW.status, 1)\n" +
+		"			ON CONFLICT (cid, status) DO UPDATE SET passengers = ReservationStatusCount.passengers + 1;\n" +
+		"	END IF;\n" +
+		"	RETURN NULL;\n" +
+		"END;\n" +
+		"$$ LANGUAGE plpgsql;";
+
+	//the same statements are in sql/create.sql; IF NOT EXISTS keeps a concurrent install harmless
+	private static final String[] INSTALL =
+	{
+		"CREATE TABLE IF NOT EXISTS ReservationStatusCount\n" +
+		"(\n" +
+		"	cid INTEGER NOT NULL,\n" +
+		"	status _STATUS NOT NULL,\n" +
+		"	passengers INTEGER NOT NULL,\n" +
+		"	PRIMARY KEY (cid, status)\n" +
+		");",
+
+		COUNT_FUNCTION,
+
+		"CREATE OR REPLACE FUNCTION reservation_truncate() RETURNS TRIGGER AS $$\n" +
+		"BEGIN\n" +
+		"	TRUNCATE ReservationStatusCount;\n" +
+		"	RETURN NULL;\n" +
+		"END;\n" +
+		"$$ LANGUAGE plpgsql;",
+
+		"DROP TRIGGER IF EXISTS reservation_count ON Reservation;",
+		"CREATE TRIGGER reservation_count AFTER INSERT OR UPDATE OF cid, status OR DELETE ON Reservation\n" +
+		"	FOR EACH ROW EXECUTE PROCEDURE reservation_count();",
+
+		"DROP TRIGGER IF EXISTS reservation_truncate ON Reservation;",
+		"CREATE TRIGGER reservation_truncate AFTER TRUNCATE ON Reservation\n" +
+		"	FOR EACH STATEMENT EXECUTE PROCEDURE reservation_truncate();",
+
+		// rebuilds the counts of the rows inserted before the trigger existed
+		"TRUNCATE ReservationStatusCount;",
+		"INSERT INTO ReservationStatusCount\n" +
+		"	SELECT cid, status, COUNT(*) FROM Reservation WHERE status IS NOT NULL GROUP BY cid, status;"
+	};
+
+	static final String COUNT_QUERY =
+		"SELECT ReservationStatusCount.passengers\n" +
+		"FROM ReservationStatusCount\n" +
+		"WHERE ReservationStatusCount.cid = ? AND ReservationStatusCount.status = ?;";
+
+	//keyset paging on rnum, so a page costs the same however deep it is
+	static final String PAGE_QUERY =
+		"SELECT " + Reservation.COLUMNS + "\n" +
+		"FROM Reservation\n" +
+		"WHERE Reservation.cid = ? AND Reservation.status = ? AND Reservation.rnum > ?\n" +
+		"ORDER BY Reservation.rnum\n" +
+		"LIMIT ?;";
+
+	private final DBproject _esql;
+	private volatile boolean _installed = false;
+
+	public PassengerCounts(DBproject esql)
+	{
+		this._esql = esql;
+	}
+
+	/**
+	 * Method to return the number of passengers of a cruise with a status.
+	 *
+	 * @param cnum the Cruise.cnum
+	 * @param status W, C or R
+	 * @return the number of reservations of the cruise with the status
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public int count(int cnum, char status) throws SQLException
+	{
+		install();
+
+		return this._esql.executePreparedQueryForInt(COUNT_QUERY, 0, cnum, status);
+	}
+
+	/**
+	 * Method to return one page of the reservations of a cruise with a
+	 * status, in increasing order of rnum.
+	 *
+	 * @param cnum the Cruise.cnum
+	 * @param status W, C or R
+	 * @param afterRnum the rnum of the last reservation of the previous page, -1 for the first page
+	 * @param pageSize the most reservations returned
+	 * @return the page, shorter than pageSize when it is the last one
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public List<Reservation> page(int cnum, char status, int afterRnum, int pageSize) throws SQLException
+	{
+		return this._esql.executePreparedQueryAndMap(PAGE_QUERY, Reservation.MAPPER, cnum, status, afterRnum, pageSize);
+	}
+
+	/*
+	* Creates the count table and its trigger the first time they are needed.
+	*/
+	private synchronized void install() throws SQLException
+	{
+		if (this._installed)
+			return;
+
+		boolean exists = this._esql.executePreparedQueryAndRead(
+			"SELECT to_regclass('reservationstatuscount') IS NOT NULL AND EXISTS (SELECT 1 FROM pg_trigger WHERE tgname = 'reservation_truncate');",
+			rs -> rs.next() && rs.getBoolean(1));
+
+		if (!exists)
+		{
+			this._esql.executeInTransaction(pc ->
+			{
+				try (Statement stmt = pc.getConnection().createStatement())
+				{
+					// blocks bookings until the counts are rebuilt and the trigger is in place
+					stmt.execute("LOCK TABLE Reservation IN SHARE ROW EXCLUSIVE MODE;");
+
+					for (String statement : INSTALL)
+						stmt.execute(statement);
+				}
+
+				return null;
+			});
+		}
+
+		this._installed = true;
+	}
+}
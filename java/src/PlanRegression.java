@@ -0,0 +1,246 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.*;
+import java.util.*;
+import java.util.regex.*;
+
+/*
+* This program checks the plans of the menu queries.  It copies the rows of the large tables until
+* they are <scale> times their size, runs EXPLAIN (ANALYZE, BUFFERS) on every query and fails when
+* a plan reads one of those tables with a sequential scan or runs longer than the latency budget.
+* Everything happens in one transaction that is rolled back, so the database is left unchanged.
+*/
+
+public class PlanRegression
+{
+	public static final int DEFAULT_SCALE = 20;
+	public static final double DEFAULT_BUDGET_MILLIS = 50.0;
+
+	//tables that must be reached through an index, with the key column their copies shift
+	private static final String[][] SCALED_TABLES =
+	{
+		{ "Reservation", "rnum" },
+		{ "Repairs", "rid" },
+		{ "CruiseInfo", "ciid" },
+		{ "Schedule", "id" }
+	};
+
+	private static final Pattern SEQ_SCAN = Pattern.compile("Seq Scan on (\\w+)");
+	private static final Pattern EXECUTION_TIME = Pattern.compile("Execution [Tt]ime: ([0-9.]+) ms");
+
+	/*
+	* One menu query and the values bound to it.
+	*/
+	private static final class Check
+	{
+		private final String _name;
+		private final String _query;
+		private final Object[] _params;
+
+		private Check(String name, String query, Object... params)
+		{
+			this._name = name;
+			this._query = query;
+			this._params = params;
+		}
+	}
+
+	/**
+	 * Method to copy the rows of the large tables until each holds scale
+	 * times its rows, then refresh the planner statistics.
+	 */
+	private static void scaleUp(ConnectionPool.PooledConnection pc, int scale) throws SQLException
+	{
+		try (Statement stmt = pc.getConnection().createStatement())
+		{
+			for (String[] table : SCALED_TABLES)
+			{
+				String name = table[0];
+				String key = table[1];
+				String columns = readColumns(pc, name);
+				String shifted = columns.replaceFirst("\\b" + key + "\\b", key + " + g * (SELECT MAX(" + key + ") + 1 FROM " + name + ")");
+
+				long begin = System.nanoTime();
+				int rows = stmt.executeUpdate("INSERT INTO " + name + " (" + columns + ")\n" +
+							"SELECT " + shifted + " FROM " + name + ", generate_series(1, " + (scale - 1) + ") g;");
+
+				System.out.println(String.format("Copied %d rows into %s in %.1f ms", rows, name, (System.nanoTime() - begin) / 1e6));
+			}
+
+			stmt.execute("ANALYZE Reservation, Repairs, CruiseInfo, Schedule, ReservationStatusCount, ShipRepairTotal, ShipRepairDaily;");
+		}
+	}
+
+	private static String readColumns(ConnectionPool.PooledConnection pc, String table) throws SQLException
+	{
+		StringBuilder columns = new StringBuilder();
+
+		try (ResultSet rs = pc.getConnection().getMetaData().getColumns(null, null, table.toLowerCase(), null))
+		{
+			while (rs.next())
+				columns.append(columns.length() == 0 ? "" : ", ").append(rs.getString("COLUMN_NAME"));
+		}
+
+		return columns.toString();
+	}
+
+	/**
+	 * Method to explain one query and report whether it met the checks.
+	 *
+	 * @return true when no large table was scanned and the budget was met
+	 */
+	private static boolean explain(ConnectionPool.PooledConnection pc, Check check, double budgetMillis) throws SQLException
+	{
+		List<String> plan = new ArrayList<String>();
+		Set<String> seqScans = new TreeSet<String>();
+		double millis = -1;
+
+		// a savepoint undoes what an explained write did before the next check runs
+		try (Statement stmt = pc.getConnection().createStatement())
+		{
+			stmt.execute("SAVEPOINT plan_check;");
+		}
+
+		try (ResultSet rs = DBproject.prepareAndBind(pc, "EXPLAIN (ANALYZE, BUFFERS) " + check._query, check._params).executeQuery())
+		{
+			while (rs.next())
+			{
+				String line = rs.getString(1);
+				plan.add(line);
+
+				Matcher seqScan = SEQ_SCAN.matcher(line);
+
+				if (seqScan.find())
+				{
+					for (String[] table : SCALED_TABLES)
+					{
+						if (table[0].equalsIgnoreCase(seqScan.group(1)))
+							seqScans.add(table[0]);
+					}
+				}
+
+				Matcher time = EXECUTION_TIME.matcher(line);
+
+				if (time.find())
+					millis = Double.parseDouble(time.group(1));
+			}
+		}
+		finally
+		{
+			try (Statement stmt = pc.getConnection().createStatement())
+			{
+				stmt.execute("ROLLBACK TO SAVEPOINT plan_check;");
+			}
+		}
+
+		boolean passed = seqScans.isEmpty() && millis >= 0 && millis <= budgetMillis;
+
+		System.out.println(String.format("%-4s %-40s %9.3f ms%s", passed ? "OK" : "FAIL", check._name, millis,
+					seqScans.isEmpty() ? "" : "  sequential scan on " + seqScans));
+
+		if (!passed)
+		{
+			for (String line : plan)
+				System.out.println("       " + line);
+		}
+
+		return passed;
+	}
+
+	/**
+	 * The plan regression entry point
+	 *
+	 * @param args <dbname> <port> <user> [<scale> <budget ms>]
+	 */
+	public static void main(String[] args) throws Exception
+	{
+		if (args.length < 3)
+		{
+			System.err.println("Usage: " + "java [-classpath <classpath>] " + PlanRegression.class.getName() +
+						" <dbname> <port> <user> [<scale> <budget ms>]");
+			return;
+		}
+
+		Class.forName("org.postgresql.Driver");
+
+		final int scale = (args.length > 3) ? Integer.parseInt(args[3]) : DEFAULT_SCALE;
+		final double budgetMillis = (args.length > 4) ? Double.parseDouble(args[4]) : DEFAULT_BUDGET_MILLIS;
+
+		DBproject esql = new DBproject(args[0], args[1], args[2], "");
+		boolean passed = true;
+
+		try
+		{
+			esql.migrateSchema();
+
+			// installs the aggregate tables before the transaction so they are not rolled back
+			esql.countPassengers(0, 'R');
+			esql.getTopRepairedShips(1, null, null, null);
+
+			// the busiest cruise is the worst case for the per-cruise queries
+			int cruise = esql.executePreparedQueryForInt("SELECT cid FROM Reservation GROUP BY cid ORDER BY COUNT(*) DESC LIMIT 1;", 0);
+			int customer = esql.executePreparedQueryForInt("SELECT MIN(id) FROM Customer;", 0);
+			int ship = esql.executePreparedQueryForInt("SELECT MIN(id) FROM Ship;", 0);
+
+			List<Object> leaderboardParams = new ArrayList<Object>();
+			String leaderboard = new RepairLeaderboard(esql).buildQuery(10, "MJ", "2014-01-01", "2014-12-31", leaderboardParams);
+
+			final Check[] checks =
+			{
+				new Check("BookCruise", BookingEngine.BOOK_SQL, cruise, customer, Integer.MIN_VALUE, customer),
+				new Check("ListNumberOfAvailableSeats", SeatInventory.ONE_CRUISE_QUERY, cruise),
+				new Check("ListsTotalNumberOfRepairsPerShip", leaderboard, leaderboardParams.toArray()),
+				new Check("FindPassengersCountWithStatus count", PassengerCounts.COUNT_QUERY, cruise, 'R'),
+				new Check("FindPassengersCountWithStatus page", PassengerCounts.PAGE_QUERY, cruise, 'R', -1, PassengerCounts.DEFAULT_PAGE_SIZE),
+				new Check("Reservations of a customer", "SELECT " + Reservation.COLUMNS + " FROM Reservation WHERE Reservation.ccid = ?;", customer),
+				new Check("Repairs of a ship", "SELECT " + Repair.COLUMNS + " FROM Repairs WHERE Repairs.ship_id = ?;", ship),
+				new Check("Ships of a cruise", "SELECT CruiseInfo.ship_id FROM CruiseInfo WHERE CruiseInfo.cruise_id = ?;", cruise),
+				new Check("Cruises of a ship", "SELECT CruiseInfo.cruise_id FROM CruiseInfo WHERE CruiseInfo.ship_id = ?;", ship),
+				new Check("Schedule of a cruise", "SELECT * FROM Schedule WHERE Schedule.cruiseNum = ?;", cruise)
+			};
+
+			passed = esql.executeInTransaction(pc ->
+			{
+				boolean ok = true;
+
+				try
+				{
+					scaleUp(pc, scale);
+
+					for (Check check : checks)
+						ok &= explain(pc, check, budgetMillis);
+				}
+				finally
+				{
+					// the copies are never committed
+					pc.getConnection().rollback();
+				}
+
+				return ok;
+			});
+		}
+		finally
+		{
+			esql.cleanup();
+		}
+
+		if (!passed)
+		{
+			System.out.println("FAILED - a query scanned a large table or exceeded " + budgetMillis + " ms at scale " + scale);
+			System.exit(1);
+		}
+
+		System.out.println("OK - every query used an index and met the " + budgetMillis + " ms budget at scale " + scale);
+	}
+}
@@ -0,0 +1,352 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.*;
+import java.lang.management.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import javax.management.*;
+
+/*
+* Timing of every statement DBproject's query helpers run, kept per SQL template.  Each template
+* has a latency histogram for the execute phase (until executeQuery or executeUpdate returns) and one
+* for the fetch phase (reading the result), plus call, row and error counters.  Without a fetch
+* size the driver reads the whole result inside executeQuery, so transfer time shows up under
+* execute; with one, the later round trips show up under fetch.
+*
+* Memory is fixed: each template costs two histograms of LatencyHistogram's size, and past
+* MAX_TEMPLATES distinct statements the rest are counted together under OTHER.
+*/
+
+public class QueryMetrics implements QueryMetricsMXBean
+{
+	//distinct SQL strings tracked on their own
+	public static final int MAX_TEMPLATES = 256;
+
+	//template the statements past MAX_TEMPLATES are counted under
+	public static final String OTHER = "(other statements)";
+
+	public static final String OBJECT_NAME = "cs166:type=QueryMetrics";
+
+	/*
+	* The counters of one SQL template.
+	*/
+	public static final class Template
+	{
+		private final String _sql;
+		private final LatencyHistogram _execute = new LatencyHistogram();
+		private final LatencyHistogram _fetch = new LatencyHistogram();
+		private final LongAdder _calls = new LongAdder();
+		private final LongAdder _rows = new LongAdder();
+		private final LongAdder _errors = new LongAdder();
+
+		private Template(String sql)
+		{
+			this._sql = sql;
+		}
+
+		/**
+		 * Method to count one successful call.
+		 *
+		 * @param executeNanos the time spent executing the statement
+		 * @param fetchNanos the time spent reading the result, negative when there is no result
+		 * @param rows the rows returned to the caller or updated, negative when not known
+		 */
+		public void record(long executeNanos, long fetchNanos, long rows)
+		{
+			this._calls.increment();
+			this._execute.record(executeNanos);
+
+			if (fetchNanos >= 0)
+				this._fetch.record(fetchNanos);
+
+			if (rows > 0)
+				this._rows.add(rows);
+		}
+
+		public void error()
+		{
+			this._calls.increment();
+			this._errors.increment();
+		}
+
+		private TemplateStats stats()
+		{
+			return new TemplateStats(this);
+		}
+	}
+
+	/*
+	* A snapshot of one template's counters, as shown over JMX.
+	*/
+	public static final class TemplateStats
+	{
+		private final String _sql;
+		private final long _calls;
+		private final long _errors;
+		private final long _rows;
+		private final double[] _execute;
+		private final double[] _fetch;
+
+		private TemplateStats(Template template)
+		{
+			this._sql = template._sql;
+			this._calls = template._calls.sum();
+			this._errors = template._errors.sum();
+			this._rows = template._rows.sum();
+			this._execute = summarize(template._execute);
+			this._fetch = summarize(template._fetch);
+		}
+
+		//mean, p50, p99, max
+		private static double[] summarize(LatencyHistogram histogram)
+		{
+			return new double[] { histogram.getMeanMillis(), histogram.getPercentileMillis(0.50),
+						histogram.getPercentileMillis(0.99), histogram.getMaxMillis() };
+		}
+
+		public String getSql() { return this._sql; }
+		public long getCalls() { return this._calls; }
+		public long getErrors() { return this._errors; }
+		public long getRows() { return this._rows; }
+		public double getExecuteMeanMillis() { return this._execute[0]; }
+		public double getExecuteP50Millis() { return this._execute[1]; }
+		public double getExecuteP99Millis() { return this._execute[2]; }
+		public double getExecuteMaxMillis() { return this._execute[3]; }
+		public double getFetchMeanMillis() { return this._fetch[0]; }
+		public double getFetchP50Millis() { return this._fetch[1]; }
+		public double getFetchP99Millis() { return this._fetch[2]; }
+		public double getFetchMaxMillis() { return this._fetch[3]; }
+	}
+
+	private final ConcurrentHashMap<String, Template> _templates = new ConcurrentHashMap<String, Template>();
+	private final Template _other = new Template(OTHER);
+	private ObjectName _registered = null;
+	private ScheduledExecutorService _dumper = null;
+	private Path _dumpFile = null;
+
+	/**
+	 * Method to return the counters of a SQL template, creating them on
+	 * first use.
+	 *
+	 * @param sql the SQL text as given to the query helper
+	 * @return the template's counters, or the shared OTHER counters when MAX_TEMPLATES are in use
+	 */
+	public Template template(String sql)
+	{
+		Template template = this._templates.get(sql);
+
+		if (template != null)
+			return template;
+
+		if (this._templates.size() >= MAX_TEMPLATES)
+			return this._other;
+
+		return this._templates.computeIfAbsent(sql, Template::new);
+	}
+
+	private List<Template> all()
+	{
+		List<Template> templates = new ArrayList<Template>(this._templates.values());
+
+		templates.add(this._other);
+		return templates;
+	}
+
+	public int getTemplateCount()
+	{
+		return this._templates.size();
+	}
+
+	public long getCalls()
+	{
+		long calls = 0;
+
+		for (Template template : all())
+			calls += template._calls.sum();
+
+		return calls;
+	}
+
+	public long getErrors()
+	{
+		long errors = 0;
+
+		for (Template template : all())
+			errors += template._errors.sum();
+
+		return errors;
+	}
+
+	public long getRows()
+	{
+		long rows = 0;
+
+		for (Template template : all())
+			rows += template._rows.sum();
+
+		return rows;
+	}
+
+	public List<TemplateStats> getTemplates()
+	{
+		List<TemplateStats> stats = new ArrayList<TemplateStats>();
+
+		for (Template template : all())
+			if (template._calls.sum() > 0)
+				stats.add(template.stats());
+
+		return stats;
+	}
+
+	/**
+	 * Method to write every template's counters as text, the busiest
+	 * template first.
+	 *
+	 * @return the dump
+	 */
+	public String dump()
+	{
+		List<Template> templates = all();
+
+		templates.removeIf(template -> template._calls.sum() == 0);
+		templates.sort((a, b) -> Long.compare(b._calls.sum(), a._calls.sum()));
+
+		StringBuilder text = new StringBuilder();
+
+		text.append(String.format("# %tF %<tT  %d templates  %d calls  %d errors  %d rows%n",
+					new Date(), getTemplateCount(), getCalls(), getErrors(), getRows()));
+
+		for (Template template : templates)
+		{
+			text.append(String.format("%n%s%n", template._sql.replaceAll("\\s+", " ").trim()));
+			text.append(String.format("  calls %d  errors %d  rows %d%n", template._calls.sum(), template._errors.sum(), template._rows.sum()));
+			text.append(String.format("  execute %s%n", template._execute));
+
+			if (template._fetch.getCount() > 0)
+				text.append(String.format("  fetch   %s%n", template._fetch));
+		}
+
+		return text.toString();
+	}
+
+	public void reset()
+	{
+		for (Template template : all())
+		{
+			template._execute.reset();
+			template._fetch.reset();
+			template._calls.reset();
+			template._rows.reset();
+			template._errors.reset();
+		}
+	}
+
+	/**
+	 * Method to register the metrics with the platform MBean server as
+	 * OBJECT_NAME.  Does nothing when another instance is registered there.
+	 */
+	public synchronized void register()
+	{
+		try
+		{
+			ObjectName name = new ObjectName(OBJECT_NAME);
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+			if (this._registered == null && !server.isRegistered(name))
+			{
+				server.registerMBean(this, name);
+				this._registered = name;
+			}
+		}
+		catch (JMException e)
+		{
+			System.err.println("Error - Unable to Register Query Metrics: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Method to rewrite a file with the text dump at a fixed period, until
+	 * close is called.  The file is replaced whole, so readers never see a
+	 * partial dump.
+	 *
+	 * @param file the dump file, e.g. query-metrics.txt
+	 * @param periodMillis the time between dumps
+	 */
+	public synchronized void startDump(Path file, long periodMillis)
+	{
+		if (this._dumper != null)
+			return;
+
+		this._dumpFile = file;
+		this._dumper = Executors.newSingleThreadScheduledExecutor(r ->
+		{
+			Thread t = new Thread(r, "QueryMetrics-dump");
+			t.setDaemon(true);
+			return t;
+		});
+
+		this._dumper.scheduleWithFixedDelay(() -> writeDump(file), periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+	}
+
+	private void writeDump(Path file)
+	{
+		try
+		{
+			Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+
+			Files.write(temp, dump().getBytes(StandardCharsets.UTF_8));
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (IOException e)
+		{
+			System.err.println("Error - Unable to Write Query Metrics: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Method to stop the periodic dump, writing it one last time, and
+	 * unregister the MBean.
+	 */
+	public synchronized void close()
+	{
+		if (this._dumper != null)
+		{
+			this._dumper.shutdownNow();
+			this._dumper = null;
+			writeDump(this._dumpFile);
+		}
+
+		if (this._registered != null)
+		{
+			try
+			{
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(this._registered);
+			}
+			catch (JMException e)
+			{
+				// ignored.
+			}
+
+			this._registered = null;
+		}
+	}
+
+	public String toString()
+	{
+		return String.format("%d templates, %d calls, %d errors, %d rows", getTemplateCount(), getCalls(), getErrors(), getRows());
+	}
+}
@@ -0,0 +1,36 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.util.*;
+
+/*
+* The management interface of QueryMetrics, registered as cs166:type=QueryMetrics.  The templates
+* show up in jconsole or VisualVM as a table with one row per SQL template.
+*/
+
+public interface QueryMetricsMXBean
+{
+	int getTemplateCount();
+
+	long getCalls();
+
+	long getErrors();
+
+	long getRows();
+
+	List<QueryMetrics.TemplateStats> getTemplates();
+
+	String dump();
+
+	void reset();
+}
@@ -0,0 +1,50 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.time.LocalDate;
+
+/*
+* A row of the Repairs table.
+*/
+
+public final class Repair
+{
+	//select list MAPPER reads, in this order
+	public static final String COLUMNS = "Repairs.rid, Repairs.repair_date, Repairs.repair_code, Repairs.captain_id, Repairs.ship_id, Repairs.technician_id";
+
+	public static final RowMapper<Repair> MAPPER = rs -> new Repair(rs.getInt(1), RowMapper.getDate(rs, 2),
+					RowMapper.getTrimmedString(rs, 3), rs.getInt(4), rs.getInt(5), rs.getInt(6));
+
+	public final int rid;
+	public final LocalDate repairDate;
+	public final String repairCode;
+	public final int captainId;
+	public final int shipId;
+	public final int technicianId;
+
+	public Repair(int rid, LocalDate repairDate, String repairCode, int captainId, int shipId, int technicianId)
+	{
+		this.rid = rid;
+		this.repairDate = repairDate;
+		this.repairCode = repairCode;
+		this.captainId = captainId;
+		this.shipId = shipId;
+		this.technicianId = technicianId;
+	}
+
+	public String toString()
+	{
+		return String.format("(rid:%d, repair_date:%s, repair_code:%s, captain_id:%d, ship_id:%d, technician_id:%d)",
+					rid, repairDate, repairCode, captainId, shipId, technicianId);
+	}
+}
@@ -0,0 +1,241 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.*;
+import java.util.*;
+
+/*
+* This class ranks ships by their number of repairs without scanning Repairs.  A trigger on Repairs
+* keeps two aggregate tables current: ShipRepairTotal with one row per ship and repair code, and
+* ShipRepairDaily with one row per ship, repair code and day for reports over a date window.  Both
+* are created and filled the first time they are needed, so databases built before they existed
+* keep working.  Repairs without a repair code are not counted.
+*/
+
+public class RepairLeaderboard
+{
+	public static final String[] REPAIR_CODES = { "MJ", "MN", "SV" };
+
+	//also applied by SchemaMigrator to databases installed before code-less repairs were skipped
+	static final String COUNT_FUNCTION =
+		"CREATE OR REPLACE FUNCTION repairs_count() RETURNS TRIGGER AS $$\n" +
+		"BEGIN\n" +
+		"	IF TG_OP IN ('UPDATE', 'DELETE') AND OLD.repair_code IS NOT NULL THEN\n" +
+		"		UPDATE ShipRepairTotal SET repairs = repairs - 1\n" +
+		"			WHERE ship_id = OLD.ship_id AND repair_code = OLD.repair_code;\n" +
+		"		UPDATE ShipRepairDaily SET repairs = repairs - 1\n" +
+		"			WHERE ship_id = OLD.ship_id AND repair_code = OLD.repair_code AND repair_date = OLD.repair_date;\n" +
+		"	END IF;\n" +
+		"	IF TG_OP IN ('INSERT', 'UPDATE') AND NEW.repair_code IS NOT NULL THEN\n" +
+		"		INSERT INTO ShipRepairTotal VALUES (NEW.ship_id, NEW.repair_code, 1)\n" +
+		"			ON CONFLICT (ship_id, repair_code) DO UPDATE SET repairs = ShipRepairTotal.repairs + 1;\n" +
+		"		INSERT INTO ShipRepairDaily VALUES (NEW.ship_id, NEW.repair_code, NEW.repair_date, 1)\n" +
+		"			ON CONFLICT (ship_id, repair_code, repair_date) DO UPDATE SET repairs = ShipRepairDaily.repairs + 1;\n" +
+		"	END IF;\n" +
+		"	RETURN NULL;\n" +
+		"END;\n" +
+		"$$ LANGUAGE plpgsql;";
+
+	//the same statements are in sql/create.sql; IF NOT EXISTS keeps a concurrent install harmless
+	private static final String[] INSTALL =
+	{
+		"CREATE TABLE IF NOT EXISTS ShipRepairTotal\n" +
+		"(\n" +
+		"	ship_id INTEGER NOT NULL,\n" +
+		"	repair_code _CODE NOT NULL,\n" +
+		"	repairs INTEGER NOT NULL,\n" +
+		"	PRIMARY KEY (ship_id, repair_code)\n" +
+		");",
+
+		"CREATE TABLE IF NOT EXISTS ShipRepairDaily\n" +
+		"(\n" +
+		"	ship_id INTEGER NOT NULL,\n" +
+		"	repair_code _CODE NOT NULL,\n" +
+		"	repair_date DATE NOT NULL,\n" +
+		"	repairs INTEGER NOT NULL,\n" +
+		"	PRIMARY KEY (ship_id, repair_code, repair_date)\n" +
+		");",
+
+		"CREATE INDEX IF NOT EXISTS ShipRepairDaily_repair_date ON ShipRepairDaily (repair_date);",
+
+		COUNT_FUNCTION,
+
+		"CREATE OR REPLACE FUNCTION repairs_truncate() RETURNS TRIGGER AS $$\n" +
+		"BEGIN\n" +
+		"	TRUNCATE ShipRepairTotal, ShipRepairDaily;\n" +
+		"	RETURN NULL;\n" +
+		"END;\n" +
+		"$$ LANGUAGE plpgsql;",
+
+		"DROP TRIGGER IF EXISTS repairs_count ON Repairs;",
+		"CREATE TRIGGER repairs_count AFTER INSERT OR UPDATE OF ship_id, repair_code, repair_date OR DELETE ON Repairs\n" +
+		"	FOR EACH ROW EXECUTE PROCEDURE repairs_count();",
+
+		"DROP TRIGGER IF EXISTS repairs_truncate ON Repairs;",
+		"CREATE TRIGGER repairs_truncate AFTER TRUNCATE ON Repairs\n" +
+		"	FOR EACH STATEMENT EXECUTE PROCEDURE repairs_truncate();",
+
+		// rebuilds the counts of the rows inserted before the trigger existed
+		"TRUNCATE ShipRepairTotal, ShipRepairDaily;",
+		"INSERT INTO ShipRepairTotal\n" +
+		"	SELECT ship_id, repair_code, COUNT(*) FROM Repairs WHERE repair_code IS NOT NULL GROUP BY ship_id, repair_code;",
+		"INSERT INTO ShipRepairDaily\n" +
+		"	SELECT ship_id, repair_code, repair_date, COUNT(*) FROM Repairs WHERE repair_code IS NOT NULL GROUP BY ship_id, repair_code, repair_date;"
+	};
+
+	/*
+	* One ship of the leaderboard.
+	*/
+	public static final class Entry
+	{
+		public final int shipId;
+		public final long repairs;
+
+		public Entry(int shipId, long repairs)
+		{
+			this.shipId = shipId;
+			this.repairs = repairs;
+		}
+
+		public String toString()
+		{
+			return this.shipId + ": " + this.repairs;
+		}
+	}
+
+	private final DBproject _esql;
+	private volatile boolean _installed = false;
+
+	public RepairLeaderboard(DBproject esql)
+	{
+		this._esql = esql;
+	}
+
+	/**
+	 * Method to return the ships with the most repairs.
+	 *
+	 * @param k the number of ships wanted, 0 for every ship with a repair
+	 * @param repairCode MJ, MN or SV to count only those repairs, null for every code
+	 * @param from the first day counted as yyyy-mm-dd, null for no lower bound
+	 * @param to the last day counted as yyyy-mm-dd, null for no upper bound
+	 * @return the ships in decreasing order of repairs, ties by ship id
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public List<Entry> top(int k, String repairCode, String from, String to) throws SQLException
+	{
+		List<Object> params = new ArrayList<Object>();
+		String query = buildQuery(k, repairCode, from, to, params);
+
+		return this._esql.executePreparedQueryAndMap(query, rs -> new Entry(rs.getInt(1), rs.getLong(2)), params.toArray());
+	}
+
+	/**
+	 * Method to write the ships with the most repairs as a report, with the
+	 * columns ship_id and repairCount.
+	 *
+	 * @param report the writer of the report
+	 * @param k the number of ships wanted, 0 for every ship with a repair
+	 * @param repairCode MJ, MN or SV to count only those repairs, null for every code
+	 * @param from the first day counted as yyyy-mm-dd, null for no lower bound
+	 * @param to the last day counted as yyyy-mm-dd, null for no upper bound
+	 * @return the number of ships written
+	 * @throws java.sql.SQLException when failed to execute the query or write the report
+	 */
+	public long writeTop(ReportWriter report, int k, String repairCode, String from, String to) throws SQLException
+	{
+		List<Object> params = new ArrayList<Object>();
+		String query = buildQuery(k, repairCode, from, to, params);
+
+		return this._esql.executePreparedQueryAndWriteReport(query, report, params.toArray());
+	}
+
+	String buildQuery(int k, String repairCode, String from, String to, List<Object> params) throws SQLException
+	{
+		install();
+
+		if (repairCode != null && !Arrays.asList(REPAIR_CODES).contains(repairCode))
+			throw new IllegalArgumentException("Unknown repair code: " + repairCode);
+
+		// the per-day table is only read when a date window is given
+		boolean windowed = (from != null || to != null);
+		StringBuilder query = new StringBuilder("SELECT ship_id, SUM(repairs) AS repairCount\n");
+		List<String> conditions = new ArrayList<String>();
+
+		query.append(windowed ? "FROM ShipRepairDaily\n" : "FROM ShipRepairTotal\n");
+
+		if (repairCode != null)
+		{
+			conditions.add("repair_code = ?");
+			params.add(repairCode);
+		}
+
+		if (from != null)
+		{
+			conditions.add("repair_date >= CAST(? AS DATE)");
+			params.add(from);
+		}
+
+		if (to != null)
+		{
+			conditions.add("repair_date <= CAST(? AS DATE)");
+			params.add(to);
+		}
+
+		if (!conditions.isEmpty())
+			query.append("WHERE ").append(String.join(" AND ", conditions)).append('\n');
+
+		query.append("GROUP BY ship_id\n")
+			.append("HAVING SUM(repairs) > 0\n")
+			.append("ORDER BY repairCount DESC, ship_id");
+
+		if (k > 0)
+		{
+			query.append("\nLIMIT ?");
+			params.add(k);
+		}
+
+		return query.append(';').toString();
+	}
+
+	/*
+	* Creates the aggregate tables and their trigger the first time they are needed.
+	*/
+	private synchronized void install() throws SQLException
+	{
+		if (this._installed)
+			return;
+
+		boolean exists = this._esql.executePreparedQueryAndRead(
+			"SELECT to_regclass('shiprepairdaily') IS NOT NULL AND EXISTS (SELECT 1 FROM pg_trigger WHERE tgname = 'repairs_truncate');",
+			rs -> rs.next() && rs.getBoolean(1));
+
+		if (!exists)
+		{
+			this._esql.executeInTransaction(pc ->
+			{
+				try (Statement stmt = pc.getConnection().createStatement())
+				{
+					// blocks writes to Repairs until the counts are rebuilt and the trigger is in place
+					stmt.execute("LOCK TABLE Repairs IN SHARE ROW EXCLUSIVE MODE;");
+
+					for (String statement : INSTALL)
+						stmt.execute(statement);
+				}
+
+				return null;
+			});
+		}
+
+		this._installed = true;
+	}
+}
@@ -0,0 +1,315 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.*;
+import java.io.*;
+import java.util.*;
+
+/*
+* This class renders a result set as a report through one buffered writer.  Text reports are
+* aligned on column widths computed from the first rows, with the blank padding of CHAR(n) columns
+* trimmed and the header repeated on every page.  CSV and TSV reports are meant for files.
+*/
+
+public class ReportWriter
+{
+	public enum Format { TEXT, CSV, TSV }
+
+	//rows buffered to compute the column widths of a text report
+	public static final int DEFAULT_SAMPLE_ROWS = 200;
+
+	//rows per page of a text report, 0 for a single page
+	public static final int DEFAULT_PAGE_SIZE = 0;
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final Writer _out;
+	private final boolean _closeOut;
+	private final Format _format;
+	private final int _sampleRows;
+	private final int _pageSize;
+
+	private long _rowCount = 0;
+	private long _elapsedNanos = 0;
+
+	public ReportWriter(Writer out, boolean closeOut, Format format, int sampleRows, int pageSize)
+	{
+		this._out = (out instanceof BufferedWriter) ? out : new BufferedWriter(out, BUFFER_SIZE);
+		this._closeOut = closeOut;
+		this._format = format;
+		this._sampleRows = Math.max(1, sampleRows);
+		this._pageSize = pageSize;
+	}
+
+	/**
+	 * Method to create an aligned text report on standard out.
+	 *
+	 * @return the report writer, standard out stays open after the report
+	 */
+	public static ReportWriter toConsole()
+	{
+		return new ReportWriter(new OutputStreamWriter(System.out), false, Format.TEXT, DEFAULT_SAMPLE_ROWS, DEFAULT_PAGE_SIZE);
+	}
+
+	/**
+	 * Method to create a report in a file.  Files ending in .csv get CSV,
+	 * files ending in .tsv get TSV and anything else gets an aligned text
+	 * report.
+	 *
+	 * @param path the file to create or overwrite
+	 * @return the report writer, the file is closed after the report
+	 * @throws java.io.IOException when the file cannot be created
+	 */
+	public static ReportWriter toFile(String path) throws IOException
+	{
+		String lower = path.toLowerCase();
+		Format format = lower.endsWith(".csv") ? Format.CSV : lower.endsWith(".tsv") ? Format.TSV : Format.TEXT;
+
+		return new ReportWriter(new FileWriter(path), true, format, DEFAULT_SAMPLE_ROWS, DEFAULT_PAGE_SIZE);
+	}
+
+	/**
+	 * Method to write every row of a result set as the report.
+	 *
+	 * @param rs the result set positioned before the first row
+	 * @return the number of rows written
+	 * @throws java.sql.SQLException when failed to read the result set
+	 * @throws java.io.IOException when failed to write the report
+	 */
+	public long write(ResultSet rs) throws SQLException, IOException
+	{
+		long begin = System.nanoTime();
+
+		try
+		{
+			ResultSetMetaData rsmd = rs.getMetaData();
+			int numCol = rsmd.getColumnCount();
+			String[] header = new String[numCol];
+			boolean[] rightAlign = new boolean[numCol];
+
+			for (int i = 0; i < numCol; ++i)
+			{
+				header[i] = rsmd.getColumnName(i + 1);
+				rightAlign[i] = isNumeric(rsmd.getColumnType(i + 1));
+			}
+
+			if (this._format == Format.TEXT)
+				writeText(rs, header, rightAlign);
+			else
+				writeDelimited(rs, header, (this._format == Format.CSV) ? ',' : '\t');
+
+			this._out.flush();
+		}
+		finally
+		{
+			this._elapsedNanos = System.nanoTime() - begin;
+
+			if (this._closeOut)
+				this._out.close();
+		}
+
+		return this._rowCount;
+	}
+
+	private void writeText(ResultSet rs, String[] header, boolean[] rightAlign) throws SQLException, IOException
+	{
+		int numCol = header.length;
+		int[] widths = new int[numCol];
+		List<String[]> sample = new ArrayList<String[]>();
+
+		for (int i = 0; i < numCol; ++i)
+			widths[i] = header[i].length();
+
+		// column widths come from the first rows only, later rows may overflow them
+		boolean more;
+
+		while ((more = rs.next()) && sample.size() < this._sampleRows)
+		{
+			String[] row = readRow(rs, numCol);
+
+			for (int i = 0; i < numCol; ++i)
+				widths[i] = Math.max(widths[i], row[i].length());
+
+			sample.add(row);
+		}
+
+		for (String[] row : sample)
+			writeTextRow(row, header, widths, rightAlign);
+
+		if (more)
+		{
+			// rs.next() already moved onto the row after the sample
+			do
+			{
+				writeTextRow(readRow(rs, numCol), header, widths, rightAlign);
+			}
+			while (rs.next());
+		}
+
+		if (this._rowCount > 0)
+		{
+			this._out.write(String.format("(%d row%s)", this._rowCount, (this._rowCount == 1) ? "" : "s"));
+			this._out.write('\n');
+		}
+	}
+
+	private void writeTextRow(String[] row, String[] header, int[] widths, boolean[] rightAlign) throws IOException
+	{
+		if (this._rowCount == 0 || (this._pageSize > 0 && this._rowCount % this._pageSize == 0))
+		{
+			if (this._rowCount > 0)
+				this._out.write(String.format("-- page %d --\n", this._rowCount / this._pageSize + 1));
+
+			writePadded(header, widths, rightAlign);
+
+			for (int i = 0; i < widths.length; ++i)
+			{
+				if (i > 0)
+					this._out.write("-+-");
+
+				for (int j = 0; j < widths[i]; ++j)
+					this._out.write('-');
+			}
+
+			this._out.write('\n');
+		}
+
+		writePadded(row, widths, rightAlign);
+		++this._rowCount;
+	}
+
+	private void writePadded(String[] values, int[] widths, boolean[] rightAlign) throws IOException
+	{
+		for (int i = 0; i < values.length; ++i)
+		{
+			if (i > 0)
+				this._out.write(" | ");
+
+			int padding = widths[i] - values[i].length();
+
+			if (rightAlign[i])
+				pad(padding);
+
+			this._out.write(values[i]);
+
+			// the last column is not padded so lines carry no trailing blanks
+			if (!rightAlign[i] && i < values.length - 1)
+				pad(padding);
+		}
+
+		this._out.write('\n');
+	}
+
+	private void pad(int count) throws IOException
+	{
+		for (int i = 0; i < count; ++i)
+			this._out.write(' ');
+	}
+
+	private void writeDelimited(ResultSet rs, String[] header, char delimiter) throws SQLException, IOException
+	{
+		writeDelimitedRow(header, delimiter);
+
+		while (rs.next())
+		{
+			writeDelimitedRow(readRow(rs, header.length), delimiter);
+			++this._rowCount;
+		}
+	}
+
+	private void writeDelimitedRow(String[] values, char delimiter) throws IOException
+	{
+		for (int i = 0; i < values.length; ++i)
+		{
+			if (i > 0)
+				this._out.write(delimiter);
+
+			String value = values[i];
+
+			if (delimiter == ',' && (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0))
+				this._out.write('"' + value.replace("\"", "\"\"") + '"');
+			else if (delimiter == '\t')
+				this._out.write(value.replace('\t', ' ').replace('\n', ' '));
+			else
+				this._out.write(value);
+		}
+
+		this._out.write('\n');
+	}
+
+	/*
+	* Reads the current row as strings, trimming the blank padding of CHAR(n) values.
+	*/
+	private static String[] readRow(ResultSet rs, int numCol) throws SQLException
+	{
+		String[] row = new String[numCol];
+
+		for (int i = 0; i < numCol; ++i)
+		{
+			String value = rs.getString(i + 1);
+
+			row[i] = (value == null) ? "" : stripTrailingBlanks(value);
+		}
+
+		return row;
+	}
+
+	private static String stripTrailingBlanks(String value)
+	{
+		int end = value.length();
+
+		while (end > 0 && value.charAt(end - 1) == ' ')
+			--end;
+
+		return (end == value.length()) ? value : value.substring(0, end);
+	}
+
+	private static boolean isNumeric(int type)
+	{
+		switch (type)
+		{
+			case Types.INTEGER:
+			case Types.SMALLINT:
+			case Types.TINYINT:
+			case Types.BIGINT:
+			case Types.NUMERIC:
+			case Types.DECIMAL:
+			case Types.REAL:
+			case Types.FLOAT:
+			case Types.DOUBLE:
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	public long getRowCount()
+	{
+		return this._rowCount;
+	}
+
+	public long getElapsedNanos()
+	{
+		return this._elapsedNanos;
+	}
+
+	public double getRowsPerSecond()
+	{
+		return (this._elapsedNanos == 0) ? 0.0 : this._rowCount * 1e9 / this._elapsedNanos;
+	}
+
+	public String toString()
+	{
+		return String.format("%d rows in %.3f ms (%.0f rows/s)", this._rowCount, this._elapsedNanos / 1e6, getRowsPerSecond());
+	}
+}
@@ -0,0 +1,42 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+/*
+* A row of the Reservation table.
+*/
+
+public final class Reservation
+{
+	//select list MAPPER reads, in this order
+	public static final String COLUMNS = "Reservation.rnum, Reservation.ccid, Reservation.cid, Reservation.status";
+
+	public static final RowMapper<Reservation> MAPPER = rs -> new Reservation(rs.getInt(1), rs.getInt(2), rs.getInt(3), RowMapper.getChar(rs, 4));
+
+	public final int rnum;
+	public final int ccid;
+	public final int cid;
+	public final char status;
+
+	public Reservation(int rnum, int ccid, int cid, char status)
+	{
+		this.rnum = rnum;
+		this.ccid = ccid;
+		this.cid = cid;
+		this.status = status;
+	}
+
+	public String toString()
+	{
+		return String.format("(rnum:%d, customerID:%d, cruiseID:%d, status:%c)", rnum, ccid, cid, status);
+	}
+}
@@ -0,0 +1,137 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.*;
+
+/*
+* This class walks the rows of a query one at a time over a server-side cursor.  The driver keeps
+* at most fetch size rows in memory, so memory use does not grow with the size of the result.
+* The cursor holds a pooled connection until it is closed; use it in a try-with-resources block.
+*/
+
+public class ResultCursor implements AutoCloseable
+{
+	private final ConnectionPool _pool;
+	private final ConnectionPool.PooledConnection _pc;
+	private final PreparedStatement _stmt;
+	private final ResultSet _rs;
+	private final int _numCol;
+	private long _rowCount = 0;
+	private boolean _closed = false;
+
+	//timing of the cursor, recorded when it is closed
+	private final QueryMetrics.Template _template;
+	private final long _executeNanos;
+	private final long _openedAt = System.nanoTime();
+	private boolean _failed = false;
+
+	ResultCursor(ConnectionPool pool, ConnectionPool.PooledConnection pc, PreparedStatement stmt, ResultSet rs,
+				QueryMetrics.Template template, long executeNanos) throws SQLException
+	{
+		this._pool = pool;
+		this._pc = pc;
+		this._stmt = stmt;
+		this._rs = rs;
+		this._numCol = rs.getMetaData().getColumnCount();
+		this._template = template;
+		this._executeNanos = executeNanos;
+	}
+
+	/**
+	 * Method to move to the next row, fetching the next batch from the
+	 * server when the current one is used up.
+	 *
+	 * @return false when there are no more rows
+	 * @throws java.sql.SQLException when the fetch failed
+	 */
+	public boolean next() throws SQLException
+	{
+		if (this._closed)
+			return false;
+
+		try
+		{
+			if (!this._rs.next())
+				return false;
+		}
+		catch (SQLException e)
+		{
+			this._failed = true;
+			throw e;
+		}
+
+		++this._rowCount;
+		return true;
+	}
+
+	public int getColumnCount()
+	{
+		return this._numCol;
+	}
+
+	public String getColumnName(int column) throws SQLException
+	{
+		return this._rs.getMetaData().getColumnName(column);
+	}
+
+	public String getString(int column) throws SQLException
+	{
+		return this._rs.getString(column);
+	}
+
+	public int getInt(int column) throws SQLException
+	{
+		return this._rs.getInt(column);
+	}
+
+	public long getRowCount()
+	{
+		return this._rowCount;
+	}
+
+	/**
+	 * Method to close the cursor and give the connection back to the pool.
+	 * The time the cursor was open counts as the query's fetch phase.
+	 * Calling it more than once has no effect.
+	 */
+	public void close()
+	{
+		if (this._closed)
+			return;
+
+		this._closed = true;
+
+		if (this._failed)
+			this._template.error();
+		else
+			this._template.record(this._executeNanos, System.nanoTime() - this._openedAt, this._rowCount);
+
+		try
+		{
+			this._rs.close();
+
+			// the statement stays in the cache, so later users get the default fetch size back
+			this._stmt.setFetchSize(0);
+		}
+		catch (SQLException e)
+		{
+			// ignored, release rolls the cursor's transaction back.
+		}
+		finally
+		{
+			// no pool when the cursor runs inside DBproject.executeInTransaction
+			if (this._pool != null)
+				this._pool.release(this._pc);
+		}
+	}
+}
@@ -0,0 +1,70 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.*;
+import java.time.LocalDate;
+
+/*
+* This interface turns the current row of a result set into an object.  Mappers read columns by
+* position with the typed getters, so no intermediate strings are created for numeric columns.
+*/
+
+public interface RowMapper<T>
+{
+	T map(ResultSet rs) throws SQLException;
+
+	/**
+	 * Method to read a CHAR(1) column such as Reservation.status.
+	 *
+	 * @param rs the result set positioned on a row
+	 * @param column the column position, starting at 1
+	 * @return the character, or 0 when the column is null or empty
+	 * @throws java.sql.SQLException when the column cannot be read
+	 */
+	static char getChar(ResultSet rs, int column) throws SQLException
+	{
+		String value = rs.getString(column);
+
+		return (value == null || value.isEmpty()) ? 0 : value.charAt(0);
+	}
+
+	/**
+	 * Method to read a blank padded CHAR(n) column without its padding.
+	 *
+	 * @param rs the result set positioned on a row
+	 * @param column the column position, starting at 1
+	 * @return the trimmed value, or null when the column is null
+	 * @throws java.sql.SQLException when the column cannot be read
+	 */
+	static String getTrimmedString(ResultSet rs, int column) throws SQLException
+	{
+		String value = rs.getString(column);
+
+		return (value == null) ? null : value.trim();
+	}
+
+	/**
+	 * Method to read a DATE column.
+	 *
+	 * @param rs the result set positioned on a row
+	 * @param column the column position, starting at 1
+	 * @return the date, or null when the column is null
+	 * @throws java.sql.SQLException when the column cannot be read
+	 */
+	static LocalDate getDate(ResultSet rs, int column) throws SQLException
+	{
+		Date value = rs.getDate(column);
+
+		return (value == null) ? null : value.toLocalDate();
+	}
+}
@@ -0,0 +1,148 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.*;
+
+/*
+* This class brings the schema of a database built by sql/create.sql up to the version the
+* application expects.  Each migration runs once, in its own transaction, and is recorded in
+* SchemaVersion; an advisory lock keeps two clients from applying the same migration at once.
+* New migrations are appended to MIGRATIONS and never edited once released.
+*/
+
+public class SchemaMigrator
+{
+	//arbitrary key of the advisory lock held while migrating
+	private static final long LOCK_KEY = 166166;
+
+	/*
+	* One step of the schema.
+	*/
+	public static final class Migration
+	{
+		public final int version;
+		public final String description;
+		public final String[] statements;
+
+		public Migration(int version, String description, String... statements)
+		{
+			this.version = version;
+			this.description = description;
+			this.statements = statements;
+		}
+	}
+
+	public static final Migration[] MIGRATIONS =
+	{
+		// the columns every menu query filters or joins on; key columns are appended so the
+		// lookups are answered from the index alone
+		new Migration(1, "indexes for the menu queries",
+			"CREATE INDEX IF NOT EXISTS Reservation_cid_status ON Reservation (cid, status, rnum, ccid);",
+			"CREATE INDEX IF NOT EXISTS Reservation_ccid ON Reservation (ccid);",
+			"CREATE INDEX IF NOT EXISTS Repairs_ship_id ON Repairs (ship_id);",
+			"CREATE INDEX IF NOT EXISTS CruiseInfo_cruise_id ON CruiseInfo (cruise_id, ship_id);",
+			"CREATE INDEX IF NOT EXISTS CruiseInfo_ship_id ON CruiseInfo (ship_id);",
+			"CREATE INDEX IF NOT EXISTS Schedule_cruiseNum ON Schedule (cruiseNum);",
+			"ANALYZE Reservation, Repairs, CruiseInfo, Schedule;"),
+
+		// repairs without a code no longer break the repair count trigger
+		new Migration(2, "skip code-less repairs in repairs_count", RepairLeaderboard.COUNT_FUNCTION),
+
+		// reservations without a status no longer break the passenger count trigger
+		new Migration(3, "skip null statuses in reservation_count", PassengerCounts.COUNT_FUNCTION)
+	};
+
+	private final DBproject _esql;
+
+	public SchemaMigrator(DBproject esql)
+	{
+		this._esql = esql;
+	}
+
+	/**
+	 * Method to return the latest migration applied to the database.
+	 *
+	 * @return the schema version, 0 when no migration was applied
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public int getVersion() throws SQLException
+	{
+		// two queries: a reference to SchemaVersion fails at parse time on a database without it,
+		// whatever guards it in the same statement
+		Boolean exists = this._esql.executePreparedQueryForObject("SELECT to_regclass('schemaversion') IS NOT NULL;", rs -> rs.getBoolean(1));
+
+		if (exists == null || !exists)
+			return 0;
+
+		return this._esql.executePreparedQueryForInt("SELECT COALESCE(MAX(version), 0) FROM SchemaVersion;", 0);
+	}
+
+	/**
+	 * Method to apply every migration newer than the database.
+	 *
+	 * @return the number of migrations applied
+	 * @throws java.sql.SQLException when a migration failed, the ones before it stay applied
+	 */
+	public int migrate() throws SQLException
+	{
+		int latest = MIGRATIONS[MIGRATIONS.length - 1].version;
+
+		if (getVersion() >= latest)
+			return 0;
+
+		int applied = 0;
+
+		for (Migration migration : MIGRATIONS)
+		{
+			boolean ran = this._esql.executeInTransaction(pc ->
+			{
+				try (Statement stmt = pc.getConnection().createStatement())
+				{
+					// released at commit; a client waiting here sees the version the other one recorded
+					stmt.execute("SELECT pg_advisory_xact_lock(" + LOCK_KEY + ");");
+					stmt.execute("CREATE TABLE IF NOT EXISTS SchemaVersion\n" +
+						"(\n" +
+						"	version INTEGER NOT NULL,\n" +
+						"	description TEXT NOT NULL,\n" +
+						"	applied_at TIMESTAMP NOT NULL DEFAULT now(),\n" +
+						"	PRIMARY KEY (version)\n" +
+						");");
+
+					try (ResultSet rs = stmt.executeQuery("SELECT 1 FROM SchemaVersion WHERE version = " + migration.version + ";"))
+					{
+						if (rs.next())
+							return false;
+					}
+
+					long begin = System.nanoTime();
+
+					for (String statement : migration.statements)
+						stmt.execute(statement);
+
+					DBproject.prepareAndBind(pc, "INSERT INTO SchemaVersion (version, description) VALUES (?, ?);",
+								migration.version, migration.description).executeUpdate();
+
+					System.out.println(String.format("Applied schema migration %d (%s) in %.1f ms",
+								migration.version, migration.description, (System.nanoTime() - begin) / 1e6));
+				}
+
+				return true;
+			});
+
+			if (ran)
+				++applied;
+		}
+
+		return applied;
+	}
+}
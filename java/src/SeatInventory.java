@@ -0,0 +1,343 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+
+/*
+* This class keeps the seat count of every cruise in memory: the seats of its ship (Ship.seats
+* through CruiseInfo) and Cruise.num_sold, the count BookingEngine decides R or W by.  It is built
+* with one query, bumped in place by every booking made through this process and reconciled with
+* the DBMS periodically to pick up bookings made by other clients.  A booking that began before the
+* snapshot of its cruise was read may already be in it, so the cruise is dropped and loaded again
+* instead of being bumped, and a cruise loaded on its own is not kept when a booking of it was
+* reported while the load ran.  Lookups are a hash map read.
+*/
+
+public class SeatInventory
+{
+	//how often the counts are reloaded from the DBMS
+	public static final long DEFAULT_RECONCILE_MILLIS = 60000;
+
+	private static final String SEATS_QUERY =
+		"SELECT Cruise.cnum, COALESCE(capacity.seats, 0), Cruise.num_sold\n" +
+		"FROM Cruise\n" +
+		"LEFT JOIN (SELECT CruiseInfo.cruise_id, MIN(Ship.seats) AS seats FROM CruiseInfo, Ship\n" +
+		"	WHERE CruiseInfo.ship_id = Ship.id GROUP BY CruiseInfo.cruise_id) capacity ON capacity.cruise_id = Cruise.cnum";
+
+	static final String ONE_CRUISE_QUERY =
+		"SELECT Cruise.cnum,\n" +
+		"	COALESCE((SELECT MIN(Ship.seats) FROM CruiseInfo, Ship WHERE CruiseInfo.cruise_id = Cruise.cnum AND CruiseInfo.ship_id = Ship.id), 0),\n" +
+		"	Cruise.num_sold\n" +
+		"FROM Cruise\n" +
+		"WHERE Cruise.cnum = ?;";
+
+	/*
+	* The seats of one cruise.
+	*/
+	private static class Seats
+	{
+		private volatile int _capacity;
+		private final AtomicInteger _booked = new AtomicInteger();
+
+		//System.nanoTime() once a lookup had read this cruise on its own, Long.MIN_VALUE when a reconcile did
+		private volatile long _loadedTo = Long.MIN_VALUE;
+
+		private Seats(int capacity, int booked)
+		{
+			this._capacity = capacity;
+			this._booked.set(booked);
+		}
+	}
+
+	private final DBproject _esql;
+	private final long _reconcileMillis;
+	private final ConcurrentHashMap<Integer, Seats> _seats = new ConcurrentHashMap<Integer, Seats>();
+
+	private volatile boolean _built = false;
+	private ScheduledExecutorService _reconciler = null;
+
+	//System.nanoTime() when the last reconcile finished, Long.MAX_VALUE while one is running
+	private volatile long _snapshotTo = Long.MIN_VALUE;
+
+	//cruises changed while a reconcile is running, reloaded once it has finished
+	private final Set<Integer> _dirty = ConcurrentHashMap.newKeySet();
+
+	//System.nanoTime() when a cruise was last dropped for a change, so a lookup loading it from before is not kept
+	private final ConcurrentHashMap<Integer, Long> _droppedAt = new ConcurrentHashMap<Integer, Long>();
+
+	//bookings take the read lock, a reconcile or a lookup keeping what it loaded the write lock
+	private final ReentrantReadWriteLock _snapshotLock = new ReentrantReadWriteLock();
+
+	private final AtomicLong _lookups = new AtomicLong();
+	private final AtomicLong _reconciles = new AtomicLong();
+
+	public SeatInventory(DBproject esql, long reconcileMillis)
+	{
+		this._esql = esql;
+		this._reconcileMillis = reconcileMillis;
+	}
+
+	/**
+	 * Method to return the seats left on a cruise: its ship's seats minus
+	 * its num_sold.  Negative when it is overbooked.
+	 *
+	 * @param cnum the Cruise.cnum
+	 * @return the seats left, or null when the cruise does not exist
+	 * @throws java.sql.SQLException when the inventory had to be loaded and that failed
+	 */
+	public Integer getAvailableSeats(int cnum) throws SQLException
+	{
+		this._lookups.incrementAndGet();
+
+		if (!this._built)
+			build();
+
+		Seats seats = this._seats.get(cnum);
+
+		// a cruise added after the inventory was built, or dropped since, is loaded on its own
+		if (seats == null)
+		{
+			long loadedFrom = System.nanoTime();
+
+			seats = this._esql.executePreparedQueryForObject(ONE_CRUISE_QUERY, rs -> new Seats(rs.getInt(2), rs.getInt(3)), cnum);
+
+			if (seats == null)
+				return null;
+
+			seats._loadedTo = System.nanoTime();
+			seats = keep(cnum, seats, loadedFrom);
+		}
+
+		return seats._capacity - seats._booked.get();
+	}
+
+	/*
+	* Puts a cruise loaded on its own into the map, unless it was dropped for a change after the load
+	* began, which the load may have missed; the next lookup then loads it again.  Returns the seats
+	* to answer from.
+	*/
+	private Seats keep(int cnum, Seats seats, long loadedFrom)
+	{
+		this._snapshotLock.writeLock().lock();
+
+		try
+		{
+			Long droppedAt = this._droppedAt.get(cnum);
+
+			if (droppedAt != null && droppedAt >= loadedFrom)
+				return seats;
+
+			this._droppedAt.remove(cnum);
+
+			Seats existing = this._seats.putIfAbsent(cnum, seats);
+
+			return (existing == null) ? seats : existing;
+		}
+		finally
+		{
+			this._snapshotLock.writeLock().unlock();
+		}
+	}
+
+	public Integer getCapacity(int cnum) throws SQLException
+	{
+		if (!this._built)
+			build();
+
+		Seats seats = this._seats.get(cnum);
+
+		return (seats == null) ? null : seats._capacity;
+	}
+
+	/**
+	 * Method to record a reservation made by this process.  Reservations
+	 * with status R or C took a seat and moved num_sold.
+	 *
+	 * @param cnum the Cruise.cnum
+	 * @param status the status of the new reservation
+	 * @param startedAt the System.nanoTime() taken before the booking was written
+	 */
+	public void onBooked(int cnum, char status, long startedAt)
+	{
+		adjust(cnum, status, 1, startedAt);
+	}
+
+	/**
+	 * Method to record a reservation whose status changed, e.g. when a
+	 * waitlisted passenger is promoted or a reservation is cancelled.
+	 *
+	 * @param cnum the Cruise.cnum
+	 * @param oldStatus the status before the change
+	 * @param newStatus the status after the change
+	 * @param startedAt the System.nanoTime() taken before the change was written
+	 */
+	public void onStatusChanged(int cnum, char oldStatus, char newStatus, long startedAt)
+	{
+		adjust(cnum, oldStatus, -1, startedAt);
+		adjust(cnum, newStatus, 1, startedAt);
+	}
+
+	private void adjust(int cnum, char status, int delta, long startedAt)
+	{
+		if (status != 'R' && status != 'C')
+			return;
+
+		this._snapshotLock.readLock().lock();
+
+		try
+		{
+			Seats seats = this._seats.get(cnum);
+
+			// only a change begun after the cruise's last snapshot is known to be missing from it
+			if (seats != null && startedAt > this._snapshotTo && startedAt > seats._loadedTo)
+			{
+				seats._booked.addAndGet(delta);
+				return;
+			}
+
+			drop(cnum);
+
+			// a running reconcile may put back a snapshot from before the change
+			if (this._snapshotTo == Long.MAX_VALUE)
+				this._dirty.add(cnum);
+		}
+		finally
+		{
+			this._snapshotLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Method to forget a cruise whose ship assignment may have changed, so
+	 * the next lookup loads it again.
+	 *
+	 * @param cnum the Cruise.cnum
+	 */
+	public void invalidate(int cnum)
+	{
+		drop(cnum);
+	}
+
+	/*
+	* Removes a cruise so its next lookup loads it again, and keeps that load from being undone by
+	* one that began earlier.
+	*/
+	private void drop(int cnum)
+	{
+		this._seats.remove(cnum);
+		this._droppedAt.put(cnum, System.nanoTime());
+	}
+
+	private synchronized void build() throws SQLException
+	{
+		if (this._built)
+			return;
+
+		reconcile();
+
+		this._built = true;
+		this._reconciler = Executors.newSingleThreadScheduledExecutor(r ->
+		{
+			Thread t = new Thread(r, "SeatInventory-reconciler");
+			t.setDaemon(true);
+			return t;
+		});
+
+		this._reconciler.scheduleWithFixedDelay(() ->
+		{
+			try
+			{
+				reconcile();
+			}
+			catch (SQLException e)
+			{
+				System.err.println("Error - Unable to Reconcile Seat Inventory: " + e.getMessage());
+			}
+		}, this._reconcileMillis, this._reconcileMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Method to reload every cruise's counts from the DBMS.  Cruises this
+	 * process changed while the query ran are dropped afterwards, so they
+	 * are loaded again on their next lookup.
+	 *
+	 * @throws java.sql.SQLException when the counts cannot be read
+	 */
+	public synchronized void reconcile() throws SQLException
+	{
+		this._snapshotLock.writeLock().lock();
+
+		try
+		{
+			this._snapshotTo = Long.MAX_VALUE;
+		}
+		finally
+		{
+			this._snapshotLock.writeLock().unlock();
+		}
+
+		try
+		{
+			this._esql.executePreparedQueryForEach(SEATS_QUERY, DBproject.DEFAULT_FETCH_SIZE, rs ->
+			{
+				int cnum = rs.getInt(1);
+				Seats seats = this._seats.get(cnum);
+
+				if (seats == null)
+				{
+					this._seats.putIfAbsent(cnum, new Seats(rs.getInt(2), rs.getInt(3)));
+				}
+				else
+				{
+					seats._capacity = rs.getInt(2);
+					seats._booked.set(rs.getInt(3));
+				}
+			});
+		}
+		finally
+		{
+			this._snapshotLock.writeLock().lock();
+
+			try
+			{
+				this._snapshotTo = System.nanoTime();
+
+				for (Integer cnum : this._dirty)
+					this._seats.remove(cnum);
+
+				this._dirty.clear();
+			}
+			finally
+			{
+				this._snapshotLock.writeLock().unlock();
+			}
+		}
+
+		this._reconciles.incrementAndGet();
+	}
+
+	public void close()
+	{
+		if (this._reconciler != null)
+			this._reconciler.shutdownNow();
+	}
+
+	public String toString()
+	{
+		return String.format("cruises:%d lookups:%d reconciles:%d", this._seats.size(), this._lookups.get(), this._reconciles.get());
+	}
+}
@@ -0,0 +1,45 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+/*
+* A row of the Ship table.
+*/
+
+public final class Ship
+{
+	//select list MAPPER reads, in this order
+	public static final String COLUMNS = "Ship.id, Ship.make, Ship.model, Ship.age, Ship.seats";
+
+	public static final RowMapper<Ship> MAPPER = rs -> new Ship(rs.getInt(1), RowMapper.getTrimmedString(rs, 2),
+					RowMapper.getTrimmedString(rs, 3), rs.getInt(4), rs.getInt(5));
+
+	public final int id;
+	public final String make;
+	public final String model;
+	public final int age;
+	public final int seats;
+
+	public Ship(int id, String make, String model, int age, int seats)
+	{
+		this.id = id;
+		this.make = make;
+		this.model = model;
+		this.age = age;
+		this.seats = seats;
+	}
+
+	public String toString()
+	{
+		return String.format("(id:%d, make:%s, model:%s, age:%d, seats:%d)", id, make, model, age, seats);
+	}
+}
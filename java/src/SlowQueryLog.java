@@ -0,0 +1,337 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/*
+* A log of the statements that took longer than a threshold, each with its SQL template, bind
+* values, elapsed time and, when possible, the plan from an EXPLAIN of the same statement.
+*
+* The query helpers only hand a slow statement to a queue; one background thread runs the EXPLAIN
+* on its own pooled connection and writes the entry, so the caller never waits for either.  Only a
+* sample of the slow statements is explained, and no more than a fixed number per minute, so a
+* database that slows down everything is not also sent a wave of EXPLAINs.  Entries past that, or
+* past a full queue, are still logged or counted without a plan.  The file is rotated by size:
+* slow-queries.log, slow-queries.log.1, ... up to the configured number of files.
+*/
+
+public class SlowQueryLog
+{
+	public static final long DEFAULT_THRESHOLD_MILLIS = 500;
+
+	//fraction of the slow statements explained
+	public static final double DEFAULT_SAMPLE_RATE = 0.5;
+
+	public static final int DEFAULT_EXPLAINS_PER_MINUTE = 10;
+
+	public static final long DEFAULT_MAX_FILE_BYTES = 10L * 1024 * 1024;
+
+	//the current file and the rotated ones kept
+	public static final int DEFAULT_FILES = 5;
+
+	//slow statements waiting for the background thread; more are dropped and counted
+	private static final int QUEUE_CAPACITY = 256;
+
+	//longest bind value written in full
+	private static final int MAX_VALUE_LENGTH = 200;
+
+	/*
+	* Runs EXPLAIN for a statement and returns the plan, one line per element.
+	*/
+	public interface Explainer
+	{
+		List<String> explain(String sql, Object[] params) throws SQLException;
+	}
+
+	private final Explainer _explainer;
+
+	//Long.MAX_VALUE until start is called, so offer costs one comparison while the log is off
+	private volatile long _thresholdNanos = Long.MAX_VALUE;
+	private long _thresholdMillis;
+	private double _sampleRate;
+	private int _explainsPerMinute;
+	private long _maxFileBytes;
+	private int _files;
+	private Path _file = null;
+	private volatile ThreadPoolExecutor _writer = null;
+
+	//token bucket of EXPLAINs, only touched by the background thread
+	private double _tokens = 0;
+	private long _refilledAt = 0;
+	private Writer _out = null;
+	private long _fileBytes = 0;
+
+	private final AtomicLong _logged = new AtomicLong();
+	private final AtomicLong _explained = new AtomicLong();
+	private final AtomicLong _sampledOut = new AtomicLong();
+	private final AtomicLong _rateLimited = new AtomicLong();
+	private final AtomicLong _dropped = new AtomicLong();
+
+	public SlowQueryLog(Explainer explainer)
+	{
+		this._explainer = explainer;
+	}
+
+	/**
+	 * Method to start logging the statements slower than a threshold.
+	 *
+	 * @param file the log file, e.g. slow-queries.log
+	 * @param thresholdMillis the elapsed time above which a statement is logged
+	 * @param sampleRate the fraction of slow statements explained, 0 to 1
+	 * @param explainsPerMinute the most EXPLAINs run per minute
+	 * @param maxFileBytes the size at which the file is rotated
+	 * @param files the number of files kept, the current one included
+	 */
+	public synchronized void start(Path file, long thresholdMillis, double sampleRate, int explainsPerMinute, long maxFileBytes, int files)
+	{
+		if (thresholdMillis < 0 || sampleRate < 0 || sampleRate > 1 || explainsPerMinute < 0 || maxFileBytes <= 0 || files < 1)
+			throw new IllegalArgumentException("Invalid slow query log settings");
+
+		if (this._writer != null)
+			return;
+
+		this._file = file;
+		this._thresholdMillis = thresholdMillis;
+		this._sampleRate = sampleRate;
+		this._explainsPerMinute = explainsPerMinute;
+		this._maxFileBytes = maxFileBytes;
+		this._files = files;
+		this._tokens = explainsPerMinute;
+		this._refilledAt = System.nanoTime();
+
+		this._writer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(QUEUE_CAPACITY), r ->
+		{
+			Thread t = new Thread(r, "SlowQueryLog-writer");
+			t.setDaemon(true);
+			return t;
+		}, (task, executor) -> this._dropped.incrementAndGet());
+
+		this._thresholdNanos = thresholdMillis * 1000000;
+	}
+
+	/**
+	 * Method called by the query helpers after each statement.  Statements
+	 * under the threshold return at once; slower ones are queued for the
+	 * background thread.
+	 *
+	 * @param sql the SQL template
+	 * @param params the bind values, in order
+	 * @param elapsedNanos the time the statement took
+	 */
+	public void offer(String sql, Object[] params, long elapsedNanos)
+	{
+		if (elapsedNanos < this._thresholdNanos)
+			return;
+
+		ThreadPoolExecutor writer = this._writer;
+
+		if (writer == null)
+			return;
+
+		long loggedAt = System.currentTimeMillis();
+		String thread = Thread.currentThread().getName();
+		Object[] binds = params.clone();
+
+		writer.execute(() -> write(loggedAt, thread, sql, binds, elapsedNanos));
+	}
+
+	/*
+	* Explains and writes one entry, on the background thread.
+	*/
+	private void write(long loggedAt, String thread, String sql, Object[] params, long elapsedNanos)
+	{
+		StringBuilder entry = new StringBuilder();
+
+		entry.append(String.format("%tF %<tT.%<tL slow statement %.3f ms (threshold %d ms) on %s%n",
+					new java.util.Date(loggedAt), elapsedNanos / 1e6, this._thresholdMillis, thread));
+		entry.append("sql: ").append(sql.replaceAll("\\s+", " ").trim()).append(System.lineSeparator());
+		entry.append("binds: ").append(formatBinds(params)).append(System.lineSeparator());
+		entry.append("plan:");
+
+		String skipped = explainSkipped(sql);
+
+		if (skipped != null)
+			entry.append(' ').append(skipped).append(System.lineSeparator());
+		else
+		{
+			try
+			{
+				entry.append(System.lineSeparator());
+
+				for (String line : this._explainer.explain(sql, params))
+					entry.append("  ").append(line).append(System.lineSeparator());
+
+				this._explained.incrementAndGet();
+			}
+			catch (SQLException | RuntimeException e)
+			{
+				entry.append("  EXPLAIN failed: ").append(e.getMessage()).append(System.lineSeparator());
+			}
+		}
+
+		entry.append(System.lineSeparator());
+		append(entry.toString());
+		this._logged.incrementAndGet();
+	}
+
+	/*
+	* Returns why a statement is logged without a plan, or null when it is to be explained.
+	*/
+	private String explainSkipped(String sql)
+	{
+		String verb = sql.trim().split("\\s+", 2)[0].toUpperCase();
+
+		if (!Arrays.asList("SELECT", "WITH", "INSERT", "UPDATE", "DELETE", "VALUES").contains(verb))
+			return "not explainable";
+
+		if (ThreadLocalRandom.current().nextDouble() >= this._sampleRate)
+		{
+			this._sampledOut.incrementAndGet();
+			return "not sampled";
+		}
+
+		long now = System.nanoTime();
+
+		this._tokens = Math.min(this._explainsPerMinute, this._tokens + (now - this._refilledAt) * this._explainsPerMinute / 60e9);
+		this._refilledAt = now;
+
+		if (this._tokens < 1)
+		{
+			this._rateLimited.incrementAndGet();
+			return "rate limited";
+		}
+
+		this._tokens -= 1;
+		return null;
+	}
+
+	private static String formatBinds(Object[] params)
+	{
+		StringBuilder binds = new StringBuilder("[");
+
+		for (int i = 0; i < params.length; ++i)
+		{
+			Object param = params[i];
+			String value = (param == null) ? "null" : param.toString();
+
+			if (value.length() > MAX_VALUE_LENGTH)
+				value = value.substring(0, MAX_VALUE_LENGTH) + "...";
+
+			if (param instanceof String || param instanceof Character)
+				value = "'" + value.replace("'", "''") + "'";
+
+			binds.append((i == 0) ? "" : ", ").append(value);
+		}
+
+		return binds.append(']').toString();
+	}
+
+	private void append(String entry)
+	{
+		try
+		{
+			byte[] bytes = entry.getBytes(StandardCharsets.UTF_8);
+
+			if (this._out != null && this._fileBytes + bytes.length > this._maxFileBytes)
+				rotate();
+
+			if (this._out == null)
+			{
+				this._out = Files.newBufferedWriter(this._file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+				this._fileBytes = Files.size(this._file);
+			}
+
+			this._out.write(entry);
+			this._out.flush();
+			this._fileBytes += bytes.length;
+		}
+		catch (IOException e)
+		{
+			System.err.println("Error - Unable to Write Slow Query Log: " + e.getMessage());
+		}
+	}
+
+	/*
+	* Shifts file.N to file.N+1, dropping the oldest, and moves the current file to file.1.
+	*/
+	private void rotate() throws IOException
+	{
+		this._out.close();
+		this._out = null;
+
+		Path oldest = this._file.resolveSibling(this._file.getFileName() + "." + (this._files - 1));
+
+		Files.deleteIfExists(oldest);
+
+		for (int i = this._files - 2; i >= 1; --i)
+		{
+			Path from = this._file.resolveSibling(this._file.getFileName() + "." + i);
+
+			if (Files.exists(from))
+				Files.move(from, this._file.resolveSibling(this._file.getFileName() + "." + (i + 1)), StandardCopyOption.REPLACE_EXISTING);
+		}
+
+		if (this._files > 1)
+			Files.move(this._file, this._file.resolveSibling(this._file.getFileName() + ".1"), StandardCopyOption.REPLACE_EXISTING);
+		else
+			Files.delete(this._file);
+	}
+
+	/**
+	 * Method to stop logging, writing the entries already queued first.
+	 */
+	public synchronized void close()
+	{
+		if (this._writer == null)
+			return;
+
+		this._thresholdNanos = Long.MAX_VALUE;
+		this._writer.shutdown();
+
+		try
+		{
+			this._writer.awaitTermination(10, TimeUnit.SECONDS);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+
+		this._writer.shutdownNow();
+		this._writer = null;
+
+		try
+		{
+			if (this._out != null)
+				this._out.close();
+		}
+		catch (IOException e)
+		{
+			// ignored.
+		}
+
+		this._out = null;
+	}
+
+	public String toString()
+	{
+		return String.format("%d logged, %d explained, %d not sampled, %d rate limited, %d dropped",
+					this._logged.get(), this._explained.get(), this._sampledOut.get(), this._rateLimited.get(), this._dropped.get());
+	}
+}
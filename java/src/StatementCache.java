@@ -0,0 +1,140 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.*;
+import java.util.*;
+
+/*
+* This class keeps a bounded set of prepared statements for one physical connection, keyed by
+* their SQL template. Reusing the same PreparedStatement lets the driver switch to a server-side
+* prepared plan instead of parsing and planning the statement on every call.
+*/
+
+public class StatementCache
+{
+	//default number of statement templates kept per connection
+	public static final int DEFAULT_CAPACITY = 64;
+
+	//connection the cached statements belong to
+	private final Connection _connection;
+	private final int _capacity;
+
+	//access-ordered so the least recently used template is evicted first
+	private final LinkedHashMap<String, PreparedStatement> _statements;
+
+	private long _hits = 0;
+	private long _misses = 0;
+	private long _evictions = 0;
+
+	public StatementCache(Connection connection, int capacity)
+	{
+		if (capacity <= 0)
+			throw new IllegalArgumentException("Statement cache capacity must be positive: " + capacity);
+
+		this._connection = connection;
+		this._capacity = capacity;
+		this._statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true);
+	}
+
+	/**
+	 * Method to return the prepared statement for a SQL template, preparing
+	 * it on a miss.  When the cache is full the least recently used statement
+	 * is closed and dropped.
+	 *
+	 * @param sql the SQL template with '?' bind markers
+	 * @return a prepared statement owned by the cache, callers must not close it
+	 * @throws java.sql.SQLException when the statement cannot be prepared
+	 */
+	public synchronized PreparedStatement prepare(String sql) throws SQLException
+	{
+		PreparedStatement stmt = this._statements.get(sql);
+
+		if (stmt != null && !stmt.isClosed())
+		{
+			++this._hits;
+			return stmt;
+		}
+
+		++this._misses;
+		stmt = this._connection.prepareStatement(sql);
+		this._statements.put(sql, stmt);
+
+		if (this._statements.size() > this._capacity)
+		{
+			Iterator<Map.Entry<String, PreparedStatement>> eldest = this._statements.entrySet().iterator();
+			PreparedStatement evicted = eldest.next().getValue();
+			eldest.remove();
+			++this._evictions;
+
+			try
+			{
+				evicted.close();
+			}
+			catch (SQLException e)
+			{
+				// ignored.
+			}
+		}
+
+		return stmt;
+	}
+
+	public synchronized long getHits()
+	{
+		return this._hits;
+	}
+
+	public synchronized long getMisses()
+	{
+		return this._misses;
+	}
+
+	public synchronized long getEvictions()
+	{
+		return this._evictions;
+	}
+
+	public synchronized int size()
+	{
+		return this._statements.size();
+	}
+
+	public synchronized String toString()
+	{
+		long lookups = this._hits + this._misses;
+		double ratio = (lookups == 0) ? 0.0 : (100.0 * this._hits) / lookups;
+
+		return String.format("statements:%d/%d hits:%d misses:%d evictions:%d hit ratio:%.1f%%",
+					this._statements.size(), this._capacity, this._hits, this._misses, this._evictions, ratio);
+	}
+
+	/**
+	 * Method to close every cached statement.  The connection itself is left open.
+	 */
+	public synchronized void close()
+	{
+		for (PreparedStatement stmt : this._statements.values())
+		{
+			try
+			{
+				stmt.close();
+			}
+			catch (SQLException e)
+			{
+				// ignored.
+			}
+		}
+
+		this._statements.clear();
+	}
+}
@@ -0,0 +1,159 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.*;
+import java.nio.file.Paths;
+import java.sql.*;
+import java.util.*;
+
+/*
+* This class compares the startup time and the per-query latency of the in-memory store with the
+* Postgres path.  It times what main does before the menu shows, then runs the same random lookups
+* of the read-only menu operations (4's customer and cruise checks, 5, 6 and 7) against each store,
+* once to warm up and once measured.  Nothing is written, so it can run against a live database.
+*/
+
+public class StoreBenchmark
+{
+	public static final int DEFAULT_QUERIES = 2000;
+
+	//cruise numbers past the loaded ones, so some lookups miss
+	private static final double MISS_RATE = 0.05;
+
+	private static final String[] REPORT_CODES = { null, "MJ", "MN", "SV" };
+
+	/**
+	 * The benchmark entry point
+	 *
+	 * @param args <data dir> [<queries per operation> [<dbname> <port> <user>]]
+	 */
+	public static void main(String[] args) throws Exception
+	{
+		if (args.length != 1 && args.length != 2 && args.length != 5)
+		{
+			System.err.println("Usage: " + "java [-classpath <classpath>] " + StoreBenchmark.class.getName() +
+						" <data dir> [<queries per operation> [<dbname> <port> <user>]]");
+			return;
+		}
+
+		int queries = (args.length > 1) ? Integer.parseInt(args[1]) : DEFAULT_QUERIES;
+
+		InMemoryStore memory = InMemoryStore.load(Paths.get(args[0]));
+		System.out.println(String.format("%-9s startup %10.1f ms  (%s)", "memory", memory.getLoadNanos() / 1e6, memory));
+
+		// the same inputs for both stores
+		Random random = new Random(42);
+		int cruises = memory.getCruiseCount();
+		int[] cruiseNumbers = new int[queries];
+		int[] customerIds = new int[queries];
+
+		for (int i = 0; i < queries; ++i)
+		{
+			cruiseNumbers[i] = (random.nextDouble() < MISS_RATE) ? cruises + random.nextInt(cruises) : random.nextInt(cruises);
+			customerIds[i] = random.nextInt(memory.getCustomerCount());
+		}
+
+		Map<String, LatencyStats> memoryLatencies = run(memory, cruiseNumbers, customerIds);
+
+		print("memory", memoryLatencies);
+
+		if (args.length < 5)
+			return;
+
+		Class.forName("org.postgresql.Driver");
+
+		long begin = System.nanoTime();
+		DBproject esql = new DBproject(args[2], args[3], args[4], "");
+
+		try
+		{
+			esql.migrateSchema();
+			esql.buildExistenceFilters();
+
+			// the seat inventory and the repair aggregates load on their first query, which main's menu pays too
+			esql.getAvailableSeats(0);
+			esql.getTopRepairedShips(1, null, null, null);
+
+			System.out.println(String.format("%-9s startup %10.1f ms", "postgres", (System.nanoTime() - begin) / 1e6));
+
+			print("postgres", run(esql, cruiseNumbers, customerIds));
+		}
+		finally
+		{
+			esql.cleanup();
+		}
+	}
+
+	/*
+	* Runs every operation once per input to warm up, then again measured, and returns the latencies
+	* of the measured run by operation.
+	*/
+	private static Map<String, LatencyStats> run(CruiseStore store, int[] cruiseNumbers, int[] customerIds) throws SQLException
+	{
+		Map<String, LatencyStats> latencies = null;
+
+		for (int pass = 0; pass < 2; ++pass)
+		{
+			latencies = new LinkedHashMap<String, LatencyStats>();
+
+			LatencyStats exists = new LatencyStats();
+			LatencyStats seats = new LatencyStats();
+			LatencyStats repairs = new LatencyStats();
+			LatencyStats count = new LatencyStats();
+			LatencyStats page = new LatencyStats();
+
+			latencies.put("4 exists", exists);
+			latencies.put("5 seats", seats);
+			latencies.put("6 repairs", repairs);
+			latencies.put("7 count", count);
+			latencies.put("7 list", page);
+
+			for (int i = 0; i < cruiseNumbers.length; ++i)
+			{
+				int cruise = cruiseNumbers[i];
+				char status = "WCR".charAt(i % 3);
+
+				long begin = System.nanoTime();
+				store.customerExists(customerIds[i]);
+				store.cruiseExists(cruise);
+				exists.record(System.nanoTime() - begin, false);
+
+				begin = System.nanoTime();
+				store.getAvailableSeats(cruise);
+				seats.record(System.nanoTime() - begin, false);
+
+				ReportWriter report = new ReportWriter(new StringWriter(), true, ReportWriter.Format.TEXT, ReportWriter.DEFAULT_SAMPLE_ROWS, ReportWriter.DEFAULT_PAGE_SIZE);
+
+				begin = System.nanoTime();
+				store.writeTopRepairedShips(report, 10, REPORT_CODES[i % REPORT_CODES.length], null, null);
+				repairs.record(System.nanoTime() - begin, false);
+
+				begin = System.nanoTime();
+				store.countPassengers(cruise, status);
+				count.record(System.nanoTime() - begin, false);
+
+				begin = System.nanoTime();
+				store.listPassengers(cruise, status, -1, PassengerCounts.DEFAULT_PAGE_SIZE);
+				page.record(System.nanoTime() - begin, false);
+			}
+		}
+
+		return latencies;
+	}
+
+	private static void print(String store, Map<String, LatencyStats> latencies)
+	{
+		for (Map.Entry<String, LatencyStats> entry : latencies.entrySet())
+			System.out.println(String.format("%-9s %-10s %s", store, entry.getKey(), entry.getValue().summary()));
+	}
+}
@@ -0,0 +1,194 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.*;
+import java.util.*;
+
+/*
+* This class cancels reservations and promotes waitlisted passengers into the seats they free.
+* The waitlist of a cruise is first come, first served by rnum.  The queue is the
+* Reservation (cid, status, rnum) index migration 1 creates, so the head of a cruise's waitlist is
+* found with one index descent, O(log n), and no scan of Reservation.
+*
+* A cancellation locks its cruise's row first, as every booking path does whether it confirms or
+* waitlists, so cancellations and bookings of the same cruise are serialized: a waitlisted
+* passenger is never promoted twice or into a seat someone else took, and a booking made while a
+* seat is being freed either waits for it or is waitlisted in time to be promoted.  The promotion
+* happens in the cancellation's transaction, so the freed seat is never seen empty.
+*/
+
+public class WaitlistEngine
+{
+	static final String FIND_CRUISE_SQL = "SELECT Reservation.cid FROM Reservation WHERE Reservation.rnum = ?;";
+
+	static final String CANCEL_SQL = "DELETE FROM Reservation WHERE rnum = ? RETURNING rnum, ccid, cid, status;";
+
+	//takes the head of the cruise's waitlist off the index and gives it a seat
+	static final String PROMOTE_SQL =
+		"UPDATE Reservation SET status = 'R'\n" +
+		"WHERE rnum = (SELECT Reservation.rnum FROM Reservation\n" +
+		"	WHERE Reservation.cid = ? AND Reservation.status = 'W'\n" +
+		"	ORDER BY Reservation.rnum\n" +
+		"	LIMIT 1\n" +
+		"	FOR UPDATE)\n" +
+		"RETURNING rnum, ccid, cid, status;";
+
+	/*
+	* The outcome of one cancellation.
+	*/
+	public static class Cancellation
+	{
+		public final Reservation cancelled;
+
+		//waitlisted reservations moved to R, oldest first
+		public final List<Reservation> promoted;
+
+		public Cancellation(Reservation cancelled, List<Reservation> promoted)
+		{
+			this.cancelled = cancelled;
+			this.promoted = promoted;
+		}
+
+		public String toString()
+		{
+			return "cancelled " + this.cancelled + (this.promoted.isEmpty() ? "" : ", promoted " + this.promoted);
+		}
+	}
+
+	private final DBproject _esql;
+
+	public WaitlistEngine(DBproject esql)
+	{
+		this._esql = esql;
+	}
+
+	/**
+	 * Method to cancel a reservation.  When it held a seat, the oldest
+	 * waitlisted reservations of the cruise are promoted to R, in the same
+	 * transaction, for as long as the ship has seats left.
+	 *
+	 * @param rnum the Reservation.rnum
+	 * @return what was cancelled and promoted, or null when the reservation does not exist
+	 * @throws java.sql.SQLException when the cancellation failed, nothing is changed in that case
+	 */
+	public Cancellation cancel(int rnum) throws SQLException
+	{
+		long startedAt = System.nanoTime();
+		Cancellation cancellation = this._esql.executeInTransaction(pc ->
+		{
+			int cnum = this._esql.executePreparedQueryForInt(FIND_CRUISE_SQL, -1, rnum);
+
+			if (cnum < 0)
+				return null;
+
+			int[] cruise = lockCruise(cnum);
+
+			// a concurrent cancellation may have deleted it while this one waited for the lock
+			Reservation cancelled = this._esql.executePreparedQueryForObject(CANCEL_SQL, Reservation.MAPPER, rnum);
+
+			if (cancelled == null)
+				return null;
+
+			int numSold = cruise[0];
+
+			if (holdsSeat(cancelled.status))
+				numSold = Math.max(0, numSold - 1);
+
+			List<Reservation> promoted = promote(cnum, numSold, cruise[1], cruise[0]);
+
+			return new Cancellation(cancelled, promoted);
+		});
+
+		if (cancellation != null)
+			record(cancellation.cancelled.cid, cancellation, startedAt);
+
+		return cancellation;
+	}
+
+	/**
+	 * Method to fill the free seats of a cruise from its waitlist, e.g.
+	 * after its ship was replaced by a larger one.
+	 *
+	 * @param cnum the Cruise.cnum
+	 * @return the reservations moved to R, oldest first
+	 * @throws java.sql.SQLException when the promotion failed
+	 */
+	public List<Reservation> promote(int cnum) throws SQLException
+	{
+		long startedAt = System.nanoTime();
+		List<Reservation> promoted = this._esql.executeInTransaction(pc ->
+		{
+			int[] cruise = lockCruise(cnum);
+
+			return (cruise[0] < 0) ? new ArrayList<Reservation>() : promote(cnum, cruise[0], cruise[1], cruise[0]);
+		});
+
+		record(cnum, new Cancellation(null, promoted), startedAt);
+		return promoted;
+	}
+
+	/*
+	* Returns { num_sold, seats } of the cruise with its row locked until commit, { -1, 0 } when
+	* it does not exist.
+	*/
+	private int[] lockCruise(int cnum) throws SQLException
+	{
+		int[] cruise = this._esql.executePreparedQueryAndRead(BookingEngine.LOCK_CRUISE_SQL,
+					rs -> rs.next() ? new int[] { rs.getInt(1), rs.getInt(2) } : null, cnum);
+
+		return (cruise == null) ? new int[] { -1, 0 } : cruise;
+	}
+
+	/*
+	* Promotes the head of the waitlist while BookingEngine.decideStatus gives it a seat, then
+	* stores num_sold when it changed.  Runs on the locked cruise.
+	*/
+	private List<Reservation> promote(int cnum, int numSold, int seats, int storedNumSold) throws SQLException
+	{
+		List<Reservation> promoted = new ArrayList<Reservation>();
+
+		while (BookingEngine.decideStatus(numSold, seats) == 'R')
+		{
+			Reservation head = this._esql.executePreparedQueryForObject(PROMOTE_SQL, Reservation.MAPPER, cnum);
+
+			if (head == null)
+				break;
+
+			promoted.add(head);
+			++numSold;
+		}
+
+		if (numSold != storedNumSold)
+			this._esql.executePreparedUpdate("UPDATE Cruise SET num_sold = ? WHERE cnum = ?;", numSold, cnum);
+
+		return promoted;
+	}
+
+	private static boolean holdsSeat(char status)
+	{
+		return status == 'R' || status == 'C';
+	}
+
+	/*
+	* Brings the caches up to date for the transaction started at startedAt; inside an outer
+	* transaction, e.g. a batch, the updates wait for its commit.
+	*/
+	private void record(int cnum, Cancellation cancellation, long startedAt)
+	{
+		if (cancellation.cancelled != null)
+			this._esql.recordStatusChange(cnum, cancellation.cancelled.status, (char) 0, startedAt);
+
+		for (Reservation reservation : cancellation.promoted)
+			this._esql.recordStatusChange(cnum, 'W', 'R', startedAt);
+	}
+}
@@ -0,0 +1,7 @@
+#! /bin/bash
+DATADIR=${1:-../data}
+
+# Startup time and latency of the menu's read queries, in memory and then against Postgres.
+# Example: source ./storebench.sh ../data 2000 flightDB 5432 user
+# (leave out the database to time the in-memory store alone)
+java -cp lib/*:bin/ StoreBenchmark $DATADIR ${@:2}
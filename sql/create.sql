@@ -9,6 +9,20 @@ DROP TABLE IF EXISTS CruiseInfo CASCADE;--OK
 DROP TABLE IF EXISTS Repairs CASCADE;--OK
 DROP TABLE IF EXISTS Schedule CASCADE;--OK
 
+DROP TABLE IF EXISTS ShipRepairTotal;
+DROP TABLE IF EXISTS ShipRepairDaily;
+DROP FUNCTION IF EXISTS repairs_count();
+DROP FUNCTION IF EXISTS repairs_truncate();
+DROP TABLE IF EXISTS ReservationStatusCount;
+DROP FUNCTION IF EXISTS reservation_count();
+DROP FUNCTION IF EXISTS reservation_truncate();
+DROP TABLE IF EXISTS SchemaVersion;
+
+DROP SEQUENCE IF EXISTS ship_id_seq;
+DROP SEQUENCE IF EXISTS captain_id_seq;
+DROP SEQUENCE IF EXISTS cruise_cnum_seq;
+DROP SEQUENCE IF EXISTS reservation_rnum_seq;
+
 -------------
 ---DOMAINS---
 -------------
@@ -217,4 +231,118 @@ COPY Schedule (
 	arrival_time
 )
 FROM 'schedule.csv'
-WITH DELIMITER ',';
\ No newline at end of file
+WITH DELIMITER ',';
+
+---------------
+---SEQUENCES---
+---------------
+-- Keys for new rows are reserved in blocks by IdGenerator.java,
+-- INCREMENT BY must match IdGenerator.BLOCK_SIZE
+CREATE SEQUENCE ship_id_seq INCREMENT BY 50 MINVALUE 0;
+CREATE SEQUENCE captain_id_seq INCREMENT BY 50 MINVALUE 0;
+CREATE SEQUENCE cruise_cnum_seq INCREMENT BY 50 MINVALUE 0;
+CREATE SEQUENCE reservation_rnum_seq INCREMENT BY 50 MINVALUE 0;
+
+SELECT setval('ship_id_seq', (SELECT COALESCE(MAX(id), -1) + 1 FROM Ship), false);
+SELECT setval('captain_id_seq', (SELECT COALESCE(MAX(id), -1) + 1 FROM Captain), false);
+SELECT setval('cruise_cnum_seq', (SELECT COALESCE(MAX(cnum), -1) + 1 FROM Cruise), false);
+SELECT setval('reservation_rnum_seq', (SELECT COALESCE(MAX(rnum), -1) + 1 FROM Reservation), false);
+
+----------------
+---AGGREGATES---
+----------------
+-- Repair counts per ship read by RepairLeaderboard.java, kept current by
+-- triggers on Repairs; must match RepairLeaderboard.INSTALL
+CREATE TABLE ShipRepairTotal
+(
+	ship_id INTEGER NOT NULL,
+	repair_code _CODE NOT NULL,
+	repairs INTEGER NOT NULL,
+	PRIMARY KEY (ship_id, repair_code)
+);
+
+CREATE TABLE ShipRepairDaily
+(
+	ship_id INTEGER NOT NULL,
+	repair_code _CODE NOT NULL,
+	repair_date DATE NOT NULL,
+	repairs INTEGER NOT NULL,
+	PRIMARY KEY (ship_id, repair_code, repair_date)
+);
+
+CREATE INDEX ShipRepairDaily_repair_date ON ShipRepairDaily (repair_date);
+
+CREATE FUNCTION repairs_count() RETURNS TRIGGER AS $$
+BEGIN
+	IF TG_OP IN ('UPDATE', 'DELETE') AND OLD.repair_code IS NOT NULL THEN
+		UPDATE ShipRepairTotal SET repairs = repairs - 1
+			WHERE ship_id = OLD.ship_id AND repair_code = OLD.repair_code;
+		UPDATE ShipRepairDaily SET repairs = repairs - 1
+			WHERE ship_id = OLD.ship_id AND repair_code = OLD.repair_code AND repair_date = OLD.repair_date;
+	END IF;
+	IF TG_OP IN ('INSERT', 'UPDATE') AND NEW.repair_code IS NOT NULL THEN
+		INSERT INTO ShipRepairTotal VALUES (NEW.ship_id, NEW.repair_code, 1)
+			ON CONFLICT (ship_id, repair_code) DO UPDATE SET repairs = ShipRepairTotal.repairs + 1;
+		INSERT INTO ShipRepairDaily VALUES (NEW.ship_id, NEW.repair_code, NEW.repair_date, 1)
+			ON CONFLICT (ship_id, repair_code, repair_date) DO UPDATE SET repairs = ShipRepairDaily.repairs + 1;
+	END IF;
+	RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE FUNCTION repairs_truncate() RETURNS TRIGGER AS $$
+BEGIN
+	TRUNCATE ShipRepairTotal, ShipRepairDaily;
+	RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- the rows copied above are counted once here instead of row by row
+INSERT INTO ShipRepairTotal
+	SELECT ship_id, repair_code, COUNT(*) FROM Repairs WHERE repair_code IS NOT NULL GROUP BY ship_id, repair_code;
+INSERT INTO ShipRepairDaily
+	SELECT ship_id, repair_code, repair_date, COUNT(*) FROM Repairs WHERE repair_code IS NOT NULL GROUP BY ship_id, repair_code, repair_date;
+
+CREATE TRIGGER repairs_count AFTER INSERT OR UPDATE OF ship_id, repair_code, repair_date OR DELETE ON Repairs
+	FOR EACH ROW EXECUTE PROCEDURE repairs_count();
+CREATE TRIGGER repairs_truncate AFTER TRUNCATE ON Repairs
+	FOR EACH STATEMENT EXECUTE PROCEDURE repairs_truncate();
+
+-- Passengers per cruise and status read by PassengerCounts.java, kept
+-- current by triggers on Reservation; must match PassengerCounts.INSTALL
+CREATE TABLE ReservationStatusCount
+(
+	cid INTEGER NOT NULL,
+	status _STATUS NOT NULL,
+	passengers INTEGER NOT NULL,
+	PRIMARY KEY (cid, status)
+);
+
+CREATE FUNCTION reservation_count() RETURNS TRIGGER AS $$
+BEGIN
+	IF TG_OP IN ('UPDATE', 'DELETE') AND OLD.status IS NOT NULL THEN
+		UPDATE ReservationStatusCount SET passengers = passengers - 1
+			WHERE cid = OLD.cid AND status = OLD.status;
+	END IF;
+	IF TG_OP IN ('INSERT', 'UPDATE') AND NEW.status IS NOT NULL THEN
+		INSERT INTO ReservationStatusCount VALUES (NEW.cid, NEW.status, 1)
+			ON CONFLICT (cid, status) DO UPDATE SET passengers = ReservationStatusCount.passengers + 1;
+	END IF;
+	RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE FUNCTION reservation_truncate() RETURNS TRIGGER AS $$
+BEGIN
+	TRUNCATE ReservationStatusCount;
+	RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+INSERT INTO ReservationStatusCount
+	SELECT cid, status, COUNT(*) FROM Reservation WHERE status IS NOT NULL GROUP BY cid, status;
+
+CREATE TRIGGER reservation_count AFTER INSERT OR UPDATE OF cid, status OR DELETE ON Reservation
+	FOR EACH ROW EXECUTE PROCEDURE reservation_count();
+CREATE TRIGGER reservation_truncate AFTER TRUNCATE ON Reservation
+	FOR EACH STATEMENT EXECUTE PROCEDURE reservation_truncate();